@@ -0,0 +1,60 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Checks every resource of a synchronized tree against the configured
+ * excludes, like a sync does for each VFS and RFS entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExcludesBenchmark {
+
+    @Param({ "10000", "100000" })
+    private int resources;
+
+    @Param({ "10", "200" })
+    private int excludes;
+
+    private VfsSync sync;
+    private String[] paths;
+    private String[] excludeArray;
+
+    @Setup
+    public void setUp() {
+        this.sync = new VfsSync();
+        this.paths = Fixtures.vfsPaths(this.resources);
+        this.excludeArray = new String[this.excludes];
+
+        for (int i = 0; i < this.excludes; i++) {
+            // half of them exclude folders of the tree, the rest nothing
+            this.excludeArray[i] = ((i % 2) == 0) ? Fixtures.folder(i * 7) + "/"
+                                                  : "/system/modules/excluded" + i + "/";
+        }
+    }
+
+    @Benchmark
+    public void resourceIsInExcludesArray(final Blackhole bh) {
+        for (final String path : this.paths) {
+            bh.consume(this.sync.resourceIsInExcludesArray(path, this.excludeArray));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Synthetic data shaped like a real site: folders about ten levels deep
+ * with about 50 files each.
+ */
+final class Fixtures {
+
+    /** Files per folder. */
+    private static final int FILES_PER_FOLDER = 50;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param index
+     *            number of the folder
+     * @return site path of the folder, without trailing slash
+     */
+    static String folder(final int index) {
+        final StringBuilder path = new StringBuilder("/sites/default");
+        int rest = index;
+
+        do {
+            path.append("/folder").append(rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+
+        return path.toString();
+    }
+
+    /**
+     * @param count
+     *            number of paths
+     * @return site paths of files
+     */
+    static String[] vfsPaths(final int count) {
+        final String[] paths = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            paths[i] = folder(i / FILES_PER_FOLDER) + "/file" + i + ".html";
+        }
+
+        return paths;
+    }
+
+    /**
+     * @param properties
+     *            number of properties
+     * @return a metadata file as written by the sync
+     */
+    static byte[] metadata(final int properties) {
+        final StringBuilder xml = new StringBuilder(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<export><files><file>\n");
+        xml.append("  <source>sites/default/folder1/file1.html</source>\n");
+        xml.append("  <destination>sites/default/folder1/file1.html</destination>\n");
+        xml.append("  <type>containerpage</type>\n");
+        xml.append("  <uuidstructure>1f2e3d4c-0000-11e9-8f4e-0242ac110002</uuidstructure>\n");
+        xml.append("  <uuidresource>1f2e3d4d-0000-11e9-8f4e-0242ac110002</uuidresource>\n");
+        xml.append("  <datelastmodified>Tue, 08 Jan 2019 10:11:12 GMT</datelastmodified>\n");
+        xml.append("  <userlastmodified>Admin</userlastmodified>\n");
+        xml.append("  <datecreated>Tue, 08 Jan 2019 10:11:12 GMT</datecreated>\n");
+        xml.append("  <usercreated>Admin</usercreated>\n");
+        xml.append("  <flags>0</flags>\n  <properties>\n");
+
+        for (int i = 0; i < properties; i++) {
+            xml.append("    <property><name>property").append(i)
+               .append("</name><value><![CDATA[value of property ").append(i)
+               .append("]]></value></property>\n");
+        }
+
+        xml.append("  </properties>\n  <relations>\n");
+        xml.append("    <relation><id>1f2e3d4e-0000-11e9-8f4e-0242ac110002</id>")
+           .append("<path>/sites/default/folder2/</path><type>CATEGORY</type></relation>\n");
+        xml.append("  </relations>\n  <accesscontrol>\n");
+        xml.append("    <accessentry><uninterpreted>GROUP.Users</uninterpreted><flags>16</flags>")
+           .append("<permissionset><allowed>1</allowed><denied>0</denied></permissionset></accessentry>\n");
+        xml.append("  </accesscontrol>\n</file></files></export>\n");
+
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.io.SAXWriter;
+import org.opencms.importexport.CmsImportExportManager;
+import org.opencms.importexport.CmsImportVersion10;
+import org.opencms.util.CmsXmlSaxWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes metadata files the way appendResourceToManifest() does: a file
+ * element is built with dom4j, streamed through the SAX writer and removed
+ * again. Reading the attributes from the VFS needs a running OpenCms and is
+ * not part of this benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ManifestBenchmark {
+
+    @Param({ "5", "40" })
+    private int properties;
+
+    @Benchmark
+    public byte[] writeManifest() throws Exception {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        final CmsXmlSaxWriter saxHandler = new CmsXmlSaxWriter(new OutputStreamWriter(
+                    buffer, StandardCharsets.UTF_8), StandardCharsets.UTF_8.name());
+        final SAXWriter saxWriter = new SAXWriter(saxHandler, saxHandler);
+
+        final Document doc = DocumentHelper.createDocument();
+        saxHandler.startDocument();
+
+        final Element exportNode = doc.addElement(CmsImportExportManager.N_EXPORT);
+        saxWriter.writeOpen(exportNode);
+
+        final Element fileElement = exportNode.addElement(CmsImportVersion10.N_FILE);
+        fileElement.addElement(CmsImportVersion10.N_SOURCE).addText("sites/default/folder1/file1.html");
+        fileElement.addElement(CmsImportVersion10.N_DESTINATION).addText("sites/default/folder1/file1.html");
+        fileElement.addElement(CmsImportVersion10.N_TYPE).addText("containerpage");
+        fileElement.addElement(CmsImportVersion10.N_UUIDSTRUCTURE).addText("1f2e3d4c-0000-11e9-8f4e-0242ac110002");
+        fileElement.addElement(CmsImportVersion10.N_UUIDRESOURCE).addText("1f2e3d4d-0000-11e9-8f4e-0242ac110002");
+        fileElement.addElement(CmsImportVersion10.N_DATELASTMODIFIED).addText("Tue, 08 Jan 2019 10:11:12 GMT");
+        fileElement.addElement(CmsImportVersion10.N_USERLASTMODIFIED).addText("Admin");
+        fileElement.addElement(CmsImportVersion10.N_DATECREATED).addText("Tue, 08 Jan 2019 10:11:12 GMT");
+        fileElement.addElement(CmsImportVersion10.N_USERCREATED).addText("Admin");
+        fileElement.addElement(CmsImportVersion10.N_FLAGS).addText("0");
+
+        final Element propertiesElement = fileElement.addElement(CmsImportVersion10.N_PROPERTIES);
+
+        for (int i = 0; i < this.properties; i++) {
+            final Element property = propertiesElement.addElement(CmsImportVersion10.N_PROPERTY);
+            property.addElement(CmsImportVersion10.N_NAME).addText("property" + i);
+            property.addElement(CmsImportVersion10.N_VALUE).addCDATA("value of property " + i);
+        }
+
+        final Element relation = fileElement.addElement(CmsImportVersion10.N_RELATIONS)
+                                            .addElement(CmsImportVersion10.N_RELATION);
+        relation.addElement(CmsImportVersion10.N_ID).addText("1f2e3d4e-0000-11e9-8f4e-0242ac110002");
+        relation.addElement(CmsImportVersion10.N_PATH).addText("/sites/default/folder2/");
+        relation.addElement(CmsImportVersion10.N_TYPE).addText("CATEGORY");
+
+        final Element ace = fileElement.addElement(CmsImportVersion10.N_ACCESSCONTROL_ENTRIES)
+                                       .addElement(CmsImportVersion10.N_ACCESSCONTROL_ENTRY);
+        ace.addElement(CmsImportVersion10.N_ACCESSCONTROL_PRINCIPAL).addText("GROUP.Users");
+        ace.addElement(CmsImportVersion10.N_FLAGS).addText("16");
+        final Element permissions = ace.addElement(CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET);
+        permissions.addElement(CmsImportVersion10.N_ACCESSCONTROL_ALLOWEDPERMISSIONS).addText("1");
+        permissions.addElement(CmsImportVersion10.N_ACCESSCONTROL_DENIEDPERMISSIONS).addText("0");
+
+        // what digestElement() and closeExportFile() do
+        saxWriter.write(fileElement);
+        exportNode.remove(fileElement);
+        saxWriter.writeClose(exportNode);
+        saxHandler.endDocument();
+        saxHandler.getWriter().close();
+
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,46 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses metadata files, the part of readResourcesFromManifest() and of the
+ * comparison which does not need a running OpenCms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Param({ "5", "40" })
+    private int properties;
+
+    private byte[] xml;
+
+    @Setup
+    public void setUp() {
+        this.xml = Fixtures.metadata(this.properties);
+    }
+
+    @Benchmark
+    public void read(final Blackhole bh) throws IOException {
+        bh.consume(MetadataReader.read(this.xml));
+    }
+}
@@ -0,0 +1,125 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.opencms.file.CmsProperty;
+import org.opencms.importexport.CmsImportVersion10;
+import org.opencms.security.CmsAccessControlEntry;
+import org.opencms.util.CmsUUID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the metadata of unchanged resources, the common case of a sync:
+ * all values, properties and access control entries are equal, so every
+ * list has to be compared completely.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParamsDifferBenchmark {
+
+    @Param({ "10000" })
+    private int resources;
+
+    @Param({ "5", "40" })
+    private int properties;
+
+    private VfsSync sync;
+    private List<Map<String, Object>> rfsParams;
+    private List<Map<String, Object>> vfsParams;
+
+    @Setup
+    public void setUp() {
+        this.sync = new VfsSync();
+        this.rfsParams = new ArrayList<>(this.resources);
+        this.vfsParams = new ArrayList<>(this.resources);
+
+        for (int i = 0; i < this.resources; i++) {
+            this.rfsParams.add(params(i, this.properties, true));
+            this.vfsParams.add(params(i, this.properties, false));
+        }
+    }
+
+    @Benchmark
+    public int isParamsDiffer() {
+        int changed = 0;
+
+        for (int i = 0; i < this.resources; i++) {
+            if (this.sync.isParamsDiffer(this.rfsParams.get(i), this.vfsParams.get(i))) {
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    @Benchmark
+    public int isListEquals() {
+        int equal = 0;
+
+        for (int i = 0; i < this.resources; i++) {
+            @SuppressWarnings("unchecked")
+            final List<CmsProperty> rfs = (List<CmsProperty>) this.rfsParams.get(i)
+                                                                     .get(CmsImportVersion10.N_PROPERTIES);
+            @SuppressWarnings("unchecked")
+            final List<CmsProperty> vfs = (List<CmsProperty>) this.vfsParams.get(i)
+                                                                     .get(CmsImportVersion10.N_PROPERTIES);
+
+            if (this.sync.isListEquals(vfs, rfs, CmsProperty::compareTo)) {
+                equal++;
+            }
+        }
+
+        return equal;
+    }
+
+    private static Map<String, Object> params(final int resource, final int properties,
+        final boolean reversed) {
+        final Map<String, Object> params = new HashMap<>();
+        params.put(CmsImportVersion10.N_DESTINATION, Fixtures.folder(resource) + "/index.html");
+        params.put(CmsImportVersion10.N_FLAGS, "0");
+        params.put(CmsImportVersion10.N_DATECREATED, Long.valueOf(1546942272000L + resource));
+
+        // the RFS lists come in another order and are sorted by the comparison
+        final List<CmsProperty> propertyList = new ArrayList<>(properties);
+
+        for (int i = 0; i < properties; i++) {
+            final int p = reversed ? (properties - 1 - i) : i;
+            propertyList.add(new CmsProperty("property" + p, "value " + p, null));
+        }
+
+        params.put(CmsImportVersion10.N_PROPERTIES, propertyList);
+
+        final List<CmsAccessControlEntry> aces = new ArrayList<>();
+        final CmsUUID resourceId = new CmsUUID(new java.util.UUID(0, resource).toString());
+
+        for (int i = 0; i < 3; i++) {
+            final int a = reversed ? (2 - i) : i;
+            aces.add(new CmsAccessControlEntry(resourceId,
+                    new CmsUUID(new java.util.UUID(1, a).toString()), 1 << a, 0,
+                    CmsAccessControlEntry.ACCESS_FLAGS_GROUP));
+        }
+
+        params.put(CmsImportVersion10.N_ACCESSCONTROL_ENTRIES, aces);
+
+        return params;
+    }
+}
@@ -0,0 +1,82 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.opencms.synchronize.CmsSynchronizeList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads and writes the sync list of the last run, as readSyncList() and
+ * writeSyncList() do, in the binary and the legacy text format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncStateBenchmark {
+
+    @Param({ "10000", "100000", "500000" })
+    private int entries;
+
+    @Param({ "false", "true" })
+    private boolean legacyFormat;
+
+    private File folder;
+    private SyncStateStore store;
+    private List<CmsSynchronizeList> syncList;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.folder = Files.createTempDirectory("syncstate").toFile();
+        this.store = new SyncStateStore(this.folder);
+        this.syncList = new ArrayList<>(this.entries);
+
+        final long now = System.currentTimeMillis();
+
+        for (final String path : Fixtures.vfsPaths(this.entries)) {
+            this.syncList.add(new CmsSynchronizeList(path, path, now, now + 1000));
+        }
+
+        this.store.write(this.syncList, this.legacyFormat);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<java.nio.file.Path> files = Files.walk(this.folder.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)
+                 .forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public Map<String, CmsSynchronizeList> readSyncList() throws IOException {
+        return this.store.read((String name) -> name);
+    }
+
+    @Benchmark
+    public void writeSyncList() throws IOException {
+        this.store.write(this.syncList, this.legacyFormat);
+    }
+}
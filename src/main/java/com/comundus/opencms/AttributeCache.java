@@ -0,0 +1,478 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsProperty;
+import org.opencms.file.CmsPropertyDefinition;
+import org.opencms.file.CmsResource;
+import org.opencms.main.CmsException;
+import org.opencms.relations.CmsRelation;
+import org.opencms.relations.CmsRelationFilter;
+import org.opencms.security.CmsAccessControlEntry;
+import org.opencms.util.CmsUUID;
+
+/**
+ * Caches properties, access control entries and relations of VFS resources
+ * for the duration of one run.
+ * <p>
+ * {@link #prefetch(CmsObject, VfsResourceIndex, List)} reads in bulk what
+ * OpenCms offers for the synchronized subtrees of the index:
+ * <ul>
+ * <li>Relations: one query per subtree of at most maxEntries resources. A
+ * larger subtree is split into its subfolders, the files directly inside it
+ * are read lazily. The subtree sizes come from the index, so nothing is read
+ * and then discarded.</li>
+ * <li>Access control entries: all entries of the VFS with one query, kept for
+ * the resources of the index. A resource without entries needs no query.</li>
+ * <li>Properties: OpenCms has no bulk read of property values, but one query
+ * per property definition tells which resources have any property at all.
+ * Resources without properties need no query, the others are read lazily.
+ * This only pays if a subtree has more resources than there are property
+ * definitions, smaller subtrees are read lazily.</li>
+ * </ul>
+ * If a bulk read fails, the resources concerned are read lazily. Lazily read
+ * attributes are kept in LRU maps of bounded size. They serve both the
+ * comparison and the export of a resource.
+ * <p>
+ * All lists returned are copies, callers may sort them. After the attributes
+ * of a resource have been written, {@link #invalidate(String)} has to be
+ * called.
+ */
+final class AttributeCache {
+
+    /** Relations filter used for the comparison and the export. */
+    private static final CmsRelationFilter RELATIONS = CmsRelationFilter.TARGETS.filterNotDefinedInContent();
+
+    /** Maximum number of entries per lazily filled map. */
+    private final int maxEntries;
+
+    /** Properties, keyed by root path. */
+    private final Map<String, List<CmsProperty>> properties;
+
+    /** Access control entries, keyed by root path. */
+    private final Map<String, List<CmsAccessControlEntry>> accessEntries;
+
+    /** Lazily read relations, keyed by root path. */
+    private final Map<String, List<CmsRelation>> relations;
+
+    /** Prefetched relations, keyed by the root path of their source. */
+    private final Map<String, List<CmsRelation>> prefetched = new HashMap<>();
+
+    /** Root paths of the subtrees whose relations were prefetched. */
+    private final Set<String> relationRoots = new HashSet<>();
+
+    /** Prefetched access control entries, keyed by resource id. */
+    private final Map<CmsUUID, List<CmsAccessControlEntry>> prefetchedAccess = new HashMap<>();
+
+    /** Root paths of the subtrees whose access control entries were prefetched. */
+    private final Set<String> accessRoots = new HashSet<>();
+
+    /** Root paths of the subtrees whose resources with properties are known. */
+    private final Set<String> propertyRoots = new HashSet<>();
+
+    /** Root paths of the resources in these subtrees having any property. */
+    private final Set<String> withProperties = new HashSet<>();
+
+    /** Resources inside a prefetched subtree whose attributes were written. */
+    private final Set<String> invalidated = new HashSet<>();
+
+    /** Queries issued by the prefetch. */
+    private int prefetchQueries;
+
+    /** Lookups served from the cache. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Lookups read from OpenCms. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries
+     *            maximum number of entries per lazily filled map
+     */
+    AttributeCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.properties = this.createLru();
+        this.accessEntries = this.createLru();
+        this.relations = this.createLru();
+    }
+
+    /**
+     * Reads the attributes of the synchronized subtrees in bulk, as far as
+     * OpenCms allows it.
+     *
+     * @param cms
+     *            the CmsObject to read with
+     * @param index
+     *            the index holding the subtrees
+     * @param sitePaths
+     *            site paths of the synchronized subtrees
+     */
+    void prefetch(final CmsObject cms, final VfsResourceIndex index,
+        final List<String> sitePaths) {
+        final List<CmsResource> roots = new ArrayList<>();
+        final Map<String, Integer> sizes = new HashMap<>();
+
+        for (final String sitePath : sitePaths) {
+            final CmsResource root = index.get(cms.getRequestContext()
+                                                  .addSiteRoot(sitePath));
+
+            if (root != null) {
+                roots.add(root);
+                countSubtree(index, root, sizes);
+            }
+        }
+
+        this.prefetchAccessEntries(cms, index, roots);
+
+        List<CmsPropertyDefinition> definitions;
+
+        try {
+            definitions = cms.readAllPropertyDefinitions();
+            this.prefetchQueries++;
+        } catch (final CmsException e) {
+            // read lazily
+            definitions = null;
+        }
+
+        for (final CmsResource root : roots) {
+            if ((definitions != null) &&
+                    (sizes.get(root.getRootPath()) > definitions.size())) {
+                this.prefetchProperties(cms, root, definitions);
+            }
+
+            this.prefetchRelations(cms, index, root, sizes);
+        }
+    }
+
+    /**
+     * Reads the relations of a subtree with one query if it has at most
+     * maxEntries resources, otherwise those of its subfolders.
+     */
+    private void prefetchRelations(final CmsObject cms,
+        final VfsResourceIndex index, final CmsResource resource,
+        final Map<String, Integer> sizes) {
+        if (sizes.get(resource.getRootPath()) > this.maxEntries) {
+            for (final CmsResource child : index.getChildren(resource)) {
+                if (child.isFolder()) {
+                    this.prefetchRelations(cms, index, child, sizes);
+                }
+            }
+
+            return;
+        }
+
+        final List<CmsRelation> subtree;
+
+        try {
+            subtree = cms.getRelationsForResource(resource, RELATIONS.filterIncludeChildren());
+            this.prefetchQueries++;
+        } catch (final CmsException e) {
+            // read lazily
+            return;
+        }
+
+        synchronized (this) {
+            this.relationRoots.add(resource.getRootPath());
+
+            for (final CmsRelation relation : subtree) {
+                this.prefetched.computeIfAbsent(relation.getSourcePath(),
+                    (String key) -> new ArrayList<>()).add(relation);
+            }
+        }
+    }
+
+    /**
+     * Reads all access control entries of the VFS and keeps those of the
+     * resources in the subtrees.
+     */
+    private void prefetchAccessEntries(final CmsObject cms,
+        final VfsResourceIndex index, final List<CmsResource> roots) {
+        final List<CmsAccessControlEntry> entries;
+
+        try {
+            entries = cms.getAllAccessControlEntries();
+            this.prefetchQueries++;
+        } catch (final CmsException e) {
+            // read lazily
+            return;
+        }
+
+        final Set<CmsUUID> resourceIds = new HashSet<>();
+
+        for (final CmsResource root : roots) {
+            collectResourceIds(index, root, resourceIds);
+        }
+
+        synchronized (this) {
+            for (final CmsAccessControlEntry entry : entries) {
+                if (resourceIds.contains(entry.getResource())) {
+                    this.prefetchedAccess.computeIfAbsent(entry.getResource(),
+                        (CmsUUID key) -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            for (final CmsResource root : roots) {
+                this.accessRoots.add(root.getRootPath());
+            }
+        }
+    }
+
+    /**
+     * Finds the resources of a subtree having any property, with one query
+     * per property definition.
+     */
+    private void prefetchProperties(final CmsObject cms, final CmsResource root,
+        final List<CmsPropertyDefinition> definitions) {
+        final String sitePath = cms.getSitePath(root);
+        final Set<String> found = new HashSet<>();
+
+        try {
+            for (final CmsPropertyDefinition definition : definitions) {
+                // shared and individual values, deleted resources included
+                for (final CmsResource res : cms.readResourcesWithProperty(
+                            sitePath, definition.getName())) {
+                    found.add(res.getRootPath());
+                }
+
+                this.prefetchQueries++;
+            }
+        } catch (final CmsException e) {
+            // read lazily
+            return;
+        }
+
+        synchronized (this) {
+            this.propertyRoots.add(root.getRootPath());
+            this.withProperties.addAll(found);
+        }
+    }
+
+    /**
+     * @param cms
+     *            the CmsObject to read with
+     * @param resource
+     *            the resource
+     * @return the properties of the resource, not inherited
+     * @throws CmsException
+     *             if the properties cannot be read
+     */
+    List<CmsProperty> readProperties(final CmsObject cms,
+        final CmsResource resource) throws CmsException {
+        final String rootPath = resource.getRootPath();
+
+        synchronized (this) {
+            // the query of the subtree root may not include the root itself
+            if (!this.withProperties.contains(rootPath) &&
+                    !this.invalidated.contains(rootPath) &&
+                    this.isPrefetched(this.propertyRoots,
+                        CmsResource.getParentFolder(rootPath))) {
+                this.hits.increment();
+
+                return new ArrayList<>();
+            }
+        }
+
+        List<CmsProperty> list = this.lookup(this.properties, rootPath);
+
+        if (list == null) {
+            list = cms.readPropertyObjects(resource, false);
+            this.store(this.properties, resource.getRootPath(), list);
+        }
+
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * @param cms
+     *            the CmsObject to read with
+     * @param resource
+     *            the resource
+     * @return the access control entries of the resource, not inherited
+     * @throws CmsException
+     *             if the entries cannot be read
+     */
+    List<CmsAccessControlEntry> readAccessEntries(final CmsObject cms,
+        final CmsResource resource) throws CmsException {
+        synchronized (this) {
+            if (this.isPrefetched(this.accessRoots, resource.getRootPath())) {
+                this.hits.increment();
+
+                return new ArrayList<>(this.prefetchedAccess.getOrDefault(
+                        resource.getResourceId(),
+                        Collections.<CmsAccessControlEntry>emptyList()));
+            }
+        }
+
+        List<CmsAccessControlEntry> list = this.lookup(this.accessEntries,
+                resource.getRootPath());
+
+        if (list == null) {
+            list = cms.getAccessControlEntries(cms.getSitePath(resource), false);
+            this.store(this.accessEntries, resource.getRootPath(), list);
+        }
+
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * @param cms
+     *            the CmsObject to read with
+     * @param resource
+     *            the resource
+     * @return the relations of the resource which are not defined in its
+     *         content
+     * @throws CmsException
+     *             if the relations cannot be read
+     */
+    List<CmsRelation> readRelations(final CmsObject cms,
+        final CmsResource resource) throws CmsException {
+        final String rootPath = resource.getRootPath();
+
+        synchronized (this) {
+            if (this.isPrefetched(this.relationRoots, rootPath)) {
+                this.hits.increment();
+
+                return new ArrayList<>(this.prefetched.getOrDefault(rootPath,
+                        Collections.<CmsRelation>emptyList()));
+            }
+        }
+
+        List<CmsRelation> list = this.lookup(this.relations, rootPath);
+
+        if (list == null) {
+            list = cms.getRelationsForResource(resource, RELATIONS);
+            this.store(this.relations, rootPath, list);
+        }
+
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * Drops the cached attributes of a resource, i.e. after it has been
+     * written.
+     *
+     * @param rootPath
+     *            root path of the resource
+     */
+    synchronized void invalidate(final String rootPath) {
+        this.properties.remove(rootPath);
+        this.accessEntries.remove(rootPath);
+        this.relations.remove(rootPath);
+
+        this.prefetched.remove(rootPath);
+
+        if (this.isPrefetched(this.relationRoots, rootPath) ||
+                this.isPrefetched(this.accessRoots, rootPath) ||
+                this.isPrefetched(this.propertyRoots, rootPath)) {
+            this.invalidated.add(rootPath);
+        }
+    }
+
+    /**
+     * @return number of lookups read from OpenCms
+     */
+    long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return hits and misses for the report
+     */
+    String getStatistics() {
+        return "Attribute cache: " + this.hits.sum() + " hits, " + this.misses.sum() +
+        " misses, " + this.prefetchQueries + " prefetch queries for relations of " +
+        this.relationRoots.size() + " subtrees, properties of " +
+        this.propertyRoots.size() + " subtrees and " +
+        (this.accessRoots.isEmpty() ? "no" : "all") + " access control entries";
+    }
+
+    /**
+     * @return true if the resource is inside one of the subtrees and its
+     *         attributes were not written since
+     */
+    private boolean isPrefetched(final Set<String> roots, final String rootPath) {
+        if ((rootPath == null) || this.invalidated.contains(rootPath)) {
+            return false;
+        }
+
+        for (String path = rootPath; path != null;
+                path = CmsResource.getParentFolder(path)) {
+            if (roots.contains(path)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Counts the resources of a subtree, storing the count of every folder.
+     *
+     * @return number of resources in the subtree, the folder included
+     */
+    private static int countSubtree(final VfsResourceIndex index,
+        final CmsResource resource, final Map<String, Integer> sizes) {
+        int size = 1;
+
+        if (resource.isFolder()) {
+            for (final CmsResource child : index.getChildren(resource)) {
+                size += countSubtree(index, child, sizes);
+            }
+        }
+
+        sizes.put(resource.getRootPath(), size);
+
+        return size;
+    }
+
+    private static void collectResourceIds(final VfsResourceIndex index,
+        final CmsResource resource, final Set<CmsUUID> resourceIds) {
+        resourceIds.add(resource.getResourceId());
+
+        if (resource.isFolder()) {
+            for (final CmsResource child : index.getChildren(resource)) {
+                collectResourceIds(index, child, resourceIds);
+            }
+        }
+    }
+
+    private synchronized <T> List<T> lookup(final Map<String, List<T>> cache,
+        final String rootPath) {
+        final List<T> list = cache.get(rootPath);
+
+        if (list == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+
+        return list;
+    }
+
+    private synchronized <T> void store(final Map<String, List<T>> cache,
+        final String rootPath, final List<T> list) {
+        cache.put(rootPath, list);
+    }
+
+    private <T> Map<String, List<T>> createLru() {
+        return new LinkedHashMap<String, List<T>>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                    final Map.Entry<String, List<T>> eldest) {
+                    return size() > AttributeCache.this.maxEntries;
+                }
+            };
+    }
+}
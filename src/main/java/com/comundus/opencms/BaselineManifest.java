@@ -0,0 +1,232 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * The state of the last synchronization described by content digests
+ * instead of file dates, meant to be committed to version control next to
+ * the synchronized files.
+ * <p>
+ * For every resource it holds the SHA-256 digests of the content file and
+ * the metadata file the resource was synchronized with; folders have no
+ * content digest. The lines are sorted by resource name and hold nothing
+ * specific to a VFS or a machine, so an unchanged baseline is written byte
+ * for byte the same and changes show up as small diffs.
+ * <p>
+ * The digests only tell whether the RFS side changed since the run which
+ * wrote them. For resources in the local sync list a baseline is therefore
+ * only used if it is exactly the one the last local run wrote, identified
+ * by the digest of the whole file, see {@link #load(String)}. A baseline
+ * written by someone else, e.g. brought in by a pull together with the
+ * files it describes, can still tell that a resource missing from the sync
+ * list, e.g. in a fresh clone, needs no export: its VFS content and its RFS
+ * files have to match the baseline, see {@link #loadShared()}.
+ */
+final class BaselineManifest {
+
+    /** Filename of the baseline in the synchronization folder. */
+    static final String FILENAME = "#baseline.txt";
+
+    /** First line of the file, identifies the format. */
+    private static final String HEADER = "#vfs-maven-plugin baseline 2";
+
+    /** Stands for the missing content digest of a folder. */
+    private static final String NO_DIGEST = "-";
+
+    /** The baseline file. */
+    private final File file;
+
+    /** Entries read from the file, keyed by resource name. */
+    private final Map<String, Entry> old = new HashMap<>();
+
+    /** Entries recorded in this run, sorted by resource name. */
+    private final Map<String, Entry> current = new TreeMap<>();
+
+    /**
+     * @param baseFolder
+     *            the synchronization folder in the RFS
+     */
+    BaselineManifest(final File baseFolder) {
+        this.file = new File(baseFolder, FILENAME);
+    }
+
+    /**
+     * @return the baseline file
+     */
+    File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Reads the baseline if it is the one written by the last local run. A
+     * missing file, one of an unknown format or one written by another run
+     * leaves the baseline empty.
+     *
+     * @param writtenDigest
+     *            digest of the baseline the last local run wrote, may be null
+     * @return true if the baseline has been read
+     * @throws IOException
+     *             if the file exists but cannot be read
+     */
+    boolean load(final String writtenDigest) throws IOException {
+        if ((writtenDigest == null) || !this.file.exists()) {
+            return false;
+        }
+
+        final byte[] content = Files.readAllBytes(this.file.toPath());
+
+        if (!writtenDigest.equals(DigestCache.digest(content))) {
+            return false;
+        }
+
+        return this.read(content);
+    }
+
+    /**
+     * Reads the baseline whatever run wrote it. Its entries may only be
+     * used where both the VFS and the RFS side are compared with them.
+     *
+     * @return true if the baseline has been read
+     * @throws IOException
+     *             if the file exists but cannot be read
+     */
+    boolean loadShared() throws IOException {
+        if (!this.file.exists()) {
+            return false;
+        }
+
+        return this.read(Files.readAllBytes(this.file.toPath()));
+    }
+
+    private boolean read(final byte[] content) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                        new ByteArrayInputStream(content), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+
+            if (!HEADER.equals(line)) {
+                return false;
+            }
+
+            while ((line = in.readLine()) != null) {
+                // content digest, metadata digest, resource name - the name
+                // may contain tabs
+                final String[] fields = line.split("\t", 3);
+
+                if (fields.length == 3) {
+                    this.old.put(fields[2],
+                        new Entry(fields[2], NO_DIGEST.equals(fields[0]) ? null : fields[0],
+                            fields[1]));
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the entries recorded in this run.
+     *
+     * @return the digest of the written file, identifying this baseline
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    String save() throws IOException {
+        final StringBuilder out = new StringBuilder(HEADER).append('\n');
+
+        for (final Entry entry : this.current.values()) {
+            out.append((entry.contentDigest == null) ? NO_DIGEST : entry.contentDigest)
+               .append('\t').append(entry.metadataDigest).append('\t')
+               .append(entry.resName)
+               // the same line ends on every platform, the file is shared
+               .append('\n');
+        }
+
+        final byte[] content = out.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(this.file.toPath(), content);
+
+        return DigestCache.digest(content);
+    }
+
+    /**
+     * @param resName
+     *            the resource name as in the sync list
+     * @return the entry of the baseline read or null
+     */
+    Entry get(final String resName) {
+        return this.old.get(resName);
+    }
+
+    /**
+     * Records a synchronized resource.
+     *
+     * @param resName
+     *            the resource name as in the sync list
+     * @param contentDigest
+     *            digest of the content file, null for a folder
+     * @param metadataDigest
+     *            digest of the metadata file
+     */
+    void put(final String resName, final String contentDigest,
+        final String metadataDigest) {
+        this.current.put(resName, new Entry(resName, contentDigest, metadataDigest));
+    }
+
+    /**
+     * @return number of entries of the baseline read
+     */
+    int size() {
+        return this.old.size();
+    }
+
+    /**
+     * A resource as it was synchronized.
+     */
+    static final class Entry {
+        private final String resName;
+        private final String contentDigest;
+        private final String metadataDigest;
+
+        Entry(final String resName, final String contentDigest,
+            final String metadataDigest) {
+            this.resName = resName;
+            this.contentDigest = contentDigest;
+            this.metadataDigest = metadataDigest;
+        }
+
+        String getResName() {
+            return this.resName;
+        }
+
+        /**
+         * @return digest of the content file, null for a folder
+         */
+        String getContentDigest() {
+            return this.contentDigest;
+        }
+
+        String getMetadataDigest() {
+            return this.metadataDigest;
+        }
+
+        /**
+         * @param vfsContentDigest
+         *            digest of the VFS content, null for a folder
+         * @return true if the VFS resource has the content it was
+         *         synchronized with
+         */
+        boolean matchesVfs(final String vfsContentDigest) {
+            return Objects.equals(this.contentDigest, vfsContentDigest);
+        }
+    }
+}
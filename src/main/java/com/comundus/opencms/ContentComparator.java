@@ -0,0 +1,79 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares a VFS content with an RFS file without reading the file into
+ * memory.
+ * <p>
+ * The file is read chunk by chunk into one small buffer and the comparison
+ * stops at the first difference. Files are not memory-mapped: on Windows a
+ * mapped file cannot be replaced or deleted until the mapping is garbage
+ * collected, and a file which differs is usually replaced by the export
+ * right after. The VFS content itself is a byte array, OpenCms offers no
+ * streaming access to it.
+ */
+final class ContentComparator {
+
+    /** Size of a read chunk. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private ContentComparator() {
+    }
+
+    /**
+     * @param content
+     *            the VFS content
+     * @param file
+     *            the RFS file
+     * @return true if the file holds exactly the content
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    static boolean contentEquals(final byte[] content, final File file)
+        throws IOException {
+        if (file.length() != content.length) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != content.length) {
+                return false; // changed meanwhile
+            }
+
+            return readEquals(content, channel);
+        }
+    }
+
+    private static boolean readEquals(final byte[] content,
+        final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(Math.min(CHUNK_SIZE, Math.max(1, content.length)));
+        int offset = 0;
+
+        while (offset < content.length) {
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), content.length - offset));
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return false; // truncated meanwhile
+                }
+            }
+
+            buffer.flip();
+
+            if (!buffer.equals(ByteBuffer.wrap(content, offset, buffer.remaining()))) {
+                return false;
+            }
+
+            offset += buffer.remaining();
+        }
+
+        return true;
+    }
+}
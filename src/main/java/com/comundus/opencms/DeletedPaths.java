@@ -0,0 +1,83 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The RFS resources deleted (or to be deleted) during a run, so they are not
+ * imported again.
+ * <p>
+ * Resources are named like the RFS names of the sync state, relative to the
+ * synchronization folder with '/' as separator and a trailing '/' for
+ * folders. Membership is a hash lookup; a resource below a deleted folder
+ * counts as deleted, so a walk can skip deleted folders as a whole.
+ */
+final class DeletedPaths {
+
+    /** The deleted names, without trailing '/'. */
+    private final Set<String> names = new HashSet<>();
+
+    /** Number of deleted folders. */
+    private int folders;
+
+    /**
+     * Adds a deleted resource.
+     *
+     * @param rfsName
+     *            the RFS name, ending with '/' for a folder
+     */
+    void add(final String rfsName) {
+        if (this.names.add(strip(rfsName)) && rfsName.endsWith("/")) {
+            this.folders++;
+        }
+    }
+
+    /**
+     * @param rfsName
+     *            the RFS name
+     * @return true if exactly this resource has been deleted
+     */
+    boolean contains(final String rfsName) {
+        return this.names.contains(strip(rfsName));
+    }
+
+    /**
+     * @param rfsName
+     *            the RFS name
+     * @return true if the resource or one of its parent folders has been
+     *         deleted
+     */
+    boolean isDeleted(final String rfsName) {
+        String name = strip(rfsName);
+
+        if (this.names.contains(name)) {
+            return true;
+        }
+
+        if (this.folders == 0) {
+            return false;
+        }
+
+        for (int slash = name.lastIndexOf('/'); slash > 0; slash = name.lastIndexOf('/')) {
+            name = name.substring(0, slash);
+
+            if (this.names.contains(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the number of deleted resources
+     */
+    int size() {
+        return this.names.size();
+    }
+
+    private static String strip(final String rfsName) {
+        return rfsName.endsWith("/") ? rfsName.substring(0, rfsName.length() - 1) : rfsName;
+    }
+}
@@ -0,0 +1,324 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Persistent cache of SHA-256 content digests, stored next to the sync list.
+ * <p>
+ * VFS contents are keyed by structure id and are valid as long as content date
+ * and size of the resource are unchanged. RFS contents are keyed by their path
+ * relative to the synchronization folder and are valid as long as size and
+ * last modification date of the file are unchanged. A file touched by a
+ * version control checkout therefore just gets hashed again, while the VFS
+ * side does not have to be read at all.
+ * <p>
+ * Only entries used during the current run are written back, so digests of
+ * deleted resources do not pile up.
+ */
+final class DigestCache {
+
+    /** Filename of the digest cache in the synchronization folder. */
+    static final String FILENAME = "#digests.txt";
+
+    /** First line of the file, identifies the format. */
+    private static final String HEADER = "#vfs-maven-plugin digests 1";
+
+    /** Marks a VFS entry. */
+    private static final String TYPE_VFS = "V";
+
+    /** Marks an RFS entry. */
+    private static final String TYPE_RFS = "R";
+
+    /** Buffer size for hashing files. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** The cache file. */
+    private final File file;
+
+    /** Prefix cut from RFS paths to get the key. */
+    private final String basePath;
+
+    /** VFS digests read from the file, keyed by structure id. */
+    private final Map<String, Digest> oldVfs = new ConcurrentHashMap<>();
+
+    /** RFS digests read from the file, keyed by relative path. */
+    private final Map<String, Digest> oldRfs = new ConcurrentHashMap<>();
+
+    /** VFS digests used in this run. */
+    private final Map<String, Digest> vfs = new ConcurrentHashMap<>();
+
+    /** RFS digests used in this run. */
+    private final Map<String, Digest> rfs = new ConcurrentHashMap<>();
+
+    /**
+     * @param baseFolder
+     *            the synchronization folder in the RFS
+     */
+    DigestCache(final File baseFolder) {
+        this.file = new File(baseFolder, FILENAME);
+        this.basePath = baseFolder.getAbsolutePath();
+    }
+
+    /**
+     * Reads the digests stored by the last run. A missing or unreadable file
+     * just leaves the cache empty.
+     *
+     * @throws IOException
+     *             if the file exists but cannot be read
+     */
+    void load() throws IOException {
+        if (!this.file.exists()) {
+            return;
+        }
+
+        try (BufferedReader in = Files.newBufferedReader(this.file.toPath(),
+                    StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+
+            if (!HEADER.equals(line)) {
+                // unknown format, start from scratch
+                return;
+            }
+
+            while ((line = in.readLine()) != null) {
+                // type, date, size, digest, key - the key may contain tabs
+                final String[] fields = line.split("\t", 5);
+
+                if (fields.length != 5) {
+                    continue;
+                }
+
+                final Digest digest = new Digest(Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2]), fields[3]);
+
+                if (TYPE_VFS.equals(fields[0])) {
+                    this.oldVfs.put(fields[4], digest);
+                } else if (TYPE_RFS.equals(fields[0])) {
+                    this.oldRfs.put(fields[4], digest);
+                }
+            }
+        } catch (final NumberFormatException e) {
+            this.oldVfs.clear();
+            this.oldRfs.clear();
+        }
+    }
+
+    /**
+     * Writes all digests used in this run.
+     *
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    void save() throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(this.file.toPath(),
+                    StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            write(out, TYPE_VFS, this.vfs);
+            write(out, TYPE_RFS, this.rfs);
+        }
+    }
+
+    private static void write(final BufferedWriter out, final String type,
+        final Map<String, Digest> digests) throws IOException {
+        for (final Map.Entry<String, Digest> entry : digests.entrySet()) {
+            final Digest digest = entry.getValue();
+            out.write(type + '\t' + digest.date + '\t' + digest.size + '\t' +
+                digest.hash + '\t' + entry.getKey());
+            out.newLine();
+        }
+    }
+
+    /**
+     * Returns the cached digest of a VFS content.
+     *
+     * @param structureId
+     *            structure id of the resource
+     * @param dateContent
+     *            content date of the resource
+     * @param size
+     *            length of the resource
+     * @return the digest or null if unknown or outdated
+     */
+    String getVfsDigest(final String structureId, final long dateContent,
+        final long size) {
+        return lookup(this.vfs, this.oldVfs, structureId, dateContent, size);
+    }
+
+    /**
+     * Stores the digest of a VFS content.
+     *
+     * @param structureId
+     *            structure id of the resource
+     * @param dateContent
+     *            content date of the resource
+     * @param size
+     *            length of the resource
+     * @param hash
+     *            the digest
+     */
+    void putVfsDigest(final String structureId, final long dateContent,
+        final long size, final String hash) {
+        this.vfs.put(structureId, new Digest(dateContent, size, hash));
+    }
+
+    /**
+     * Returns the cached digest of an RFS file.
+     *
+     * @param rfsFile
+     *            the file
+     * @param lastModified
+     *            last modification date of the file
+     * @param size
+     *            length of the file
+     * @return the digest or null if unknown or outdated
+     */
+    String getRfsDigest(final File rfsFile, final long lastModified,
+        final long size) {
+        return lookup(this.rfs, this.oldRfs, this.getKey(rfsFile), lastModified, size);
+    }
+
+    /**
+     * Stores the digest of an RFS file.
+     *
+     * @param rfsFile
+     *            the file
+     * @param lastModified
+     *            last modification date of the file
+     * @param size
+     *            length of the file
+     * @param hash
+     *            the digest
+     */
+    void putRfsDigest(final File rfsFile, final long lastModified,
+        final long size, final String hash) {
+        this.rfs.put(this.getKey(rfsFile), new Digest(lastModified, size, hash));
+    }
+
+    /**
+     * Returns the digest last stored for an RFS file whatever its date and
+     * size are now, for files which are identified by their content. The
+     * digest is not kept for the next run unless it is stored again.
+     *
+     * @param rfsFile
+     *            the file
+     * @return the digest or null if unknown
+     */
+    String getStoredRfsDigest(final File rfsFile) {
+        final String key = this.getKey(rfsFile);
+        Digest digest = this.rfs.get(key);
+
+        if (digest == null) {
+            digest = this.oldRfs.get(key);
+        }
+
+        return (digest == null) ? null : digest.hash;
+    }
+
+    private static String lookup(final Map<String, Digest> current,
+        final Map<String, Digest> old, final String key, final long date,
+        final long size) {
+        Digest digest = current.get(key);
+
+        if (digest == null) {
+            digest = old.remove(key);
+        }
+
+        if ((digest == null) || (digest.date != date) || (digest.size != size)) {
+            return null;
+        }
+
+        // keep it for the next run
+        current.putIfAbsent(key, digest);
+
+        return digest.hash;
+    }
+
+    /**
+     * @return the path of the file relative to the synchronization folder,
+     *         the absolute path for files outside of it
+     */
+    String getKey(final File rfsFile) {
+        final String path = rfsFile.getAbsolutePath();
+
+        // a sibling like "<base>-old" is outside of the folder
+        if (path.startsWith(this.basePath) && (path.length() > this.basePath.length()) &&
+                (path.charAt(this.basePath.length()) == File.separatorChar)) {
+            return path.substring(this.basePath.length()).replace(File.separatorChar, '/');
+        }
+
+        return path;
+    }
+
+    /**
+     * Calculates the digest of a byte array.
+     *
+     * @param content
+     *            the content
+     * @return the hex encoded SHA-256 digest
+     */
+    static String digest(final byte[] content) {
+        return Hex.encodeHexString(newMessageDigest().digest(content));
+    }
+
+    /**
+     * Calculates the digest of a file without reading it into memory.
+     *
+     * @param rfsFile
+     *            the file
+     * @return the hex encoded SHA-256 digest
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    static String digest(final File rfsFile) throws IOException {
+        final MessageDigest md = newMessageDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream in = Files.newInputStream(rfsFile.toPath())) {
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        }
+
+        return Hex.encodeHexString(md.digest());
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A digest plus the date and size it is valid for.
+     */
+    private static final class Digest {
+        private final long date;
+        private final long size;
+        private final String hash;
+
+        Digest(final long date, final long size, final String hash) {
+            this.date = date;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+}
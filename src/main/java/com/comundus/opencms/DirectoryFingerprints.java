@@ -0,0 +1,150 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistent fingerprints of RFS folders whose content was completely
+ * synchronized by the last run, stored next to the sync list.
+ * <p>
+ * A folder is only recorded if every file below it has an entry in the new
+ * sync list or is excluded. If its fingerprint in the next run is unchanged
+ * (see {@link RfsTree}), nothing below it can be new, so copyFromRfs() does
+ * not have to look at the subtree. Folders are keyed by their RFS name. The
+ * fingerprints are only valid for the configuration and the sync state they
+ * were recorded with: a different configuration key discards them, and so
+ * does a sync state with another digest, e.g. a missing one after
+ * "vfs:clean", as the folders then have to be synchronized again.
+ */
+final class DirectoryFingerprints {
+
+    /** Filename of the fingerprints in the synchronization folder. */
+    static final String FILENAME = "#fingerprints.txt";
+
+    /** First line of the file, identifies the format. */
+    private static final String HEADER = "#vfs-maven-plugin fingerprints 2";
+
+    /** The fingerprints file. */
+    private final File file;
+
+    /** Identifies the configuration, e.g. excludes and ignored names. */
+    private final String configuration;
+
+    /** Fingerprints read from the file, keyed by RFS name. */
+    private final Map<String, Long> old = new HashMap<>();
+
+    /** Fingerprints recorded in this run. */
+    private final Map<String, Long> current = new HashMap<>();
+
+    /**
+     * @param baseFolder
+     *            the synchronization folder in the RFS
+     * @param configuration
+     *            identifies the configuration the fingerprints are valid for
+     */
+    DirectoryFingerprints(final File baseFolder, final String configuration) {
+        this.file = new File(baseFolder, FILENAME);
+        this.configuration = configuration.replace('\n', ' ');
+    }
+
+    /**
+     * Reads the fingerprints stored by the last run. A missing file or one of
+     * another configuration or sync state leaves the fingerprints empty.
+     *
+     * @param syncState
+     *            digest of the sync state file read, null if there is none
+     * @throws IOException
+     *             if the file exists but cannot be read
+     */
+    void load(final String syncState) throws IOException {
+        if ((syncState == null) || !this.file.exists()) {
+            return;
+        }
+
+        try (BufferedReader in = Files.newBufferedReader(this.file.toPath(),
+                    StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine()) ||
+                    !syncState.equals(in.readLine()) ||
+                    !this.configuration.equals(in.readLine())) {
+                return;
+            }
+
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                // fingerprint, RFS name - the name may contain tabs
+                final String[] fields = line.split("\t", 2);
+
+                if (fields.length == 2) {
+                    this.old.put(fields[1], Long.parseUnsignedLong(fields[0], 16));
+                }
+            }
+        } catch (final NumberFormatException e) {
+            this.old.clear();
+        }
+    }
+
+    /**
+     * Writes the fingerprints recorded in this run.
+     *
+     * @param syncState
+     *            digest of the sync state file written in this run
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    void save(final String syncState) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(this.file.toPath(),
+                    StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write(syncState);
+            out.newLine();
+            out.write(this.configuration);
+            out.newLine();
+
+            for (final Map.Entry<String, Long> entry : this.current.entrySet()) {
+                out.write(Long.toHexString(entry.getValue()) + '\t' + entry.getKey());
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * @param rfsName
+     *            RFS name of a folder
+     * @param fingerprint
+     *            its fingerprint in this run
+     * @return true if the last run recorded the folder with this fingerprint
+     */
+    boolean isUnchanged(final String rfsName, final long fingerprint) {
+        final Long last = this.old.get(rfsName);
+
+        return (last != null) && (last == fingerprint);
+    }
+
+    /**
+     * Records a completely synchronized folder.
+     *
+     * @param rfsName
+     *            RFS name of the folder
+     * @param fingerprint
+     *            its fingerprint
+     */
+    void put(final String rfsName, final long fingerprint) {
+        this.current.put(rfsName, fingerprint);
+    }
+
+    /**
+     * @return number of folders recorded in this run
+     */
+    int size() {
+        return this.current.size();
+    }
+}
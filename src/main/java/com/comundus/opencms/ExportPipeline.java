@@ -0,0 +1,195 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes exported files to the RFS on a pool of I/O threads while the
+ * calling thread goes on reading the VFS.
+ * <p>
+ * Every write job holds the size of its content against a byte budget until
+ * it is done, so the reading thread blocks once that much content is waiting
+ * to be written. A job larger than the whole budget runs alone.
+ * <p>
+ * Bookkeeping which has to happen after a write, like updating the sync
+ * list, is passed as a callback. Callbacks run on the calling thread, in
+ * {@link #submit(long, Job, Runnable)} and {@link #flush()}, so they need no
+ * synchronization. The first failed job makes every later call throw its
+ * exception.
+ * <p>
+ * With no writer threads, jobs and callbacks run directly in
+ * {@link #submit(long, Job, Runnable)}.
+ */
+final class ExportPipeline implements Closeable {
+
+    /** Budget unit, so budgets beyond 2 GB fit into a semaphore. */
+    private static final int KB = 1024;
+
+    /** The writer threads, null for direct execution. */
+    private final ExecutorService writers;
+
+    /** Budget in KB. */
+    private final int budget;
+
+    /** Limits the content waiting to be written. */
+    private final Semaphore available;
+
+    /** Jobs submitted and not yet flushed. */
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    /** Callbacks of finished jobs. */
+    private final Queue<Runnable> done = new ConcurrentLinkedQueue<>();
+
+    /** The first failure, rethrown by every later call. */
+    private volatile IOException failure;
+
+    /**
+     * @param writerThreads
+     *            number of writer threads, 0 or less to write directly
+     * @param budgetBytes
+     *            maximum number of content bytes waiting to be written
+     */
+    ExportPipeline(final int writerThreads, final long budgetBytes) {
+        this.budget = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / KB));
+        this.available = new Semaphore(this.budget);
+
+        if (writerThreads > 0) {
+            this.writers = Executors.newFixedThreadPool(writerThreads,
+                    (Runnable r) -> {
+                        final Thread thread = new Thread(r, "vfs-sync-export");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    });
+        } else {
+            this.writers = null;
+        }
+    }
+
+    /**
+     * Queues a write job, blocking while the byte budget is used up.
+     *
+     * @param bytes
+     *            size of the content written by the job
+     * @param job
+     *            the job, runs on a writer thread
+     * @param callback
+     *            runs on the calling thread after the job succeeded
+     * @throws IOException
+     *             if this or an earlier job failed
+     */
+    void submit(final long bytes, final Job job, final Runnable callback)
+        throws IOException {
+        this.check();
+
+        if (this.writers == null) {
+            job.write();
+            callback.run();
+
+            return;
+        }
+
+        final int permits = (int) Math.max(1, Math.min(this.budget, (bytes + KB - 1) / KB));
+
+        try {
+            this.available.acquire(permits);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the export writers");
+        }
+
+        this.pending.add(this.writers.submit(() -> {
+                    try {
+                        job.write();
+                        this.done.add(callback);
+                    } catch (final IOException e) {
+                        synchronized (this) {
+                            if (this.failure == null) {
+                                this.failure = e;
+                            }
+                        }
+                    } finally {
+                        this.available.release(permits);
+                    }
+                }));
+        this.pending.removeIf(Future::isDone);
+        this.runCallbacks();
+    }
+
+    /**
+     * Waits until all queued jobs are written and runs their callbacks.
+     *
+     * @throws IOException
+     *             if a job failed
+     */
+    void flush() throws IOException {
+        try {
+            for (final Future<?> future : this.pending) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the export writers");
+        } catch (final ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+
+        this.pending.clear();
+        this.runCallbacks();
+        this.check();
+    }
+
+    /**
+     * Stops the writer threads after the queued jobs are written; callbacks
+     * not run yet are dropped.
+     */
+    @Override
+    public void close() {
+        if (this.writers == null) {
+            return;
+        }
+
+        this.writers.shutdown();
+
+        try {
+            this.writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runCallbacks() {
+        Runnable callback;
+
+        while ((callback = this.done.poll()) != null) {
+            callback.run();
+        }
+    }
+
+    private void check() throws IOException {
+        final IOException e = this.failure;
+
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * Writes one exported resource.
+     */
+    interface Job {
+        void write() throws IOException;
+    }
+}
@@ -0,0 +1,148 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Matches file names against the ignored name patterns, with '*' and '?' as
+ * wildcards and case sensitive like the WildcardFileFilter it replaces.
+ * <p>
+ * Patterns without wildcards are looked up in a set. The others are compiled
+ * into the literal text before the first and after the last wildcard, which
+ * rejects most names with a startsWith() and an endsWith() before the
+ * wildcards are matched at all. Results are cached per name, as the same
+ * folder names like ".git" or "images" occur all over a tree. The matcher
+ * is used by several threads walking the RFS.
+ */
+final class IgnoredNamesMatcher implements Predicate<String> {
+
+    /** Maximum number of cached names. */
+    private static final int MAX_CACHED = 10000;
+
+    /** The patterns without wildcards. */
+    private final Set<String> literals = new HashSet<>();
+
+    /** The patterns with wildcards. */
+    private final List<Glob> globs = new ArrayList<>();
+
+    /** Results of the patterns with wildcards per name. */
+    private final Map<String, Boolean> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param patterns
+     *            the patterns of ignored names
+     */
+    IgnoredNamesMatcher(final Collection<String> patterns) {
+        for (final String pattern : patterns) {
+            if ((pattern.indexOf('*') < 0) && (pattern.indexOf('?') < 0)) {
+                this.literals.add(pattern);
+            } else {
+                this.globs.add(new Glob(pattern));
+            }
+        }
+    }
+
+    /**
+     * @param name
+     *            a file or folder name without path
+     * @return true if the name matches one of the patterns
+     */
+    @Override
+    public boolean test(final String name) {
+        if (this.literals.contains(name)) {
+            return true;
+        }
+
+        if (this.globs.isEmpty()) {
+            return false;
+        }
+
+        final Boolean cached = this.cache.get(name);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final boolean ignored = this.matchesGlob(name);
+
+        if (this.cache.size() < MAX_CACHED) {
+            this.cache.put(name, ignored);
+        }
+
+        return ignored;
+    }
+
+    private boolean matchesGlob(final String name) {
+        for (final Glob glob : this.globs) {
+            if (glob.matches(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * A compiled pattern with wildcards.
+     */
+    private static final class Glob {
+
+        /** Text before the first wildcard. */
+        private final String prefix;
+
+        /** Text after the last wildcard. */
+        private final String suffix;
+
+        /** The pattern between prefix and suffix, from wildcard to wildcard. */
+        private final String middle;
+
+        /** Minimum length of a matching name. */
+        private final int minLength;
+
+        /** True if the middle consists of '*' only and matches anything. */
+        private final boolean anyMiddle;
+
+        Glob(final String pattern) {
+            int first = pattern.length();
+            int last = -1;
+            int singles = 0;
+
+            for (int i = 0; i < pattern.length(); i++) {
+                final char c = pattern.charAt(i);
+
+                if ((c == '*') || (c == '?')) {
+                    first = Math.min(first, i);
+                    last = i;
+
+                    if (c == '?') {
+                        singles++;
+                    }
+                }
+            }
+
+            this.prefix = pattern.substring(0, first);
+            this.suffix = pattern.substring(last + 1);
+            this.middle = pattern.substring(first, last + 1);
+            this.minLength = this.prefix.length() + this.suffix.length() + singles;
+            this.anyMiddle = singles == 0;
+        }
+
+        boolean matches(final String name) {
+            if ((name.length() < this.minLength) || !name.startsWith(this.prefix) ||
+                    !name.endsWith(this.suffix)) {
+                return false;
+            }
+
+            return this.anyMiddle ||
+            PathTrie.globMatches(this.middle, name, this.prefix.length(),
+                name.length() - this.suffix.length());
+        }
+    }
+}
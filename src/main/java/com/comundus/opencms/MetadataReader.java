@@ -0,0 +1,255 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.opencms.importexport.CmsImportExportManager;
+import org.opencms.importexport.CmsImportVersion10;
+
+/**
+ * Reads a metadata XML file in a single pass with StAX.
+ * <p>
+ * Only the first &lt;file&gt; node is read. The text of its child elements,
+ * its properties, access control entries and relations end up in a
+ * {@link ResourceMetadata}; values are trimmed and inner whitespace is
+ * collapsed exactly like dom4j's <code>getTextTrim()</code>, which was used
+ * before, so comparisons with the VFS are not affected. Like the XPath
+ * expressions used before, the first matching element wins and access
+ * control entries are taken from any child of the file node.
+ */
+final class MetadataReader {
+
+    /** XMLInputFactory instances reuse their readers, so one per thread. */
+    private static final ThreadLocal<XMLInputFactory> FACTORY = ThreadLocal.withInitial(() -> {
+                final XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+                factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                    Boolean.FALSE);
+                factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+                return factory;
+            });
+
+    /** Path of the allowed permissions below an access entry. */
+    private static final String ALLOWED = CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET +
+        "/" + CmsImportVersion10.N_ACCESSCONTROL_ALLOWEDPERMISSIONS;
+
+    /** Path of the denied permissions below an access entry. */
+    private static final String DENIED = CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET +
+        "/" + CmsImportVersion10.N_ACCESSCONTROL_DENIEDPERMISSIONS;
+
+    private MetadataReader() {
+        // static helpers only
+    }
+
+    /**
+     * Reads a metadata file.
+     *
+     * @param metadataFile
+     *            the file
+     * @return the metadata
+     * @throws IOException
+     *             if the file cannot be read, is not well-formed or has no
+     *             file node
+     */
+    static ResourceMetadata read(final File metadataFile)
+        throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(
+                        metadataFile.toPath()))) {
+            return read(in, metadataFile.getPath());
+        }
+    }
+
+    /**
+     * Reads metadata from a byte array.
+     *
+     * @param xml
+     *            the XML
+     * @return the metadata
+     * @throws IOException
+     *             if the XML is not well-formed or has no file node
+     */
+    static ResourceMetadata read(final byte[] xml) throws IOException {
+        return read(new ByteArrayInputStream(xml), "metadata");
+    }
+
+    private static ResourceMetadata read(final InputStream in,
+        final String source) throws IOException {
+        XMLStreamReader reader = null;
+
+        try {
+            reader = FACTORY.get().createXMLStreamReader(in);
+
+            while (reader.hasNext()) {
+                if ((reader.next() == XMLStreamConstants.START_ELEMENT) &&
+                        CmsImportVersion10.N_FILE.equals(reader.getLocalName())) {
+                    return readFile(reader);
+                }
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException("Unable to parse " + source + ": " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final XMLStreamException e) {
+                    // nothing left to read
+                }
+            }
+        }
+
+        throw new IOException("No " + CmsImportVersion10.N_FILE + " node in " + source);
+    }
+
+    /**
+     * Reads the file node, the reader is positioned on its start tag.
+     */
+    private static ResourceMetadata readFile(final XMLStreamReader reader)
+        throws XMLStreamException {
+        final ResourceMetadata metadata = new ResourceMetadata();
+
+        while (nextContent(reader, null)) {
+            final String name = reader.getLocalName();
+            final StringBuilder text = new StringBuilder();
+
+            while (nextContent(reader, text)) {
+                final String childName = reader.getLocalName();
+
+                if (CmsImportVersion10.N_ACCESSCONTROL_ENTRY.equals(childName)) {
+                    final Map<String, String> entry = readRecord(reader);
+                    metadata.addAccessEntry(new ResourceMetadata.AccessEntry(
+                            entry.get(CmsImportVersion10.N_ACCESSCONTROL_PRINCIPAL),
+                            entry.get(CmsImportVersion10.N_FLAGS), entry.get(ALLOWED),
+                            entry.get(DENIED)));
+                } else if (CmsImportVersion10.N_PROPERTIES.equals(name) &&
+                        CmsImportVersion10.N_PROPERTY.equals(childName)) {
+                    final String type = reader.getAttributeValue(null,
+                            CmsImportExportManager.N_PROPERTY_ATTRIB_TYPE);
+                    final Map<String, String> property = readRecord(reader);
+                    metadata.addProperty(new ResourceMetadata.Property(
+                            property.get(CmsImportVersion10.N_NAME),
+                            property.get(CmsImportVersion10.N_VALUE), type));
+                } else if (CmsImportVersion10.N_RELATIONS.equals(name) &&
+                        CmsImportVersion10.N_RELATION.equals(childName)) {
+                    final Map<String, String> relation = readRecord(reader);
+                    metadata.addRelation(new ResourceMetadata.Relation(
+                            relation.get(CmsImportExportManager.N_RELATION_ATTRIBUTE_ID),
+                            relation.get(CmsImportExportManager.N_RELATION_ATTRIBUTE_PATH),
+                            relation.get(CmsImportExportManager.N_RELATION_ATTRIBUTE_TYPE)));
+                } else {
+                    skip(reader);
+                }
+            }
+
+            metadata.putValue(name, trim(text));
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Reads the descendants of an element into a map keyed by their path
+     * relative to the element, i.e. "permissionset/allowed".
+     */
+    private static Map<String, String> readRecord(final XMLStreamReader reader)
+        throws XMLStreamException {
+        final Map<String, String> values = new HashMap<>();
+
+        while (nextContent(reader, null)) {
+            readValue(reader, reader.getLocalName(), values);
+        }
+
+        return values;
+    }
+
+    private static void readValue(final XMLStreamReader reader,
+        final String path, final Map<String, String> values)
+        throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+
+        while (nextContent(reader, text)) {
+            readValue(reader, path + "/" + reader.getLocalName(), values);
+        }
+
+        values.putIfAbsent(path, trim(text));
+    }
+
+    private static void skip(final XMLStreamReader reader)
+        throws XMLStreamException {
+        while (nextContent(reader, null)) {
+            skip(reader);
+        }
+    }
+
+    /**
+     * Moves to the next child element of the current element, collecting the
+     * text in between.
+     *
+     * @param reader
+     *            the reader
+     * @param text
+     *            collects the text of the current element, may be null
+     * @return true if positioned on the start tag of a child element, false
+     *         if positioned on the end tag of the current element
+     */
+    private static boolean nextContent(final XMLStreamReader reader,
+        final StringBuilder text) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                return true;
+
+            case XMLStreamConstants.END_ELEMENT:
+                return false;
+
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.ENTITY_REFERENCE:
+
+                if (text != null) {
+                    text.append(reader.getText());
+                }
+
+                break;
+
+            default:
+                // comments and processing instructions do not count as text
+            }
+        }
+
+        throw new XMLStreamException("Unexpected end of document");
+    }
+
+    /**
+     * Trims a text and collapses inner whitespace like dom4j's
+     * <code>getTextTrim()</code>.
+     */
+    static String trim(final CharSequence text) {
+        final StringTokenizer tokenizer = new StringTokenizer(text.toString());
+        final StringBuilder result = new StringBuilder(text.length());
+
+        while (tokenizer.hasMoreTokens()) {
+            result.append(tokenizer.nextToken());
+
+            if (tokenizer.hasMoreTokens()) {
+                result.append(' ');
+            }
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,303 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.Arrays;
+
+/**
+ * VFS paths compiled into a tree of path segments, for excludes and the
+ * configured sync resources.
+ * <p>
+ * Paths are split at '/', leading and trailing slashes do not matter, so
+ * "/system/workplace/" and "/system/workplace" are the same entry. The root
+ * itself cannot be an entry. A
+ * segment may contain the wildcards '*' and '?', which match within the
+ * segment, a segment "**" matches any number of segments. Looking up a path
+ * takes one step per segment and does not allocate.
+ */
+final class PathTrie {
+
+    /** The segment matching any number of segments. */
+    private static final String ANY_SEGMENTS = "**";
+
+    /** Segments of the root entries. */
+    private final Node root = new Node();
+
+    /** Number of entries. */
+    private int size;
+
+    /**
+     * @param paths
+     *            the entries, may be null
+     */
+    PathTrie(final String... paths) {
+        if (paths != null) {
+            for (final String path : paths) {
+                this.add(path);
+            }
+        }
+    }
+
+    /**
+     * Adds an entry. An empty path or one of slashes only is not added: it
+     * would name the root and match every path.
+     *
+     * @param path
+     *            the path, ignored if null
+     * @return false if the path was not added because it is null or names
+     *         the root
+     */
+    boolean add(final String path) {
+        if (path == null) {
+            return false;
+        }
+
+        Node node = this.root;
+        int start = skipSlashes(path, 0);
+
+        if (start == path.length()) {
+            return false;
+        }
+
+        while (start < path.length()) {
+            final int end = segmentEnd(path, start);
+            node = node.child(path.substring(start, end));
+            start = skipSlashes(path, end);
+        }
+
+        if (!node.terminal) {
+            node.terminal = true;
+            this.size++;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if there are no entries
+     */
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param path
+     *            a VFS path
+     * @return true if the path is an entry or lies below one, wildcards
+     *         applied
+     */
+    boolean matches(final String path) {
+        return matches(this.root, path, 0);
+    }
+
+    /**
+     * @param path
+     *            a VFS path
+     * @return true if the path is exactly an entry, wildcards are taken
+     *         literally
+     */
+    boolean contains(final String path) {
+        Node node = this.root;
+        int start = skipSlashes(path, 0);
+
+        while ((node != null) && (start < path.length())) {
+            final int end = segmentEnd(path, start);
+            node = node.literal(path, start, end);
+            start = skipSlashes(path, end);
+        }
+
+        return (node != null) && node.terminal;
+    }
+
+    private static boolean matches(final Node node, final String path,
+        final int from) {
+        if (node.terminal) {
+            return true; // the path lies in the subtree of an entry
+        }
+
+        final int start = skipSlashes(path, from);
+
+        if (start == path.length()) {
+            return false;
+        }
+
+        final int end = segmentEnd(path, start);
+        final Node literal = node.literal(path, start, end);
+
+        if ((literal != null) && matches(literal, path, end)) {
+            return true;
+        }
+
+        for (int i = 0; i < node.globs.length; i++) {
+            final String glob = node.globs[i];
+
+            if (ANY_SEGMENTS.equals(glob)) {
+                // try the rest of the entry after every number of segments
+                int next = start;
+
+                while (next < path.length()) {
+                    if (matches(node.globChildren[i], path, next)) {
+                        return true;
+                    }
+
+                    next = skipSlashes(path, segmentEnd(path, next));
+                }
+            } else if (globMatches(glob, path, start, end) &&
+                    matches(node.globChildren[i], path, end)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Matches a segment against a pattern with '*' and '?', backtracking to
+     * the last '*' only.
+     */
+    static boolean globMatches(final String glob, final String path,
+        final int start, final int end) {
+        int g = 0;
+        int p = start;
+        int starGlob = -1;
+        int starPath = -1;
+
+        while (p < end) {
+            if ((g < glob.length()) &&
+                    ((glob.charAt(g) == '?') || (glob.charAt(g) == path.charAt(p)))) {
+                g++;
+                p++;
+            } else if ((g < glob.length()) && (glob.charAt(g) == '*')) {
+                starGlob = g++;
+                starPath = p;
+            } else if (starGlob >= 0) {
+                g = starGlob + 1;
+                p = ++starPath;
+            } else {
+                return false;
+            }
+        }
+
+        while ((g < glob.length()) && (glob.charAt(g) == '*')) {
+            g++;
+        }
+
+        return g == glob.length();
+    }
+
+    private static boolean isGlob(final String segment) {
+        return (segment.indexOf('*') >= 0) || (segment.indexOf('?') >= 0);
+    }
+
+    private static int skipSlashes(final String path, final int from) {
+        int i = from;
+
+        while ((i < path.length()) && (path.charAt(i) == '/')) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static int segmentEnd(final String path, final int start) {
+        final int end = path.indexOf('/', start);
+
+        return (end < 0) ? path.length() : end;
+    }
+
+    /**
+     * Compares a segment of a path with a name like String.compareTo().
+     */
+    private static int compare(final String path, final int start,
+        final int end, final String name) {
+        final int length = Math.min(end - start, name.length());
+
+        for (int i = 0; i < length; i++) {
+            final int diff = path.charAt(start + i) - name.charAt(i);
+
+            if (diff != 0) {
+                return diff;
+            }
+        }
+
+        return (end - start) - name.length();
+    }
+
+    /**
+     * A segment of one or more entries.
+     */
+    private static final class Node {
+        private static final String[] NO_NAMES = new String[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        /** Literal child segments, sorted. */
+        private String[] names = NO_NAMES;
+        private Node[] children = NO_NODES;
+
+        /** Child segments with wildcards, in the order they were added. */
+        private String[] globs = NO_NAMES;
+        private Node[] globChildren = NO_NODES;
+
+        /** True if an entry ends here. */
+        private boolean terminal;
+
+        Node child(final String segment) {
+            if (isGlob(segment)) {
+                for (int i = 0; i < this.globs.length; i++) {
+                    if (this.globs[i].equals(segment)) {
+                        return this.globChildren[i];
+                    }
+                }
+
+                final Node node = new Node();
+                this.globs = Arrays.copyOf(this.globs, this.globs.length + 1);
+                this.globChildren = Arrays.copyOf(this.globChildren, this.globChildren.length + 1);
+                this.globs[this.globs.length - 1] = segment;
+                this.globChildren[this.globChildren.length - 1] = node;
+
+                return node;
+            }
+
+            final int pos = Arrays.binarySearch(this.names, segment);
+
+            if (pos >= 0) {
+                return this.children[pos];
+            }
+
+            final int insert = -pos - 1;
+            final Node node = new Node();
+            final String[] names = new String[this.names.length + 1];
+            final Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.names, 0, names, 0, insert);
+            System.arraycopy(this.children, 0, children, 0, insert);
+            names[insert] = segment;
+            children[insert] = node;
+            System.arraycopy(this.names, insert, names, insert + 1, this.names.length - insert);
+            System.arraycopy(this.children, insert, children, insert + 1,
+                this.children.length - insert);
+            this.names = names;
+            this.children = children;
+
+            return node;
+        }
+
+        Node literal(final String path, final int start, final int end) {
+            int low = 0;
+            int high = this.names.length - 1;
+
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int cmp = compare(path, start, end, this.names[mid]);
+
+                if (cmp > 0) {
+                    low = mid + 1;
+                } else if (cmp < 0) {
+                    high = mid - 1;
+                } else {
+                    return this.children[mid];
+                }
+            }
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.opencms.file.CmsGroup;
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsUser;
+import org.opencms.main.CmsException;
+import org.opencms.util.CmsUUID;
+
+/**
+ * Caches users and groups for the duration of one run.
+ * <p>
+ * Every principal read is stored under its id and its name, so a lookup by
+ * name also serves later lookups by id and vice versa. Failed lookups are
+ * cached as well and fail again with the same exception; principals created
+ * during the run must be added with {@link #put(CmsUser)} or
+ * {@link #put(CmsGroup)} to replace such an entry. A null name or id is not
+ * cached but passed to OpenCms, which fails with a CmsException.
+ * <p>
+ * The cached objects are shared, callers must not modify them.
+ */
+final class PrincipalCache {
+
+    /** Supplies the CmsObject used to read principals on the calling thread. */
+    private final Supplier<CmsObject> cms;
+
+    /** Users or CmsExceptions, keyed by CmsUUID and by name. */
+    private final Map<Object, Object> users = new ConcurrentHashMap<>();
+
+    /** Groups or CmsExceptions, keyed by CmsUUID and by name. */
+    private final Map<Object, Object> groups = new ConcurrentHashMap<>();
+
+    /** Lookups served from the cache. */
+    private final LongAdder hits = new LongAdder();
+
+    /** Lookups read from OpenCms. */
+    private final LongAdder misses = new LongAdder();
+
+    /** Lookups read from OpenCms which failed. */
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * @param cms
+     *            supplies the CmsObject used to read principals on the
+     *            calling thread
+     */
+    PrincipalCache(final Supplier<CmsObject> cms) {
+        this.cms = cms;
+    }
+
+    CmsUser readUser(final CmsUUID id) throws CmsException {
+        return (CmsUser) this.lookup(this.users, id, () -> this.put(this.cms.get().readUser(id)));
+    }
+
+    CmsUser readUser(final String name) throws CmsException {
+        return (CmsUser) this.lookup(this.users, name, () -> this.put(this.cms.get().readUser(name)));
+    }
+
+    CmsGroup readGroup(final CmsUUID id) throws CmsException {
+        return (CmsGroup) this.lookup(this.groups, id, () -> this.put(this.cms.get().readGroup(id)));
+    }
+
+    CmsGroup readGroup(final String name) throws CmsException {
+        return (CmsGroup) this.lookup(this.groups, name, () -> this.put(this.cms.get().readGroup(name)));
+    }
+
+    /**
+     * Adds a user, i.e. after creating or writing it.
+     *
+     * @param user
+     *            the user
+     * @return the user
+     */
+    CmsUser put(final CmsUser user) {
+        this.users.put(user.getId(), user);
+        this.users.put(user.getName(), user);
+
+        return user;
+    }
+
+    /**
+     * Adds a group, i.e. after creating it.
+     *
+     * @param group
+     *            the group
+     * @return the group
+     */
+    CmsGroup put(final CmsGroup group) {
+        this.groups.put(group.getId(), group);
+        this.groups.put(group.getName(), group);
+
+        return group;
+    }
+
+    private Object lookup(final Map<Object, Object> cache, final Object key,
+        final Reader reader) throws CmsException {
+        if (key == null) {
+            // e.g. metadata without a user, OpenCms reports it as before
+            this.misses.increment();
+
+            return reader.read();
+        }
+
+        Object value = cache.get(key);
+
+        if (value == null) {
+            this.misses.increment();
+
+            try {
+                value = reader.read();
+            } catch (final CmsException e) {
+                this.failures.increment();
+                cache.put(key, e);
+                throw e;
+            }
+        } else {
+            this.hits.increment();
+        }
+
+        if (value instanceof CmsException) {
+            throw (CmsException) value;
+        }
+
+        return value;
+    }
+
+    /**
+     * @return hits and misses for the report
+     */
+    String getStatistics() {
+        return "Principal cache: " + this.hits.sum() + " hits, " + this.misses.sum() +
+        " misses (" + this.failures.sum() + " not found)";
+    }
+
+    /**
+     * Reads a principal from OpenCms.
+     */
+    private interface Reader {
+        Object read() throws CmsException;
+    }
+}
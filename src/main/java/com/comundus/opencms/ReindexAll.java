@@ -29,8 +29,10 @@ public class ReindexAll extends XmlHandling {
 		final CmOpenCmsShell cmsshell = CmOpenCmsShell.getInstance(webinfdir,
 				"Admin", adminPassword);
 
-		final CmsHtmlReport report = new CmsHtmlReport(cmsshell.getCmsObject()
-				.getRequestContext().getLocale(), cmsshell.getCmsObject()
+		this.setCms(cmsshell.getCmsObject());
+
+		final CmsHtmlReport report = new CmsHtmlReport(this.getCms()
+				.getRequestContext().getLocale(), this.getCms()
 				.getRequestContext().getSiteRoot());
 
 		OpenCms.getSearchManager().rebuildAllIndexes(report);
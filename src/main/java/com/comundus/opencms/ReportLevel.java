@@ -0,0 +1,27 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.Locale;
+
+/**
+ * How much a synchronization reports.
+ */
+public enum ReportLevel {
+    /** Headlines, summaries, warnings and errors; no line per resource. */
+    SUMMARY,
+    /** Additionally a line per resource. */
+    NORMAL,
+    /** Additionally debug messages. */
+    DEBUG;
+
+    /**
+     * @param name
+     *            the level name, case is ignored; null for {@link #NORMAL}
+     * @return the level
+     * @throws IllegalArgumentException
+     *             for an unknown name
+     */
+    public static ReportLevel parse(final String name) {
+        return (name == null) ? NORMAL : valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    }
+}
@@ -0,0 +1,189 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The content of a metadata XML file as read by {@link MetadataReader}.
+ * <p>
+ * All values are kept as the trimmed strings found in the file, interpreting
+ * them (timestamps, user names, resource types) is left to the caller.
+ */
+final class ResourceMetadata {
+
+    /** Text of the simple child elements of the file node, first one wins. */
+    private final Map<String, String> values = new HashMap<>();
+
+    /** The properties in document order. */
+    private final List<Property> properties = new ArrayList<>();
+
+    /** The access control entries in document order. */
+    private final List<AccessEntry> accessEntries = new ArrayList<>();
+
+    /** The relations in document order. */
+    private final List<Relation> relations = new ArrayList<>();
+
+    /**
+     * Returns the text of a child element of the file node, like
+     * {@link XmlHandling#getChildElementTextValue(org.dom4j.Element, String)}.
+     *
+     * @param elementName
+     *            name of the child element, i.e. "destination" or "type"
+     * @return the trimmed text of the first child element with this name, or
+     *         null if there is none
+     */
+    String getValue(final String elementName) {
+        return this.values.get(elementName);
+    }
+
+    void putValue(final String elementName, final String value) {
+        this.values.putIfAbsent(elementName, value);
+    }
+
+    /**
+     * @return the properties in document order
+     */
+    List<Property> getProperties() {
+        return Collections.unmodifiableList(this.properties);
+    }
+
+    void addProperty(final Property property) {
+        this.properties.add(property);
+    }
+
+    /**
+     * @return the access control entries in document order
+     */
+    List<AccessEntry> getAccessEntries() {
+        return Collections.unmodifiableList(this.accessEntries);
+    }
+
+    void addAccessEntry(final AccessEntry accessEntry) {
+        this.accessEntries.add(accessEntry);
+    }
+
+    /**
+     * @return the relations in document order
+     */
+    List<Relation> getRelations() {
+        return Collections.unmodifiableList(this.relations);
+    }
+
+    void addRelation(final Relation relation) {
+        this.relations.add(relation);
+    }
+
+    /**
+     * A &lt;property&gt; node.
+     */
+    static final class Property {
+        private final String name;
+        private final String value;
+        private final String type;
+
+        Property(final String name, final String value, final String type) {
+            this.name = name;
+            this.value = value;
+            this.type = type;
+        }
+
+        /**
+         * @return the property name, null if missing
+         */
+        String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return the property value, null if missing
+         */
+        String getValue() {
+            return this.value;
+        }
+
+        /**
+         * @return the type attribute, "shared" for resource values, null for
+         *         structure values
+         */
+        String getType() {
+            return this.type;
+        }
+    }
+
+    /**
+     * An &lt;accessentry&gt; node.
+     */
+    static final class AccessEntry {
+        private final String principal;
+        private final String flags;
+        private final String allowed;
+        private final String denied;
+
+        AccessEntry(final String principal, final String flags,
+            final String allowed, final String denied) {
+            this.principal = principal;
+            this.flags = flags;
+            this.allowed = allowed;
+            this.denied = denied;
+        }
+
+        /**
+         * @return the prefixed principal name, i.e. "GROUP.Users"
+         */
+        String getPrincipal() {
+            return this.principal;
+        }
+
+        String getFlags() {
+            return this.flags;
+        }
+
+        String getAllowed() {
+            return this.allowed;
+        }
+
+        String getDenied() {
+            return this.denied;
+        }
+    }
+
+    /**
+     * A &lt;relation&gt; node.
+     */
+    static final class Relation {
+        private final String id;
+        private final String path;
+        private final String type;
+
+        Relation(final String id, final String path, final String type) {
+            this.id = id;
+            this.path = path;
+            this.type = type;
+        }
+
+        /**
+         * @return the structure id of the target
+         */
+        String getId() {
+            return this.id;
+        }
+
+        /**
+         * @return the site path of the target
+         */
+        String getPath() {
+            return this.path;
+        }
+
+        /**
+         * @return the name of the relation type
+         */
+        String getType() {
+            return this.type;
+        }
+    }
+}
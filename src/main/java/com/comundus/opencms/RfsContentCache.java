@@ -0,0 +1,201 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps RFS contents read for a comparison until they are imported, so
+ * every file is read at most once per run.
+ * <p>
+ * Contents are only read into memory while they fit into a byte budget,
+ * larger files are compared without being held completely. Contents which
+ * differ from the VFS are kept for the following import; when the budget is
+ * used up, the oldest contents are dropped and read again if needed. A kept
+ * content is only handed out while the file still has the size and date it
+ * was read with.
+ * <p>
+ * OpenCms needs the complete content of a file to import it, so the import
+ * itself still holds one file in memory.
+ */
+final class RfsContentCache {
+
+    /** Maximum number of bytes held. */
+    private final long budget;
+
+    /** Bytes held by contents being compared or kept. */
+    private long used;
+
+    /** Kept contents in the order they were read, keyed by path. */
+    private final Map<String, Content> kept = new LinkedHashMap<>();
+
+    /** Contents handed out from the cache. */
+    private final LongAdder reused = new LongAdder();
+
+    /** Bytes read from files. */
+    private final LongAdder bytesRead = new LongAdder();
+
+    /**
+     * @param budget
+     *            maximum number of bytes held
+     */
+    RfsContentCache(final long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Reads a file for a comparison if it fits into the budget. The bytes
+     * stay reserved until they are passed to {@link #keep(File, long, byte[])}
+     * or {@link #release(byte[])}.
+     *
+     * @param file
+     *            the file
+     * @return the content, null if the file is too large right now
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    byte[] readForCompare(final File file) throws IOException {
+        final long size = file.length();
+
+        if (!this.reserve(size)) {
+            return null;
+        }
+
+        try {
+            final byte[] content = Files.readAllBytes(file.toPath());
+            this.bytesRead.add(content.length);
+
+            // the file may have changed meanwhile
+            this.adjust(content.length - size);
+
+            return content;
+        } catch (final IOException e) {
+            this.adjust(-size);
+            throw e;
+        }
+    }
+
+    /**
+     * Keeps a content read by {@link #readForCompare(File)} for the import.
+     *
+     * @param file
+     *            the file
+     * @param lastModified
+     *            the date of the file when it was read
+     * @param content
+     *            the content
+     */
+    synchronized void keep(final File file, final long lastModified,
+        final byte[] content) {
+        final Content old = this.kept.put(file.getAbsolutePath(),
+                new Content(lastModified, content));
+
+        if (old != null) {
+            this.used -= old.bytes.length;
+        }
+    }
+
+    /**
+     * Releases a content read by {@link #readForCompare(File)} which is not
+     * needed anymore.
+     *
+     * @param content
+     *            the content
+     */
+    void release(final byte[] content) {
+        this.adjust(-content.length);
+    }
+
+    /**
+     * Returns the content of a file, from the cache if it was kept and the
+     * file did not change since, otherwise from the file. The content is
+     * removed from the cache.
+     *
+     * @param file
+     *            the file
+     * @return the content
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    byte[] take(final File file) throws IOException {
+        final Content content;
+
+        synchronized (this) {
+            content = this.kept.remove(file.getAbsolutePath());
+
+            if (content != null) {
+                this.used -= content.bytes.length;
+            }
+        }
+
+        if ((content != null) && (content.lastModified == file.lastModified()) &&
+                (content.bytes.length == file.length())) {
+            this.reused.increment();
+
+            return content.bytes;
+        }
+
+        final byte[] read = Files.readAllBytes(file.toPath());
+        this.bytesRead.add(read.length);
+
+        return read;
+    }
+
+    /**
+     * @return number of bytes read from files
+     */
+    long getBytesRead() {
+        return this.bytesRead.sum();
+    }
+
+    /**
+     * @return number of contents imported without reading the file again
+     */
+    long getReused() {
+        return this.reused.sum();
+    }
+
+    private synchronized boolean reserve(final long size) {
+        if (size > this.budget) {
+            return false;
+        }
+
+        // the oldest kept contents make room for the comparison
+        final Iterator<Content> oldest = this.kept.values().iterator();
+
+        while (((this.used + size) > this.budget) && oldest.hasNext()) {
+            this.used -= oldest.next().bytes.length;
+            oldest.remove();
+        }
+
+        if ((this.used + size) > this.budget) {
+            return false; // other comparisons hold the budget
+        }
+
+        this.used += size;
+
+        return true;
+    }
+
+    private synchronized void adjust(final long bytes) {
+        this.used += bytes;
+    }
+
+    /**
+     * A kept content and the file date it is valid for.
+     */
+    private static final class Content {
+        private final long lastModified;
+        private final byte[] bytes;
+
+        Content(final long lastModified, final byte[] bytes) {
+            this.lastModified = lastModified;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes files to the RFS so that they are either complete or unchanged.
+ * <p>
+ * The content is written to a temporary file next to the target, named
+ * ".#name.tmp" so the default ignored names skip leftovers of an interrupted
+ * run, and then renamed over the target. Writes go through a
+ * {@link FileChannel} from a direct buffer kept per thread, which saves the
+ * stream wrappers and the extra copy the channel would make for a heap
+ * buffer.
+ * <p>
+ * When the content reaches the disk depends on the {@link Fsync} policy.
+ * Writing is thread safe.
+ */
+final class RfsFileWriter {
+
+    /**
+     * When written files are forced to the disk.
+     */
+    enum Fsync {
+        /** Before every rename, safest and slowest. */
+        ALWAYS,
+        /** All files written since the last call, by {@link RfsFileWriter#sync()}. */
+        BATCH,
+        /** Never, left to the operating system. */
+        NEVER;
+
+        /**
+         * @param name
+         *            the policy name, case is ignored; null for the default
+         * @return the policy
+         * @throws IllegalArgumentException
+         *             for an unknown name
+         */
+        static Fsync parse(final String name) {
+            return (name == null) ? BATCH : valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    /** Size of the direct write buffer per thread. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Direct write buffers, one per writer thread. */
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() ->
+            ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /** The fsync policy. */
+    private final Fsync fsync;
+
+    /** Files written and not yet forced, for {@link Fsync#BATCH}. */
+    private final List<Path> unsynced = new ArrayList<>();
+
+    /**
+     * @param fsync
+     *            when written files are forced to the disk
+     */
+    RfsFileWriter(final Fsync fsync) {
+        this.fsync = fsync;
+    }
+
+    /**
+     * Replaces a file with the given content; missing parent folders are
+     * created.
+     *
+     * @param content
+     *            the new content
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written, it is left unchanged then
+     */
+    void write(final byte[] content, final File file) throws IOException {
+        final Path target = file.toPath();
+        final Path folder = target.toAbsolutePath().getParent();
+        Files.createDirectories(folder);
+
+        final Path temp = folder.resolve(".#" + target.getFileName() + "." +
+                Thread.currentThread().getId() + ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = BUFFERS.get();
+                int offset = 0;
+
+                do {
+                    final int length = Math.min(buffer.capacity(), content.length - offset);
+                    buffer.clear();
+                    buffer.put(content, offset, length);
+                    buffer.flip();
+
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+
+                    offset += length;
+                } while (offset < content.length);
+
+                if (this.fsync == Fsync.ALWAYS) {
+                    channel.force(true);
+                }
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (this.fsync == Fsync.BATCH) {
+            synchronized (this.unsynced) {
+                this.unsynced.add(target);
+            }
+        }
+    }
+
+    /**
+     * Forces the files written since the last call to the disk, for
+     * {@link Fsync#BATCH}; does nothing for the other policies.
+     *
+     * @throws IOException
+     *             if a file cannot be forced
+     */
+    void sync() throws IOException {
+        final List<Path> paths;
+
+        synchronized (this.unsynced) {
+            paths = new ArrayList<>(this.unsynced);
+            this.unsynced.clear();
+        }
+
+        for (final Path path : paths) {
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * In-memory snapshot of a folder tree in the RFS.
+ * <p>
+ * The tree is read once with NIO on a fork-join pool, one task per folder.
+ * The attributes of every entry are read exactly once while walking, so the
+ * synchronization phases can query the snapshot instead of calling
+ * {@code isDirectory()}, {@code exists()} or {@code lastModified()} on each
+ * file again. Whether a name is ignored is decided once per entry, too.
+ * <p>
+ * Every folder gets a fingerprint of its content: a hash over name, size and
+ * date of its files and the fingerprints of its subfolders, ignored entries
+ * left out. A folder whose fingerprint has not changed holds exactly the same
+ * files as before.
+ */
+final class RfsTree {
+
+    /** True if the hidden flag has to be read from the DOS attributes. */
+    private static final boolean DOS_ATTRIBUTES = File.separatorChar == '\\';
+
+    /** All entries of the snapshot, keyed by their absolute path. */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** The root entry, null if the root does not exist. */
+    private Entry root;
+
+    private RfsTree() {
+        // use walk()
+    }
+
+    /**
+     * Reads the tree below the given root folder.
+     *
+     * @param rootFolder
+     *            the folder to read
+     * @param ignored
+     *            names of ignored files and folders; they are still part of
+     *            the snapshot, but the content of ignored folders is not read
+     * @param parallelism
+     *            number of threads used for walking
+     * @return the snapshot, empty if the root does not exist
+     * @throws IOException
+     *             if a folder can not be listed
+     */
+    static RfsTree walk(final File rootFolder, final Predicate<String> ignored,
+        final int parallelism) throws IOException {
+        final RfsTree tree = new RfsTree();
+        final Path rootPath = rootFolder.getAbsoluteFile().toPath();
+        tree.root = tree.readEntry(rootPath, rootFolder.getAbsoluteFile().getName(), ignored);
+
+        if ((tree.root == null) || !tree.root.isDirectory()) {
+            return tree;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+
+        try {
+            pool.invoke(new FolderTask(tree, tree.root, rootPath, ignored));
+        } catch (final UncheckedIOExceptionWrapper e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+
+        return tree;
+    }
+
+    /**
+     * Reads the attributes of a single path.
+     *
+     * @return the new entry or null if the attributes could not be read, i.e.
+     *         for dangling links
+     */
+    private Entry readEntry(final Path path, final String name,
+        final Predicate<String> ignored) {
+        final BasicFileAttributes attrs;
+        boolean hidden;
+
+        try {
+            if (DOS_ATTRIBUTES) {
+                final DosFileAttributes dos = Files.readAttributes(path,
+                        DosFileAttributes.class);
+                hidden = dos.isHidden();
+                attrs = dos;
+            } else {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                hidden = name.startsWith(".");
+            }
+        } catch (final IOException e) {
+            return null;
+        }
+
+        final Entry entry = new Entry(path.toString(), name, attrs.isDirectory(),
+                hidden, ignored.test(name), attrs.size(), attrs.lastModifiedTime().toMillis());
+        this.entries.put(entry.getPath(), entry);
+
+        return entry;
+    }
+
+    /**
+     * @return the root entry, null if the root folder does not exist
+     */
+    Entry getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Looks up the entry for the given file.
+     *
+     * @param file
+     *            the file
+     * @return the entry or null if the file does not exist in the snapshot
+     */
+    Entry get(final File file) {
+        return this.entries.get(file.getAbsolutePath());
+    }
+
+    /**
+     * @param entry
+     *            the entry to check
+     * @return true if the entry is still part of the snapshot
+     */
+    boolean contains(final Entry entry) {
+        return (entry != null) && (this.entries.get(entry.getPath()) == entry);
+    }
+
+    /**
+     * Removes an entry and all its descendants from the snapshot, used when
+     * the file has been deleted from the RFS.
+     *
+     * @param entry
+     *            the entry to remove
+     */
+    void remove(final Entry entry) {
+        this.entries.remove(entry.getPath());
+
+        for (final Entry child : entry.getChildren()) {
+            this.remove(child);
+        }
+    }
+
+    /**
+     * @return the number of entries in the snapshot
+     */
+    int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Reads one folder and forks a task for every subfolder.
+     */
+    private static final class FolderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient RfsTree tree;
+        private final transient Entry folder;
+        private final transient Path path;
+        private final transient Predicate<String> ignored;
+
+        FolderTask(final RfsTree tree, final Entry folder, final Path path,
+            final Predicate<String> ignored) {
+            this.tree = tree;
+            this.folder = folder;
+            this.path = path;
+            this.ignored = ignored;
+        }
+
+        @Override
+        protected void compute() {
+            final List<Entry> children = new ArrayList<>();
+            final List<FolderTask> subtasks = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.path)) {
+                for (final Path child : stream) {
+                    final String name = child.getFileName().toString();
+                    final Entry entry = this.tree.readEntry(child, name, this.ignored);
+
+                    if (entry == null) {
+                        continue;
+                    }
+
+                    children.add(entry);
+
+                    if (entry.isDirectory() && !entry.isIgnored()) {
+                        subtasks.add(new FolderTask(this.tree, entry, child, this.ignored));
+                    }
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOExceptionWrapper(e);
+            }
+
+            this.folder.children = Collections.unmodifiableList(children);
+            invokeAll(subtasks);
+            // the subfolders are complete now
+            this.folder.fingerprint = fingerprint(children);
+        }
+    }
+
+    /**
+     * Hashes name, size and date of the files and the fingerprints of the
+     * subfolders, sorted by name as the listing order is undefined.
+     */
+    private static long fingerprint(final List<Entry> children) {
+        final MessageDigest md;
+
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+
+        final List<Entry> sorted = new ArrayList<>(children);
+        sorted.sort(Comparator.comparing(Entry::getName));
+
+        final ByteBuffer record = ByteBuffer.allocate(18);
+
+        for (final Entry child : sorted) {
+            if (child.isIgnored()) {
+                continue;
+            }
+
+            record.clear();
+            // the name is terminated by a byte no file name contains
+            record.put((byte) 0);
+
+            if (child.isDirectory()) {
+                record.put((byte) 1).putLong(child.getFingerprint()).putLong(0);
+            } else {
+                record.put((byte) 0).putLong(child.getSize()).putLong(child.getLastModified());
+            }
+
+            md.update(child.getName().getBytes(StandardCharsets.UTF_8));
+            md.update(record.array());
+        }
+
+        return ByteBuffer.wrap(md.digest()).getLong();
+    }
+
+    /**
+     * Carries an IOException out of the fork-join pool.
+     */
+    private static final class UncheckedIOExceptionWrapper extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedIOExceptionWrapper(final IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * A file or folder of the snapshot.
+     */
+    static final class Entry {
+        private final String path;
+        private final String name;
+        private final boolean directory;
+        private final boolean hidden;
+        private final boolean ignored;
+        private final long size;
+        private final long lastModified;
+
+        /** Set by the walker; stays empty for files and ignored folders. */
+        private volatile List<Entry> children = Collections.emptyList();
+
+        /** Set by the walker for folders which are read. */
+        private volatile long fingerprint;
+
+        Entry(final String path, final String name, final boolean directory,
+            final boolean hidden, final boolean ignored, final long size,
+            final long lastModified) {
+            this.path = path;
+            this.name = name;
+            this.directory = directory;
+            this.hidden = hidden;
+            this.ignored = ignored;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the absolute path in the RFS
+         */
+        String getPath() {
+            return this.path;
+        }
+
+        /**
+         * @return the file name without path
+         */
+        String getName() {
+            return this.name;
+        }
+
+        boolean isDirectory() {
+            return this.directory;
+        }
+
+        boolean isFile() {
+            return !this.directory;
+        }
+
+        boolean isHidden() {
+            return this.hidden;
+        }
+
+        /**
+         * @return true if the name matches the ignored names
+         */
+        boolean isIgnored() {
+            return this.ignored;
+        }
+
+        long getSize() {
+            return this.size;
+        }
+
+        long getLastModified() {
+            return this.lastModified;
+        }
+
+        /**
+         * @return the fingerprint of the content of this folder, 0 for files
+         *         and ignored folders
+         */
+        long getFingerprint() {
+            return this.fingerprint;
+        }
+
+        /**
+         * @return the entries of this folder, empty for files
+         */
+        List<Entry> getChildren() {
+            return this.children;
+        }
+
+        /**
+         * @return the entry as java.io.File
+         */
+        File toFile() {
+            return new File(this.path);
+        }
+
+        @Override
+        public String toString() {
+            return this.path;
+        }
+    }
+}
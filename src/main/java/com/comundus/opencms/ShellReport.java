@@ -0,0 +1,211 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+
+import org.opencms.report.CmsPrintStreamReport;
+
+/**
+ * A shell report which can write to the console on a background thread.
+ * <p>
+ * Printing then only copies the text into a ring buffer; a writer thread
+ * passes it on to {@link System#out}. The report blocks only while the
+ * buffer is full. {@link #close()} waits until everything is written.
+ */
+final class ShellReport extends CmsPrintStreamReport {
+
+    /** Size of the ring buffer. */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /** The asynchronous stream, null if writing directly. */
+    private final AsyncOutputStream async;
+
+    /**
+     * @param locale
+     *            the report locale
+     * @param async
+     *            true to write on a background thread
+     */
+    ShellReport(final Locale locale, final boolean async) {
+        this(locale, async ? new AsyncOutputStream(System.out, BUFFER_SIZE) : null);
+    }
+
+    private ShellReport(final Locale locale, final AsyncOutputStream async) {
+        super((async == null) ? System.out : new PrintStream(async), locale, false);
+        this.async = async;
+    }
+
+    /**
+     * Waits until the report is written and stops the writer thread.
+     */
+    void close() {
+        if (this.async != null) {
+            this.async.close();
+        }
+    }
+
+    /**
+     * Passes written bytes to another stream on a background thread.
+     */
+    static final class AsyncOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final byte[] ring;
+        private final Thread writer;
+
+        /** Position of the next byte to write to the target. */
+        private int head;
+
+        /** Number of bytes in the ring. */
+        private int size;
+
+        /** True while the writer passes bytes on outside the lock. */
+        private boolean writing;
+
+        private boolean closed;
+
+        private IOException failure;
+
+        /**
+         * @param target
+         *            the stream to write to
+         * @param capacity
+         *            size of the ring buffer
+         */
+        AsyncOutputStream(final OutputStream target, final int capacity) {
+            this.target = target;
+            this.ring = new byte[capacity];
+            this.writer = new Thread(this::drain, "vfs-sync-report");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, int off, int len)
+            throws IOException {
+            while (len > 0) {
+                while ((this.size == this.ring.length) && (this.failure == null)) {
+                    this.await();
+                }
+
+                if (this.failure != null) {
+                    throw this.failure;
+                }
+
+                if (this.closed) {
+                    throw new IOException("Report closed");
+                }
+
+                final int tail = (this.head + this.size) % this.ring.length;
+                final int chunk = Math.min(len,
+                        Math.min(this.ring.length - this.size, this.ring.length - tail));
+                System.arraycopy(b, off, this.ring, tail, chunk);
+                this.size += chunk;
+                off += chunk;
+                len -= chunk;
+                this.notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            while (((this.size > 0) || this.writing) && (this.failure == null)) {
+                this.await();
+            }
+
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                try {
+                    this.flush();
+                } catch (final IOException e) {
+                    // nothing more to report on
+                }
+
+                this.closed = true;
+                this.notifyAll();
+            }
+
+            try {
+                this.writer.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void drain() {
+            final byte[] chunk = new byte[8192];
+
+            while (true) {
+                final int length;
+
+                synchronized (this) {
+                    this.writing = false;
+                    this.notifyAll();
+
+                    while ((this.size == 0) && !this.closed) {
+                        try {
+                            this.wait();
+                        } catch (final InterruptedException e) {
+                            return;
+                        }
+                    }
+
+                    if (this.size == 0) {
+                        return; // closed
+                    }
+
+                    length = Math.min(chunk.length,
+                            Math.min(this.size, this.ring.length - this.head));
+                    System.arraycopy(this.ring, this.head, chunk, 0, length);
+                    this.head = (this.head + length) % this.ring.length;
+                    this.size -= length;
+                    this.writing = true;
+                    this.notifyAll();
+                }
+
+                try {
+                    this.target.write(chunk, 0, length);
+
+                    if (this.isEmpty()) {
+                        this.target.flush();
+                    }
+                } catch (final IOException e) {
+                    synchronized (this) {
+                        this.failure = e;
+                        this.writing = false;
+                        this.notifyAll();
+                    }
+
+                    return;
+                }
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        private void await() throws InterruptedIOException {
+            try {
+                this.wait();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing the report");
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.opencms.i18n.CmsMessageContainer;
+import org.opencms.report.CmsPrintStreamReport;
+import org.opencms.report.I_CmsReport;
+
+/**
+ * The report for the lines per resource at {@link ReportLevel#SUMMARY}.
+ * <p>
+ * Only headlines, warnings and errors are passed on to the actual report;
+ * all other messages are dropped before they are formatted. Errors and
+ * warnings added here are added to the actual report.
+ */
+final class SummaryReport extends CmsPrintStreamReport {
+
+    /** The actual report. */
+    private final I_CmsReport target;
+
+    /** True if the current line of the actual report has been started here. */
+    private boolean lineOpen;
+
+    /**
+     * @param target
+     *            the actual report
+     */
+    SummaryReport(final I_CmsReport target) {
+        super(new PrintStream(OutputStream.nullOutputStream()), target.getLocale(), false);
+        this.target = target;
+    }
+
+    /**
+     * @return the actual report
+     */
+    I_CmsReport getTarget() {
+        return this.target;
+    }
+
+    @Override
+    public void print(final CmsMessageContainer container) {
+        this.print(container, FORMAT_DEFAULT);
+    }
+
+    @Override
+    public synchronized void print(final CmsMessageContainer container, final int format) {
+        if (isPassed(format)) {
+            this.target.print(container, format);
+            this.lineOpen = true;
+        }
+    }
+
+    @Override
+    public synchronized void println() {
+        if (this.lineOpen) {
+            this.target.println();
+            this.lineOpen = false;
+        }
+    }
+
+    @Override
+    public void println(final CmsMessageContainer container) {
+        this.println(container, FORMAT_DEFAULT);
+    }
+
+    @Override
+    public synchronized void println(final CmsMessageContainer container, final int format) {
+        if (isPassed(format)) {
+            this.target.println(container, format);
+            this.lineOpen = false;
+        } else {
+            this.println();
+        }
+    }
+
+    @Override
+    public void println(final Throwable t) {
+        this.target.println(t);
+    }
+
+    @Override
+    public void addError(final Object obj) {
+        this.target.addError(obj);
+    }
+
+    @Override
+    public void addWarning(final Object obj) {
+        this.target.addWarning(obj);
+    }
+
+    private static boolean isPassed(final int format) {
+        return (format == FORMAT_HEADLINE) || (format == FORMAT_WARNING) ||
+        (format == FORMAT_ERROR) || (format == FORMAT_EXCEPTION);
+    }
+}
@@ -0,0 +1,153 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.opencms.json.JSONException;
+import org.opencms.json.JSONObject;
+
+/**
+ * Wall time and counters per phase of a synchronization run.
+ * <p>
+ * Counters are registered once as suppliers of running totals; a phase
+ * records how much each of them grew while it ran. Allocation is measured
+ * for the thread running the phase only, work handed to plan or writer
+ * threads is not included.
+ * <p>
+ * Usage:
+ * <pre>
+ * try (SyncMetrics.Phase phase = metrics.start("copyFromRfs")) {
+ *     ...
+ * }
+ * </pre>
+ */
+final class SyncMetrics {
+
+    /** Counter name of the allocated bytes. */
+    private static final String ALLOCATED = "allocatedBytes";
+
+    /** The registered counters. */
+    private final Map<String, LongSupplier> counters = new LinkedHashMap<>();
+
+    /** The finished phases in the order they ended. */
+    private final Map<String, Map<String, Long>> phases = new LinkedHashMap<>();
+
+    /** Start of the run. */
+    private final long started = System.nanoTime();
+
+    SyncMetrics() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if ((threads instanceof com.sun.management.ThreadMXBean) &&
+                ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            final com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+            this.counters.put(ALLOCATED,
+                () -> allocation.getThreadAllocatedBytes(Thread.currentThread().getId()));
+        }
+    }
+
+    /**
+     * Registers a counter.
+     *
+     * @param name
+     *            name of the counter in the output
+     * @param total
+     *            supplies the running total
+     */
+    void register(final String name, final LongSupplier total) {
+        this.counters.put(name, total);
+    }
+
+    /**
+     * Starts a phase. A phase started again adds to its earlier values.
+     *
+     * @param name
+     *            name of the phase
+     * @return the phase, to be closed when it ends
+     */
+    Phase start(final String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Writes the phases as JSON.
+     *
+     * @param file
+     *            the file to write, its folder is created if necessary
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    void write(final File file) throws IOException {
+        final File folder = file.getAbsoluteFile().getParentFile();
+
+        if (folder != null) {
+            Files.createDirectories(folder.toPath());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(this.toJson().toString(2));
+            writer.write('\n');
+        } catch (final JSONException e) {
+            throw new IOException("Unable to write " + file, e);
+        }
+    }
+
+    private JSONObject toJson() throws JSONException {
+        final JSONObject phasesJson = new JSONObject();
+
+        for (final Map.Entry<String, Map<String, Long>> phase : this.phases.entrySet()) {
+            phasesJson.put(phase.getKey(), new JSONObject(phase.getValue()));
+        }
+
+        return new JSONObject().put("totalMillis", (System.nanoTime() - this.started) / 1000000)
+                               .put("phases", phasesJson);
+    }
+
+    private synchronized void record(final String name, final Map<String, Long> values) {
+        final Map<String, Long> phase = this.phases.computeIfAbsent(name,
+                (String key) -> new LinkedHashMap<>());
+
+        for (final Map.Entry<String, Long> value : values.entrySet()) {
+            phase.merge(value.getKey(), value.getValue(), Long::sum);
+        }
+    }
+
+    /**
+     * A running phase.
+     */
+    final class Phase implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final Map<String, Long> before = new LinkedHashMap<>();
+
+        Phase(final String name) {
+            this.name = name;
+
+            for (final Map.Entry<String, LongSupplier> counter : SyncMetrics.this.counters.entrySet()) {
+                this.before.put(counter.getKey(), counter.getValue().getAsLong());
+            }
+        }
+
+        @Override
+        public void close() {
+            final Map<String, Long> values = new LinkedHashMap<>();
+            values.put("millis", (System.nanoTime() - this.start) / 1000000);
+
+            for (final Map.Entry<String, LongSupplier> counter : SyncMetrics.this.counters.entrySet()) {
+                final Long old = this.before.get(counter.getKey());
+                values.put(counter.getKey(),
+                    counter.getValue().getAsLong() - ((old == null) ? 0 : old));
+            }
+
+            SyncMetrics.this.record(this.name, values);
+        }
+    }
+}
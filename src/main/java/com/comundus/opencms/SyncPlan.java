@@ -0,0 +1,115 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.opencms.file.CmsResource;
+
+/**
+ * The actions to synchronize one VFS subtree with the RFS, in the order they
+ * have to be applied.
+ * <p>
+ * A plan is built by walking the VFS without changing anything. The steps
+ * are listed in the order of the former recursive synchronization: every
+ * resource before its children, and for every folder an additional step after
+ * its subtree, as a folder can only be deleted once its children are gone.
+ * The action of each step is determined afterwards and independently of all
+ * other steps, so this may happen in parallel.
+ */
+final class SyncPlan {
+
+    /** The steps in the order they have to be applied. */
+    private final List<Step> steps = new ArrayList<>();
+
+    void add(final Step step) {
+        this.steps.add(step);
+    }
+
+    /**
+     * @return the steps in the order they have to be applied
+     */
+    List<Step> getSteps() {
+        return Collections.unmodifiableList(this.steps);
+    }
+
+    /**
+     * @param action
+     *            one of the actions of {@link VfsSync}, 0 for none
+     * @return number of resources with this action
+     */
+    int count(final int action) {
+        int count = 0;
+
+        for (final Step step : this.steps) {
+            if (!step.isSubtreeEnd() && (step.getAction() == action)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * One VFS resource and the action to take for it.
+     */
+    static final class Step {
+        private final CmsResource resource;
+        private final boolean startFolder;
+        private final Step folderStep;
+        private volatile int action;
+
+        /**
+         * @param resource
+         *            the VFS resource
+         * @param startFolder
+         *            true for the configured sync resource itself, which is
+         *            never deleted
+         */
+        Step(final CmsResource resource, final boolean startFolder) {
+            this.resource = resource;
+            this.startFolder = startFolder;
+            this.folderStep = null;
+        }
+
+        /**
+         * Creates the step following the subtree of a folder.
+         *
+         * @param folderStep
+         *            the step of the folder
+         */
+        Step(final Step folderStep) {
+            this.resource = folderStep.resource;
+            this.startFolder = false;
+            this.folderStep = folderStep;
+        }
+
+        CmsResource getResource() {
+            return this.resource;
+        }
+
+        boolean isStartFolder() {
+            return this.startFolder;
+        }
+
+        /**
+         * @return true if this step follows the subtree of a folder and
+         *         shares the action of the folder step
+         */
+        boolean isSubtreeEnd() {
+            return this.folderStep != null;
+        }
+
+        /**
+         * @return one of the actions of {@link VfsSync}, 0 for none
+         */
+        int getAction() {
+            return (this.folderStep == null) ? this.action : this.folderStep.action;
+        }
+
+        void setAction(final int action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opencms.json.JSONArray;
+import org.opencms.json.JSONException;
+import org.opencms.json.JSONObject;
+
+/**
+ * The outcome of a dry run: every change a synchronization would make, with
+ * its size and a rough duration estimate.
+ * <p>
+ * The estimate assumes a fixed overhead per resource plus the time to copy
+ * its content at a given throughput. Both figures depend on the database and
+ * file system, so they are configurable; they are meant for sizing
+ * maintenance windows, not as a promise.
+ */
+final class SyncPlanReport {
+
+    /** Export from the VFS to the RFS. */
+    static final String EXPORT = "export";
+
+    /** Update of the VFS from the RFS. */
+    static final String UPDATE = "update";
+
+    /** Deletion from the VFS. */
+    static final String DELETE_FROM_VFS = "deleteFromVfs";
+
+    /** Import of a new RFS resource into the VFS. */
+    static final String IMPORT = "import";
+
+    /** Deletion from the RFS. */
+    static final String DELETE_FROM_RFS = "deleteFromRfs";
+
+    /** Resource deleted from the VFS whose RFS files are only reported. */
+    static final String OBSOLETE_IN_RFS = "obsoleteInRfs";
+
+    /** Fixed cost per changed resource in milliseconds. */
+    private final long millisPerResource;
+
+    /** Content throughput in bytes per second. */
+    private final long bytesPerSecond;
+
+    /** The planned changes in the order they would be applied. */
+    private final JSONArray resources = new JSONArray();
+
+    /** Count and bytes per action. */
+    private final Map<String, long[]> totals = new LinkedHashMap<>();
+
+    /** Number of resources left untouched. */
+    private int unchanged;
+
+    /**
+     * @param millisPerResource
+     *            fixed cost per changed resource in milliseconds
+     * @param bytesPerSecond
+     *            content throughput in bytes per second
+     */
+    SyncPlanReport(final long millisPerResource, final long bytesPerSecond) {
+        this.millisPerResource = millisPerResource;
+        this.bytesPerSecond = Math.max(1, bytesPerSecond);
+
+        for (final String action : new String[] {
+                    EXPORT, UPDATE, DELETE_FROM_VFS, IMPORT, DELETE_FROM_RFS,
+                    OBSOLETE_IN_RFS
+                }) {
+            this.totals.put(action, new long[2]);
+        }
+    }
+
+    /**
+     * Adds a planned change.
+     *
+     * @param action
+     *            one of the action constants
+     * @param path
+     *            VFS path of the resource, RFS path for RFS deletions
+     * @param bytes
+     *            size of the content to be copied or deleted
+     */
+    void add(final String action, final String path, final long bytes) {
+        final long size = Math.max(0, bytes);
+        final long[] total = this.totals.get(action);
+        total[0]++;
+        total[1] += size;
+
+        try {
+            this.resources.put(new JSONObject().put("action", action).put("path", path)
+                                               .put("bytes", size)
+                                               .put("millis", this.estimate(action, 1, size)));
+        } catch (final JSONException e) {
+            // only thrown for non-finite numbers
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Counts a resource that is already in sync.
+     */
+    void addUnchanged() {
+        this.unchanged++;
+    }
+
+    /**
+     * @return number of planned changes; reported obsolete RFS files do not
+     *         count, as they are left alone
+     */
+    int getChanges() {
+        int changes = 0;
+
+        for (final Map.Entry<String, long[]> total : this.totals.entrySet()) {
+            if (!OBSOLETE_IN_RFS.equals(total.getKey())) {
+                changes += (int) total.getValue()[0];
+            }
+        }
+
+        return changes;
+    }
+
+    /**
+     * @return the estimated duration of all changes in milliseconds
+     */
+    long getEstimatedMillis() {
+        long millis = 0;
+
+        for (final Map.Entry<String, long[]> total : this.totals.entrySet()) {
+            millis += this.estimate(total.getKey(), total.getValue()[0], total.getValue()[1]);
+        }
+
+        return millis;
+    }
+
+    /**
+     * @return one line for the report
+     */
+    String getSummary() {
+        final StringBuilder summary = new StringBuilder("Plan:");
+
+        for (final Map.Entry<String, long[]> total : this.totals.entrySet()) {
+            summary.append(' ').append(total.getKey()).append('=').append(total.getValue()[0]);
+        }
+
+        return summary.append(", unchanged=").append(this.unchanged).append(", estimated ")
+                      .append(this.getEstimatedMillis() / 1000).append(" s").toString();
+    }
+
+    /**
+     * Writes the plan as JSON.
+     *
+     * @param file
+     *            the file to write, its folder is created if necessary
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    void write(final File file) throws IOException {
+        final File folder = file.getAbsoluteFile().getParentFile();
+
+        if (folder != null) {
+            Files.createDirectories(folder.toPath());
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(this.toJson().toString(2));
+            writer.write('\n');
+        } catch (final JSONException e) {
+            throw new IOException("Unable to write " + file, e);
+        }
+    }
+
+    private JSONObject toJson() throws JSONException {
+        final JSONObject summary = new JSONObject();
+
+        for (final Map.Entry<String, long[]> total : this.totals.entrySet()) {
+            summary.put(total.getKey(),
+                new JSONObject().put("count", total.getValue()[0]).put("bytes", total.getValue()[1]));
+        }
+
+        summary.put("unchanged", this.unchanged);
+        summary.put("changes", this.getChanges());
+        summary.put("estimatedMillis", this.getEstimatedMillis());
+
+        return new JSONObject().put("summary", summary).put("resources", this.resources);
+    }
+
+    private long estimate(final String action, final long count, final long bytes) {
+        if (OBSOLETE_IN_RFS.equals(action)) {
+            return 0;
+        }
+
+        return (count * this.millisPerResource) + ((bytes * 1000) / this.bytesPerSecond);
+    }
+}
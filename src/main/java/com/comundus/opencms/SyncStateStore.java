@@ -0,0 +1,330 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.PrintWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.function.UnaryOperator;
+
+import org.opencms.synchronize.CmsSynchronizeList;
+
+/**
+ * Reads and writes the synchronization state of the last sync process.
+ * <p>
+ * The state is stored in the versioned binary file "#syncstate.bin": a
+ * header (magic number, format version, number of entries) followed by one
+ * record per resource with the RFS name, the translated VFS name (only if it
+ * differs), and the VFS and RFS modification dates as plain longs. The file is
+ * memory-mapped for loading, except on Windows where a mapped file could not be
+ * replaced by the following write. A record whose translated name equals
+ * the RFS name yields a single String for both names and the map key.
+ * <p>
+ * The text format "#synclist.txt" of the original OpenCms synchronization is
+ * still read if no binary state exists, and written instead of the binary
+ * state on request. Only one of both files is kept. Equal names read from the
+ * text format are interned per load, so they share one String as well.
+ * <p>
+ * A truncated or otherwise corrupt state file is reported as IOException.
+ */
+final class SyncStateStore {
+
+    /** Filename of the binary state file. */
+    static final String FILENAME = "#syncstate.bin";
+
+    /** Filename of the legacy text format. */
+    static final String LEGACY_FILENAME = "#synclist.txt";
+
+    /** Current version of the binary format. */
+    static final int VERSION = 1;
+
+    /** Identifies a binary state file, "VSYS". */
+    private static final int MAGIC = 0x56535953;
+
+    /** Marks a record whose translated name equals the RFS name. */
+    private static final byte SAME_NAME = 0;
+
+    /** Marks a record with a separate translated name. */
+    private static final byte OTHER_NAME = 1;
+
+    /** Mapped files cannot be replaced on Windows while the mapping is alive. */
+    private static final boolean MAP_FILE = File.separatorChar != '\\';
+
+    /** The folder the state files are stored in. */
+    private final File folder;
+
+    /**
+     * @param folder
+     *            the synchronization folder in the RFS
+     */
+    SyncStateStore(final File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Reads the state of the last sync process, from the binary state if it
+     * exists, otherwise from the legacy text format.
+     *
+     * @param translator
+     *            translates RFS names to VFS names, only used for the text
+     *            format; binary records already hold the translated name
+     * @return the entries keyed by their translated name, empty if no state
+     *         exists
+     * @throws IOException
+     *             if the state cannot be read
+     */
+    Map<String, CmsSynchronizeList> read(final UnaryOperator<String> translator)
+        throws IOException {
+        final File stateFile = new File(this.folder, FILENAME);
+
+        if (stateFile.exists()) {
+            return readBinary(stateFile);
+        }
+
+        final File legacyFile = new File(this.folder, LEGACY_FILENAME);
+
+        if (legacyFile.exists()) {
+            return readText(legacyFile, translator);
+        }
+
+        return new HashMap<>();
+    }
+
+    /**
+     * Writes the state of the current sync process and removes the file of
+     * the other format.
+     *
+     * @param entries
+     *            the entries of the new sync list
+     * @param legacyFormat
+     *            if true write "#synclist.txt" instead of "#syncstate.bin"
+     * @throws IOException
+     *             if the state cannot be written
+     */
+    void write(final Collection<CmsSynchronizeList> entries,
+        final boolean legacyFormat) throws IOException {
+        final File stateFile = new File(this.folder, FILENAME);
+        final File legacyFile = new File(this.folder, LEGACY_FILENAME);
+
+        if (legacyFormat) {
+            writeText(legacyFile, entries);
+            Files.deleteIfExists(stateFile.toPath());
+        } else {
+            writeBinary(stateFile, entries);
+            Files.deleteIfExists(legacyFile.toPath());
+        }
+    }
+
+    private static Map<String, CmsSynchronizeList> readBinary(final File stateFile)
+        throws IOException {
+        final ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(stateFile.toPath(),
+                    StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (MAP_FILE) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+
+                while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+                    // read everything
+                }
+
+                buffer.flip();
+            }
+        }
+
+        if ((buffer.remaining() < 12) || (buffer.getInt() != MAGIC)) {
+            throw new IOException("Not a sync state file: " + stateFile);
+        }
+
+        final int version = buffer.getInt();
+
+        if ((version < 1) || (version > VERSION)) {
+            throw new IOException("Unsupported sync state version " + version +
+                " in " + stateFile);
+        }
+
+        try {
+            final int count = buffer.getInt();
+
+            // a record takes at least a length, the flag and two dates
+            if ((count < 0) || (count > (buffer.remaining() / 21))) {
+                throw new IOException("Corrupt sync state file: " + stateFile);
+            }
+
+            final Map<String, CmsSynchronizeList> result = new HashMap<>(
+                    (int) (count / 0.75f) + 1);
+            byte[] scratch = new byte[256];
+
+            for (int i = 0; i < count; i++) {
+                int length = readLength(buffer, stateFile);
+
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, scratch.length * 2)];
+                }
+
+                buffer.get(scratch, 0, length);
+
+                final String resName = new String(scratch, 0, length,
+                        StandardCharsets.UTF_8);
+                final String transResName;
+
+                if (buffer.get() == SAME_NAME) {
+                    transResName = resName;
+                } else {
+                    length = readLength(buffer, stateFile);
+
+                    if (scratch.length < length) {
+                        scratch = new byte[Math.max(length, scratch.length * 2)];
+                    }
+
+                    buffer.get(scratch, 0, length);
+                    transResName = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+
+                final long modifiedVfs = buffer.getLong();
+                final long modifiedFs = buffer.getLong();
+                result.put(transResName,
+                    new CmsSynchronizeList(resName, transResName, modifiedVfs, modifiedFs));
+            }
+
+            return result;
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated sync state file: " + stateFile, e);
+        }
+    }
+
+    /**
+     * Reads the length of a name and checks that the name fits into the
+     * rest of the file.
+     */
+    private static int readLength(final ByteBuffer buffer, final File stateFile)
+        throws IOException {
+        final int length = buffer.getInt();
+
+        if ((length < 0) || (length > buffer.remaining())) {
+            throw new IOException("Corrupt sync state file: " + stateFile);
+        }
+
+        return length;
+    }
+
+    private static void writeBinary(final File stateFile,
+        final Collection<CmsSynchronizeList> entries) throws IOException {
+        final File tempFile = new File(stateFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(tempFile.toPath()), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+
+            for (final CmsSynchronizeList sync : entries) {
+                final byte[] resName = sync.getResName().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(resName.length);
+                out.write(resName);
+
+                if (sync.getResName().equals(sync.getTransResName())) {
+                    out.writeByte(SAME_NAME);
+                } else {
+                    final byte[] transResName = sync.getTransResName()
+                                                    .getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(OTHER_NAME);
+                    out.writeInt(transResName.length);
+                    out.write(transResName);
+                }
+
+                out.writeLong(sync.getModifiedVfs());
+                out.writeLong(sync.getModifiedFs());
+            }
+        }
+
+        try {
+            Files.move(tempFile.toPath(), stateFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), stateFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // code taken from org.opencms.synchronize.CmsSynchronize
+    private static Map<String, CmsSynchronizeList> readText(final File syncListFile,
+        final UnaryOperator<String> translator) throws IOException {
+        final Map<String, CmsSynchronizeList> sList = new HashMap<>();
+        // the key and both names are mostly equal, keep one String for them
+        final Map<String, String> names = new HashMap<>();
+
+        try (FileReader fIn = new FileReader(syncListFile);
+                LineNumberReader lIn = new LineNumberReader(fIn);) {
+            // the first line holds the format description
+            String line = lIn.readLine();
+
+            while (line != null) {
+                line = lIn.readLine();
+
+                // extract the data and create a CmsSychronizedList object
+                // from it
+                if (line != null) {
+                    final StringTokenizer tok = new StringTokenizer(line, ":");
+                    final String resName = intern(names, tok.nextToken());
+                    final String tranResName = intern(names, tok.nextToken());
+                    final long modifiedVfs = Long.parseLong(tok.nextToken());
+                    final long modifiedFs = Long.parseLong(tok.nextToken());
+                    final CmsSynchronizeList sync = new CmsSynchronizeList(resName,
+                            tranResName, modifiedVfs, modifiedFs);
+                    sList.put(intern(names, translator.apply(resName)), sync);
+                }
+            }
+        }
+
+        return sList;
+    }
+
+    /**
+     * @return the equal String already read during this load, otherwise the
+     *         name itself
+     */
+    private static String intern(final Map<String, String> names, final String name) {
+        final String known = names.putIfAbsent(name, name);
+
+        return (known == null) ? name : known;
+    }
+
+    // code taken from org.opencms.synchronize.CmsSynchronize
+    private static void writeText(final File syncListFile,
+        final Collection<CmsSynchronizeList> entries) throws IOException {
+        try (PrintWriter pOut = new PrintWriter(Files.newBufferedWriter(
+                        syncListFile.toPath(), Charset.defaultCharset()))) {
+            pOut.println(CmsSynchronizeList.getFormatDescription());
+
+            // write all entries in a human readable format
+            for (final CmsSynchronizeList sync : entries) {
+                pOut.println(sync.toString());
+            }
+
+            if (pOut.checkError()) {
+                throw new IOException("Error writing " + syncListFile);
+            }
+        }
+    }
+}
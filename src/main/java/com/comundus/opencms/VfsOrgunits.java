@@ -80,6 +80,7 @@ public class VfsOrgunits extends XmlHandling {
         requestcontext.setSiteRoot("/");
 
         createorgunits(requestcontext, offlineProject, ORGUNIT_BASE_FOLDER, "");
+        this.reportPrincipalCache();
 
         this.getCms().unlockProject(offlineProject.getUuid());
     }
@@ -222,9 +223,9 @@ public class VfsOrgunits extends XmlHandling {
 				}
 
 				// System.out.println("creating group " + groupName);
-				this.getCms()
+				this.getPrincipalCache().put(this.getCms()
 					.createGroup(groupName, "A system role group", flags,
-					null);
+					null));
             }
         } catch (CmsException e) {
             throw new CmsInitException(Messages.get()
@@ -4,7 +4,6 @@ import java.io.File;
 import java.util.Iterator;
 import java.util.List;
 
-import org.opencms.file.CmsObject;
 import org.opencms.file.CmsRequestContext;
 import org.opencms.main.CmOpenCmsShell;
 import org.opencms.main.OpenCms;
@@ -21,9 +20,6 @@ import com.comundus.opencms.vfs.SyncResource;
 
 //(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
 public class VfsPublish extends XmlHandling{
-    /** The CmsObject. */
-    private CmsObject cms;
-
     /** The report to write the output to. */
     private I_CmsReport report;
 
@@ -46,11 +42,11 @@ public class VfsPublish extends XmlHandling{
             "WEB-INF";
         final CmOpenCmsShell cmsshell = CmOpenCmsShell.getInstance(webinfdir,
                 "Admin", adminPassword);
-        this.cms = cmsshell.getCmsObject();
+        this.setCms(cmsshell.getCmsObject());
 
-        final CmsRequestContext requestcontext = this.cms.getRequestContext();
+        final CmsRequestContext requestcontext = this.getCms().getRequestContext();
         this.report = new CmsShellReport(requestcontext.getLocale());
-        requestcontext.setCurrentProject(this.cms.readProject("Offline"));
+        requestcontext.setCurrentProject(this.getCms().readProject("Offline"));
 
         List<SyncResource> iterableSyncResources=mergeSyncResourceLists(syncVFSPaths, syncResources);
 
@@ -59,7 +55,7 @@ public class VfsPublish extends XmlHandling{
         	//The excludes are being ignored in this goal
         	final String sourcePathInVfs = syncRes.getResource();
             OpenCms.getPublishManager()
-                   .publishResource(this.cms, sourcePathInVfs, true, this.report);
+                   .publishResource(this.getCms(), sourcePathInVfs, true, this.report);
         }
 
         OpenCms.getPublishManager().waitWhileRunning();
@@ -0,0 +1,256 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opencms.file.CmsObject;
+import org.opencms.file.CmsResource;
+import org.opencms.file.CmsResourceFilter;
+import org.opencms.main.CmsException;
+
+/**
+ * In-memory index of VFS subtrees, keyed by root path.
+ * <p>
+ * Each synchronized subtree is read with a single recursive
+ * <code>readResources()</code> call instead of one
+ * <code>getResourcesInFolder()</code> call per folder. Within a loaded
+ * subtree the index answers existence checks and child listings
+ * definitively; resources created or deleted by the synchronization have to
+ * be registered with {@link #add(CmsResource)} and {@link #remove(String)}.
+ * Paths outside of all loaded subtrees are not covered and must be read from
+ * the VFS.
+ */
+final class VfsResourceIndex {
+
+    /** Folders first, then by path, like getResourcesInFolder() returns them. */
+    private static final Comparator<CmsResource> FOLDERS_FIRST = Comparator.comparing(
+            (CmsResource res) -> !res.isFolder()).thenComparing(CmsResource::getRootPath);
+
+    /** The filter used to read the resources. */
+    private final CmsResourceFilter filter;
+
+    /** All resources of the loaded subtrees, keyed by root path. */
+    private final Map<String, CmsResource> resources = new HashMap<>();
+
+    /** The children of each folder, keyed by the root path of the folder. */
+    private final Map<String, List<CmsResource>> children = new HashMap<>();
+
+    /** Root paths of the loaded subtrees; folders end with a slash. */
+    private final List<String> loadedRoots = new ArrayList<>();
+
+    /** Number of VFS queries issued for loading. */
+    private int queries;
+
+    /**
+     * @param filter
+     *            the filter used to read the resources
+     */
+    VfsResourceIndex(final CmsResourceFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Reads a resource and, for folders, its complete subtree into the index.
+     * If the resource does not exist, its path is still covered, so the index
+     * will report it as missing.
+     *
+     * @param cms
+     *            the CmsObject to read with
+     * @param sitePath
+     *            site path of the resource
+     */
+    void load(final CmsObject cms, final String sitePath) {
+        final String rootPath = cms.getRequestContext().addSiteRoot(sitePath);
+
+        if (this.covers(rootPath)) {
+            return;
+        }
+
+        final CmsResource root;
+
+        try {
+            this.queries++;
+            root = cms.readResource(sitePath, this.filter);
+        } catch (final CmsException e) {
+            // covered but missing
+            this.loadedRoots.add(rootPath);
+
+            return;
+        }
+
+        this.put(root);
+
+        if (root.isFolder()) {
+            final List<CmsResource> subtree;
+
+            try {
+                this.queries++;
+                subtree = cms.readResources(sitePath, this.filter, true);
+            } catch (final CmsException e) {
+                // nothing below the folder is known, so it must not be covered
+                this.resources.remove(root.getRootPath());
+
+                return;
+            }
+
+            this.loadedRoots.add(root.getRootPath());
+
+            for (final CmsResource res : subtree) {
+                this.put(res);
+            }
+
+            for (final List<CmsResource> list : this.children.values()) {
+                list.sort(FOLDERS_FIRST);
+            }
+        } else {
+            this.loadedRoots.add(root.getRootPath());
+        }
+    }
+
+    /**
+     * @param rootPath
+     *            root path of a resource
+     * @return true if the path is inside a loaded subtree, so the index knows
+     *         whether it exists
+     */
+    boolean covers(final String rootPath) {
+        for (final String loaded : this.loadedRoots) {
+            if (rootPath.equals(loaded) ||
+                    (CmsResource.isFolder(loaded) && rootPath.startsWith(loaded))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param rootPath
+     *            root path of a resource, the trailing slash of folders is
+     *            optional
+     * @return the resource or null if it is not in the index
+     */
+    CmsResource get(final String rootPath) {
+        final CmsResource res = this.resources.get(rootPath);
+
+        if ((res == null) && !CmsResource.isFolder(rootPath)) {
+            return this.resources.get(rootPath + "/");
+        }
+
+        return res;
+    }
+
+    /**
+     * @param folder
+     *            the folder
+     * @return the children of the folder, folders first
+     */
+    List<CmsResource> getChildren(final CmsResource folder) {
+        final List<CmsResource> list = this.children.get(folder.getRootPath());
+
+        if (list == null) {
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<>(list);
+    }
+
+    /**
+     * Adds or replaces a resource, i.e. after it has been created or updated.
+     *
+     * @param res
+     *            the resource
+     */
+    void add(final CmsResource res) {
+        if (!this.covers(res.getRootPath())) {
+            return;
+        }
+
+        this.resources.put(res.getRootPath(), res);
+
+        final String parent = CmsResource.getParentFolder(res.getRootPath());
+
+        if (parent == null) {
+            return;
+        }
+
+        final List<CmsResource> siblings = this.children.computeIfAbsent(parent,
+                (String key) -> new ArrayList<>());
+        // the siblings are kept sorted, so importing many files into one
+        // folder does not sort it again for each of them
+        final int pos = Collections.binarySearch(siblings, res, FOLDERS_FIRST);
+
+        if (pos >= 0) {
+            siblings.set(pos, res);
+        } else {
+            siblings.add(-pos - 1, res);
+        }
+    }
+
+    /**
+     * Removes a resource and its subtree, i.e. after it has been deleted.
+     *
+     * @param rootPath
+     *            root path of the resource
+     */
+    void remove(final String rootPath) {
+        final CmsResource res = this.resources.remove(rootPath);
+
+        if (res == null) {
+            return;
+        }
+
+        final List<CmsResource> siblings = this.children.get(CmsResource.getParentFolder(
+                    rootPath));
+
+        if (siblings != null) {
+            siblings.removeIf((CmsResource sibling) -> sibling.getRootPath().equals(rootPath));
+        }
+
+        final List<CmsResource> removed = this.children.remove(rootPath);
+
+        if (removed != null) {
+            for (final CmsResource child : removed) {
+                this.remove(child.getRootPath());
+            }
+        }
+    }
+
+    /**
+     * @return number of resources in the index
+     */
+    int size() {
+        return this.resources.size();
+    }
+
+    /**
+     * @return number of VFS queries issued for loading
+     */
+    int getQueries() {
+        return this.queries;
+    }
+
+    private void put(final CmsResource res) {
+        final CmsResource old = this.resources.put(res.getRootPath(), res);
+        final String parent = CmsResource.getParentFolder(res.getRootPath());
+
+        if (parent == null) {
+            return;
+        }
+
+        final List<CmsResource> siblings = this.children.computeIfAbsent(parent,
+                (String key) -> new ArrayList<>());
+
+        if (old != null) {
+            siblings.removeIf((CmsResource sibling) -> sibling.getRootPath()
+                                                              .equals(res.getRootPath()));
+        }
+
+        siblings.add(res);
+    }
+}
@@ -1,33 +1,31 @@
 //(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
 package com.comundus.opencms;
 
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
-import java.io.PrintWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
-import org.dom4j.Attribute;
 import org.dom4j.Element;
 import org.opencms.ade.configuration.formatters.CmsFormatterConfigurationCache;
 import org.opencms.db.CmsDbIoException;
 import org.opencms.file.CmsFile;
+import org.opencms.file.CmsObject;
 import org.opencms.file.CmsProject;
 import org.opencms.file.CmsProperty;
 import org.opencms.file.CmsRequestContext;
@@ -48,10 +46,8 @@ import org.opencms.main.CmsException;
 import org.opencms.main.I_CmsEventListener;
 import org.opencms.main.OpenCms;
 import org.opencms.relations.CmsRelation;
-import org.opencms.relations.CmsRelationFilter;
 import org.opencms.relations.CmsRelationType;
 import org.opencms.relations.I_CmsLinkParseable;
-import org.opencms.report.CmsShellReport;
 import org.opencms.report.I_CmsReport;
 import org.opencms.security.CmsAccessControlEntry;
 import org.opencms.security.CmsRole;
@@ -61,7 +57,6 @@ import org.opencms.synchronize.CmsSynchronizeList;
 import org.opencms.util.CmsDateUtil;
 import org.opencms.util.CmsFileUtil;
 import org.opencms.util.CmsUUID;
-import org.opencms.xml.CmsXmlUtils;
 import org.xml.sax.SAXException;
 
 import com.comundus.opencms.vfs.SyncResource;
@@ -88,8 +83,8 @@ public class VfsSync extends XmlHandling {
     /** Flag to import a deleted resource in the VFS. */
     static final int DELETE_FROM_VFS = 3;
 
-    /** Filename of the synclist file on the server FS. */
-    static final String SYNCLIST_FILENAME = "#synclist.txt";
+    /** Flag to add an unchanged resource missing from the sync list to it. */
+    static final int ADOPT_FROM_BASELINE = 4;
 
     /** The files and directories in the RFS with these name patterns will be ignored. The original list is taken from ANT:
      * http://ant.apache.org/manual/dirtasks.html#defaultexcludes */
@@ -98,6 +93,9 @@ public class VfsSync extends XmlHandling {
 	".git", ".gitattributes", ".gitignore", ".gitmodules", ".hg", ".hgignore", ".hgsub", ".hgsubstate", ".hgtags",
 	".bzr", ".bzrignore"};
 
+    /** Maximum number of resources whose attributes are cached. */
+    private static final int ATTRIBUTE_CACHE_SIZE = 10000;
+
     /**
      * The path in the "real" file system where the resources have to be
      * synchronized to.
@@ -120,10 +118,10 @@ public class VfsSync extends XmlHandling {
     private Map<String, CmsSynchronizeList> newSyncList;
 
     /**
-     * as we do not remove files from RFS we need to keep this List of
+     * as we do not remove files from RFS we need to keep track of the
      * removables.
      */
-    private List<String> removeRfsList;
+    private DeletedPaths deletedPaths;
 
     /** Stores all relations defined in the import file to be created after all resources has been imported. */
     private Map m_importedRelations;
@@ -131,7 +129,107 @@ public class VfsSync extends XmlHandling {
     /** Stores all resources of any type that implements the {@link I_CmsLinkParseable} interface. */
     private List<CmsResource> m_parseables;
 
-    private FileFilter ignoredFilesFilter;
+    /** The ignored file and folder names, compiled once per run. */
+    private IgnoredNamesMatcher ignoredNamesMatcher;
+
+    /** The patterns of the ignored names, as configured. */
+    private String ignoredPatterns = "";
+
+    /** Snapshot of the RFS content tree, read after the VFS has been exported. */
+    private RfsTree rfsTree;
+
+    /** Content digests of VFS resources and RFS files, kept between runs. */
+    private DigestCache digestCache;
+
+    /** Write the sync list as "#synclist.txt" instead of "#syncstate.bin". */
+    private boolean legacySyncList;
+
+    /** Do not search RFS folders unchanged since the last run for new files. */
+    private boolean incremental = true;
+
+    /** Detect changes by content digests against the committed baseline. */
+    private boolean contentHashes;
+
+    /** The committed baseline, null unless contentHashes is set. */
+    private BaselineManifest baseline;
+
+    /** True if the baseline read is the one the last local run wrote. */
+    private boolean baselineWrittenHere;
+
+    /** Digest of the sync state file read, null if there is none. */
+    private String syncStateDigest;
+
+    /** Fingerprints of the RFS folders completely synchronized by the last run. */
+    private DirectoryFingerprints fingerprints;
+
+    /** Number of RFS folders not searched for new files as they are unchanged. */
+    private int unchangedFolders;
+
+    /** Number of VFS resources found in the sync list of the last run. */
+    private final LongAdder knownResources = new LongAdder();
+
+    /** Number of metadata files parsed to compare known resources. */
+    private final LongAdder parsedMetadata = new LongAdder();
+
+    /** The synchronized VFS subtrees, read once at the start of the run. */
+    private VfsResourceIndex vfsIndex;
+
+    /** Properties, access control entries and relations of VFS resources. */
+    private AttributeCache attributeCache;
+
+    /** Compiled excludes per excludes array of a sync resource. */
+    private final Map<String[], PathTrie> excludeTries = new HashMap<>();
+
+    /** The excludes of all sync resources of the run. */
+    private PathTrie allExcludes = new PathTrie();
+
+    /** RFS contents read for a comparison and kept for their import. */
+    private RfsContentCache rfsContents;
+
+    /** Maximum size of the RFS contents kept between comparison and import. */
+    private long rfsContentBudget = 64L * 1024 * 1024;
+
+    /** Content bytes read from the VFS and the RFS, except kept RFS contents. */
+    private final LongAdder bytesRead = new LongAdder();
+
+    /** Content bytes written to the VFS and the RFS. */
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /** VFS reads and writes of single resources. */
+    private final LongAdder vfsCalls = new LongAdder();
+
+    /** Time and counters per phase of the run. */
+    private SyncMetrics metrics = this.createMetrics();
+
+    /** The file the metrics are written to, null for none. */
+    private File metricsFile;
+
+    /** Number of threads planning the actions for the VFS resources. */
+    private int planThreads = Runtime.getRuntime().availableProcessors();
+
+    /** Runs the planning during doTheSync, null for a single plan thread. */
+    private ExecutorService planExecutor;
+
+    /** Number of threads writing exported files to the RFS. */
+    private int exportWriters = 4;
+
+    /** Maximum size of exported content waiting to be written. */
+    private long exportBufferBytes = 64L * 1024 * 1024;
+
+    /** Writes exported files during doTheSync. */
+    private ExportPipeline exportPipeline;
+
+    /** When files written to the RFS are forced to the disk. */
+    private RfsFileWriter.Fsync fsyncPolicy = RfsFileWriter.Fsync.BATCH;
+
+    /** Writes files to the RFS. */
+    private RfsFileWriter rfsWriter = new RfsFileWriter(RfsFileWriter.Fsync.NEVER);
+
+    /** Fixed cost per changed resource assumed by the plan, in milliseconds. */
+    private long estimatedMillisPerResource = 50;
+
+    /** Content throughput assumed by the plan, in bytes per second. */
+    private long estimatedBytesPerSecond = 5L * 1024 * 1024;
 
     /**
      * Synchronizes a given List of paths in VFS with a path in RFS; a second
@@ -141,9 +239,15 @@ public class VfsSync extends XmlHandling {
      * plus an additional ".xml" extension. Metadata for folders is stored
      * inside of them in a file "~folder.xml". Like the original OpenCms
      * synchronization data about the last synchronization status get stored in
-     * a file "#synclist.txt" in the uppermost content folder. "#synclist.txt"
-     * is NOT stored in version control as it reflects the local
+     * a file "#syncstate.bin" in the uppermost content folder; the legacy text
+     * format "#synclist.txt" is still read and written on request. The state
+     * file is NOT stored in version control as it reflects the local
      * synchronization state which must not be transfered to other developers.
+     * The same applies to "#digests.txt" next to it, caching the content
+     * digests used to compare VFS and RFS contents, and to
+     * "#fingerprints.txt", valid only with the state it was written with.
+     * Only "#baseline.txt", written if changes are detected by content
+     * digests, is meant to be committed.
      * XML Metadata corresponds to the OpenCms Import/Export format version 4.
      *
      * @param webappDirectory
@@ -174,7 +278,81 @@ public class VfsSync extends XmlHandling {
 	    final List<String> ignoredNames, List<String> notIgnoredNames,
 	    boolean deleteRFSResources, final String adminPassword)
 	    throws Exception {
+	this.metrics = this.createMetrics();
+
+	final CmsProject offlineProject = this.startShell(webappDirectory, dPathInRfs,
+		mPathInRfs, adminPassword);
+
+	try {
+	    syncResources = mergeSyncResourceLists(syncVFSPaths, syncResources);
+
+	    computeIgnoredNames(ignoredNames, notIgnoredNames);
+
+	    doTheSync(syncResources, deleteRFSResources);
+
+	    try (SyncMetrics.Phase phase = this.metrics.start("rewriteParseables")) {
+		rewriteParseables();
+	    }
+
+	    try (SyncMetrics.Phase phase = this.metrics.start("importRelations")) {
+		importRelations();
+	    }
+
+	    // clear all OpenCms caches
+	    try (SyncMetrics.Phase phase = this.metrics.start("clearAllCaches")) {
+		clearAllCaches();
+	    }
+
+	    this.getCms().unlockProject(offlineProject.getUuid());
+	} finally {
+	    this.writeMetrics();
+	    this.closeReport();
+	}
+    }
+
+    /**
+     * Plans the synchronization without changing anything and writes the
+     * plan as JSON.
+     *
+     * @param planFile
+     *            the JSON file to write
+     * @return number of planned changes
+     * @throws Exception
+     *             if anything goes wrong
+     * @see #execute(String, String, String, List, List, List, List, boolean, String)
+     */
+    public final int executePlan(final String webappDirectory,
+	    final String dPathInRfs, final String mPathInRfs,
+	    final List<String> syncVFSPaths, List<SyncResource> syncResources,
+	    final List<String> ignoredNames, List<String> notIgnoredNames,
+	    boolean deleteRFSResources, final String adminPassword,
+	    final File planFile) throws Exception {
+	this.startShell(webappDirectory, dPathInRfs, mPathInRfs, adminPassword);
+
+	try {
+	    syncResources = mergeSyncResourceLists(syncVFSPaths, syncResources);
+
+	    computeIgnoredNames(ignoredNames, notIgnoredNames);
+
+	    final SyncPlanReport planReport = doThePlan(syncResources, deleteRFSResources);
+	    planReport.write(planFile);
+	    report("Plan written to " + planFile.getAbsolutePath(), I_CmsReport.FORMAT_NOTE);
+
+	    return planReport.getChanges();
+	} finally {
+	    this.closeReport();
+	}
+    }
 
+    /**
+     * Starts OpenCms, switches to the Offline project and the root site and
+     * checks the RFS destination.
+     *
+     * @return the Offline project
+     */
+    private CmsProject startShell(final String webappDirectory,
+	    final String dPathInRfs, final String mPathInRfs,
+	    final String adminPassword) throws Exception {
 	this.destinationPathInRfs = dPathInRfs;
 	this.metadataPathInRfs = mPathInRfs;
 	this.count = 1;
@@ -182,6 +360,7 @@ public class VfsSync extends XmlHandling {
 	this.m_parseables = new ArrayList<>();
 	this.m_importedRelations = new HashMap<>();
 
+        final SyncMetrics.Phase byteBuddyPhase = this.metrics.start("byteBuddy");
         ByteBuddyAgent.install();
         //Override updateContextMap() in CmsTemplateContextManager.class
         new ByteBuddy()
@@ -202,16 +381,19 @@ public class VfsSync extends XmlHandling {
            .load(
                CmsFormatterConfigurationCache.class.getClassLoader(), 
                ClassReloadingStrategy.fromInstalledAgent());
+        byteBuddyPhase.close();
         
 	final String webinfdir = webappDirectory + File.separatorChar +
 		"WEB-INF";
-	final CmOpenCmsShell cmsshell = CmOpenCmsShell.getInstance(webinfdir,
-		"Admin", adminPassword);
-	this.setCms(cmsshell.getCmsObject());
+	try (SyncMetrics.Phase phase = this.metrics.start("shellInit")) {
+	    final CmOpenCmsShell cmsshell = CmOpenCmsShell.getInstance(webinfdir,
+		    "Admin", adminPassword);
+	    this.setCms(cmsshell.getCmsObject());
+	}
 
 	final CmsRequestContext requestcontext = this.getCms()
 		.getRequestContext();
-	this.setReport(new CmsShellReport(requestcontext.getLocale()));
+	this.setReport(this.createShellReport(requestcontext.getLocale()));
 
 	final CmsProject offlineProject = this.getCms().readProject("Offline");
 	requestcontext.setCurrentProject(offlineProject);
@@ -238,18 +420,7 @@ public class VfsSync extends XmlHandling {
 			    this.destinationPathInRfs));
 	}
 
-	syncResources = mergeSyncResourceLists(syncVFSPaths, syncResources);
-
-	computeIgnoredNames(ignoredNames, notIgnoredNames);
-
-	doTheSync(syncResources, deleteRFSResources);
-	rewriteParseables();
-	importRelations();
-
-	// clear all OpenCms caches
-	clearAllCaches();
-
-	this.getCms().unlockProject(offlineProject.getUuid());
+	return offlineProject;
     }
     
     private void clearAllCaches() {
@@ -262,7 +433,8 @@ public class VfsSync extends XmlHandling {
 
     /*
     Methodenabfolge der Synchronisation (pro konfiguriertem VFS Pfad):
-    syncVfsToRfs(sourcePathInVfs);          (recursive)
+    planVfsToRfs(sourcePathInVfs);          (read only, parallel)
+    applyPlan(plan);
        exportToRfs(res);   (folders & files)
        deleteFromVfs(res); (folders & files)
        updateFromRfs(res); (files only)
@@ -283,35 +455,35 @@ public class VfsSync extends XmlHandling {
      */
     public final void doTheSync(final List<SyncResource> syncResources, boolean deleteRFSResources)
         throws CmsException {
+        this.prepareSync(syncResources);
+        this.rfsWriter = new RfsFileWriter(this.fsyncPolicy);
+        this.exportPipeline = new ExportPipeline(this.exportWriters, this.exportBufferBytes);
+
+        try (SyncMetrics.Phase phase = this.metrics.start("syncVfsToRfs")) {
+            this.syncVfsToRfs(syncResources, deleteRFSResources);
+            // all exports have to be on disk before the RFS is read
+            this.flushExports();
+        } finally {
+            this.shutdownPlanExecutor();
+            this.exportPipeline.close();
+        }
 
-        // create the sync list for this run
-        this.syncList = this.readSyncList();
-        this.newSyncList = new HashMap<>();
-        this.removeRfsList = new ArrayList<>();
+        final long known = this.knownResources.sum();
+        final long parsed = this.parsedMetadata.sum();
+        report("---- Metadata parsed for " + parsed + " of " + known +
+            " known resources, " + (known - parsed) + " parses avoided",
+            I_CmsReport.FORMAT_NOTE);
 
-        for (SyncResource sourcePathInVfs:syncResources) {
-            // iterate through all configured VFS folders
-            final String destPath = this.destinationPathInRfs +
-                sourcePathInVfs.getResource().replace('/', File.separatorChar);
-            this.getReport()
-                .println(org.opencms.workplace.threads.Messages.get()
-                                            .container(org.opencms.workplace.threads.Messages.RPT_SYNCHRONIZE_FOLDERS_2,
-                    sourcePathInVfs, destPath), I_CmsReport.FORMAT_HEADLINE);
-            // iterating thru VFS
-            // possible actions: exportToRfs(res), updateFromRfs(res),
-            // deleteFromVfs(res)
-            // any entry touched so far is moved from m_syncList to
-            // m_newSyncList
-            // so, entries remaining in m_synclist afterwards
-            // do no longer exist in VFS
-            this.syncVfsToRfs(sourcePathInVfs, true, deleteRFSResources);
-        }
+        // reading the RFS tree once, both following phases work on this snapshot
+        this.rfsTree = this.readRfsTree();
 
         // iterating thru RFS
         // deleting all RFS files from m_synclist
         // so, during a fresh import nothing ever gets deleted from RFS!
         report("---- Starting search for deleted resources", I_CmsReport.FORMAT_HEADLINE);
-        this.removeFromRfs(this.destinationPathInRfs, syncResources, deleteRFSResources);
+        try (SyncMetrics.Phase phase = this.metrics.start("removeFromRfs")) {
+            this.removeFromRfs(deleteRFSResources);
+        }
         report("---- Finished search for deleted resources", I_CmsReport.FORMAT_HEADLINE);
 
         // now checking for all files that might be new in RFS
@@ -323,11 +495,33 @@ public class VfsSync extends XmlHandling {
         	    I_CmsReport.FORMAT_HEADLINE);
             // iterating thru RFS
             // possible action: importToVfs()
-            this.copyFromRfs(vfsPath);
+            try (SyncMetrics.Phase phase = this.metrics.start("copyFromRfs")) {
+                this.copyFromRfs(vfsPath);
+            }
+        }
+
+        report("---- RFS folders unchanged since the last run: " + this.unchangedFolders,
+            I_CmsReport.FORMAT_NOTE);
+
+        // the sync list must not name files which are not on disk yet
+        try {
+            this.rfsWriter.sync();
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
         }
 
         // write out the new sync list
-        this.writeSyncList();
+        try (SyncMetrics.Phase phase = this.metrics.start("writeSyncList")) {
+            this.writeSyncList();
+            this.writeBaseline();
+            this.writeDigestCache();
+            this.writeFingerprints(syncResources);
+        }
+        this.reportPrincipalCache();
+        report(this.attributeCache.getStatistics(), I_CmsReport.FORMAT_NOTE);
+        report("RFS contents imported without reading them again: " +
+            this.rfsContents.getReused(), I_CmsReport.FORMAT_NOTE);
 
         //Purge JSP repository. That will not work if the parameter webappDirectory is not pointing to
         //the right directory in the Tomcat webapp. That means: it will not work with the default
@@ -335,6 +529,228 @@ public class VfsSync extends XmlHandling {
         OpenCms.fireCmsEvent(new CmsEvent(I_CmsEventListener.EVENT_FLEX_PURGE_JSP_REPOSITORY, new HashMap(0)));
     }
 
+    /**
+     * Reads the state of the last run and the configured VFS subtrees and
+     * starts the plan threads.
+     */
+    private void prepareSync(final List<SyncResource> syncResources)
+        throws CmsException {
+        // create the sync list for this run
+        this.syncList = this.readSyncList();
+        this.newSyncList = new HashMap<>();
+        this.deletedPaths = new DeletedPaths();
+        this.digestCache = this.readDigestCache();
+        this.baseline = this.contentHashes ? this.readBaseline() : null;
+        this.fingerprints = this.readFingerprints(syncResources);
+        this.unchangedFolders = 0;
+        this.knownResources.reset();
+        this.parsedMetadata.reset();
+
+        // reading all synchronized subtrees with one query each instead of
+        // one query per folder
+        this.vfsIndex = new VfsResourceIndex(CmsResourceFilter.IGNORE_EXPIRATION);
+        this.attributeCache = new AttributeCache(ATTRIBUTE_CACHE_SIZE);
+        this.rfsContents = new RfsContentCache(this.rfsContentBudget);
+        this.excludeTries.clear();
+        this.allExcludes = new PathTrie();
+        final List<String> syncPaths = new ArrayList<>();
+
+        for (SyncResource sourcePathInVfs:syncResources) {
+            if (sourcePathInVfs.getExcludes() != null) {
+                for (String exclude:sourcePathInVfs.getExcludes()) {
+                    if (!this.allExcludes.add(exclude) && (exclude != null)) {
+                        report("[WARN] Exclude \"" + exclude + "\" of " +
+                            sourcePathInVfs.getResource() +
+                            " ignored, it would exclude the whole sync resource",
+                            I_CmsReport.FORMAT_WARNING);
+                    }
+                }
+            }
+
+            this.vfsIndex.load(this.getCms(), sourcePathInVfs.getResource());
+            syncPaths.add(sourcePathInVfs.getResource());
+        }
+
+        report("---- VFS index: " + this.vfsIndex.size() + " resources read with " +
+            this.vfsIndex.getQueries() + " queries", I_CmsReport.FORMAT_NOTE);
+        this.attributeCache.prefetch(this.getCms(), this.vfsIndex, syncPaths);
+
+        if (this.planThreads > 1) {
+            this.planExecutor = Executors.newFixedThreadPool(this.planThreads,
+                    (Runnable r) -> {
+                        final Thread thread = new Thread(r, "vfs-sync-plan");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    });
+        }
+    }
+
+    private void shutdownPlanExecutor() {
+        if (this.planExecutor != null) {
+            this.planExecutor.shutdownNow();
+            this.planExecutor = null;
+        }
+    }
+
+    /**
+     * Plans a synchronization without changing anything in the VFS or the
+     * RFS, not even the sync list.
+     * <p>
+     * The VFS side is planned exactly like by doTheSync(). The RFS side is
+     * derived from the sync list: RFS resources whose entry would be left
+     * over by the VFS phase are deleted from the RFS, RFS resources without
+     * an entry that were not seen in the VFS are imported.
+     *
+     * @param syncResources
+     *            List of paths in VFS to synchronize
+     * @param deleteRFSResources
+     *            true if obsolete RFS resources would be deleted
+     * @return the planned changes
+     * @throws CmsException
+     *             if anything goes wrong
+     */
+    final SyncPlanReport doThePlan(final List<SyncResource> syncResources,
+        final boolean deleteRFSResources) throws CmsException {
+        this.prepareSync(syncResources);
+
+        final SyncPlanReport planReport = new SyncPlanReport(this.estimatedMillisPerResource,
+                this.estimatedBytesPerSecond);
+        // translated names the VFS phase would take care of
+        final Set<String> seenInVfs = new HashSet<>();
+
+        try {
+            for (SyncResource sourcePathInVfs:syncResources) {
+                this.addToPlanReport(this.planVfsToRfs(sourcePathInVfs), planReport, seenInVfs);
+            }
+        } finally {
+            this.shutdownPlanExecutor();
+        }
+
+        this.rfsTree = this.readRfsTree();
+
+        for (SyncResource sourcePathInVfs:syncResources) {
+            final RfsTree.Entry entry = this.rfsTree.get(this.getFileInRfs(
+                        sourcePathInVfs.getResource()));
+
+            if (entry != null) {
+                this.addToPlanReport(entry, sourcePathInVfs.getExcludes(), planReport,
+                    seenInVfs, false, deleteRFSResources);
+            }
+        }
+
+        report(planReport.getSummary(), I_CmsReport.FORMAT_NOTE);
+
+        return planReport;
+    }
+
+    private void addToPlanReport(final SyncPlan plan,
+        final SyncPlanReport planReport, final Set<String> seenInVfs) {
+        for (final SyncPlan.Step step : plan.getSteps()) {
+            if (step.isSubtreeEnd()) {
+                continue;
+            }
+
+            final CmsResource res = step.getResource();
+            final String resourcename = this.getCms().getSitePath(res);
+            final String key = this.translate(resourcename);
+            seenInVfs.add(key);
+
+            switch (step.getAction()) {
+            case EXPORT_FROM_VFS:
+                planReport.add(SyncPlanReport.EXPORT, resourcename, res.getLength());
+
+                break;
+
+            case UPDATE_IN_VFS:
+
+                final CmsSynchronizeList sync = (CmsSynchronizeList) this.syncList.get(key);
+                planReport.add(SyncPlanReport.UPDATE, resourcename,
+                    res.isFolder() ? 0 : this.getFileInRfs(sync.getResName()).length());
+
+                break;
+
+            case DELETE_FROM_VFS:
+
+                if (step.isStartFolder()) {
+                    planReport.addUnchanged();
+                } else {
+                    planReport.add(SyncPlanReport.DELETE_FROM_VFS, resourcename, res.getLength());
+                }
+
+                break;
+
+            default:
+                planReport.addUnchanged();
+            }
+        }
+    }
+
+    /**
+     * Plans the RFS side like removeFromRfs() and copyFromRfs() would do it.
+     *
+     * @param removing
+     *            true below a folder that is deleted from the RFS, its
+     *            children are not imported
+     */
+    private void addToPlanReport(final RfsTree.Entry entry, final String[] excludes,
+        final SyncPlanReport planReport, final Set<String> seenInVfs,
+        final boolean removing, final boolean deleteRFSResources) {
+        if (isIgnorableFile(entry)) {
+            return;
+        }
+
+        final String vfsName = this.getFilenameInVfs(entry);
+
+        if (resourceIsInExcludesArray(vfsName, excludes)) {
+            return;
+        }
+
+        final String key = this.translate(vfsName);
+        boolean removed = removing;
+
+        if (!seenInVfs.contains(key)) {
+            if (this.syncList.containsKey(key)) {
+                // in the sync list but gone from the VFS
+                planReport.add(deleteRFSResources ? SyncPlanReport.DELETE_FROM_RFS
+                                                  : SyncPlanReport.OBSOLETE_IN_RFS,
+                    entry.getPath(), entry.isFile() ? entry.getSize() : 0);
+                removed = true;
+            } else if (!removing) {
+                planReport.add(SyncPlanReport.IMPORT, vfsName,
+                    entry.isFile() ? entry.getSize() : 0);
+            }
+        }
+
+        if (entry.isDirectory() && !entry.isHidden()) {
+            for (final RfsTree.Entry child : entry.getChildren()) {
+                this.addToPlanReport(child, excludes, planReport, seenInVfs, removed,
+                    deleteRFSResources);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot of the content tree in the RFS. Ignored folders like
+     * ".svn" or ".git" are part of the snapshot, but their content is not read.
+     *
+     * @return the snapshot
+     * @throws CmsException
+     *             if a folder can not be read
+     */
+    private RfsTree readRfsTree() throws CmsException {
+        try {
+            final RfsTree tree = RfsTree.walk(new File(this.destinationPathInRfs),
+                    this.ignoredNamesMatcher, Runtime.getRuntime().availableProcessors());
+            debugReport("VfsSync.readRfsTree: " + tree.size() + " entries in " + this.destinationPathInRfs);
+            return tree;
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                         .container(org.opencms.synchronize.Messages.ERR_READING_FILE_1,
+                    this.destinationPathInRfs), e);
+        }
+    }
+
     /**
      * Copies all resources from the FS which are not existing in the VFS yet.
      * <p>
@@ -347,11 +763,11 @@ public class VfsSync extends XmlHandling {
     private void copyFromRfs(final SyncResource syncResource) throws CmsException {
 
     	// get the corresponding resource in the FS
-        File[] res;
-        final File fsFile = this.getFileInRfs(syncResource.getResource());
+        List<RfsTree.Entry> res;
+        final RfsTree.Entry fsFile = this.rfsTree.get(this.getFileInRfs(syncResource.getResource()));
 
         if (isIgnorableFile(fsFile)) {
-            debugReport("copyFromRFS. Ignore: " + fsFile.getName());
+            debugReport("copyFromRFS. Ignore: " + syncResource.getResource());
             return;
         }
         boolean doRecursion = true;
@@ -359,15 +775,11 @@ public class VfsSync extends XmlHandling {
         if (fsFile.isDirectory()) {
             // first of all, test if this folder exists in the VFS. If not, create
             // it
-        	try {
-        		this.getCms()
-        		.readFolder(this.translate(syncResource.getResource()),
-        				CmsResourceFilter.IGNORE_EXPIRATION);
-        	} catch (final CmsException e) {
-        		// the folder could not be read, so create it
+        	if (!this.existsVfsFolder(this.translate(syncResource.getResource()))) {
+        		// the folder does not exist, so create it
         		final String resourceName = this.translate(syncResource.getResource());
 
-        		reportSuccession(fsFile, resourceName);
+        		reportSuccession(fsFile.toFile(), resourceName);
 
         		CmsResource newFolder;
 
@@ -378,9 +790,8 @@ public class VfsSync extends XmlHandling {
         			try {
         				// code taken from org.opencms.importexport.CmsImport
         				// read the xml-config file
-        				this.setDocXml(CmsXmlUtils.unmarshalHelper(
-        						CmsFileUtil.readFile(metadataFile), null));
-        				newFolder = this.readResourcesFromManifest(null);
+        				newFolder = this.readResourcesFromManifest(MetadataReader.read(metadataFile),
+        				    null);
         				// resource gets last modified from metadata
         				// no content for folder
         			} catch (final IOException ex) {
@@ -395,7 +806,7 @@ public class VfsSync extends XmlHandling {
         			//   .readFolder(foldername,
         			//CmsResourceFilter.IGNORE_EXPIRATION);
         		} else {
-        			this.getReport()
+        			this.getResourceReport()
         			.println(org.opencms.report.Messages.get()
         					.container(org.opencms.report.Messages.RPT_ARGUMENT_1,
         							"ERROR: unable to read " +
@@ -407,50 +818,54 @@ public class VfsSync extends XmlHandling {
         							metadataFile.getAbsolutePath()));
         		}
 
+        		this.vfsIndex.add(newFolder);
+        		this.attributeCache.invalidate(newFolder.getRootPath());
+
         		final String resourcename = this.getCms().getSitePath(newFolder);
 
         		// add the folder to the sync list
         		final CmsSynchronizeList sync = new CmsSynchronizeList(syncResource.getResource(),
         				resourcename, newFolder.getDateLastModified(),
-        				fsFile.lastModified());
+        				fsFile.getLastModified());
         		this.newSyncList.put(resourcename, sync);
-        		this.getReport()
+        		this.getResourceReport()
         		.println(org.opencms.report.Messages.get()
         				.container(org.opencms.report.Messages.RPT_OK_0),
         				I_CmsReport.FORMAT_OK);
         	}
 
         	// For the next step, get all resources in this folder
-            res = fsFile.listFiles();
+            res = fsFile.getChildren();
 
         } else {
         	// For the next step we put our file as the only element of the list to be processed
         	// but we will not do a recursion on it
-        	res = new File[1];
-        	res[0] = fsFile;
+        	res = Collections.singletonList(fsFile);
         	doRecursion = false;
         }
 
         // now loop through all resources
-        for (int i = 0; i < res.length; i++) {
-                debugReport("VfsSync.copyFromRfs: " + res[i].getName());
+        for (final RfsTree.Entry entry : res) {
+                debugReport(() -> "VfsSync.copyFromRfs: " + entry.getName());
 
-        	if (isIgnorableFile(res[i])) {
-        	    debugReport("copyFromRFS(recursing). Ignore: " + res[i].getName());
+        	if (isIgnorableFile(entry)) {
+        	    debugReport(() -> "copyFromRFS(recursing). Ignore: " + entry.getName());
         	    continue;
                 } else {
-                    debugReport("copyFromRFS(recursing). Accept: " + res[i].getName());
+                    debugReport(() -> "copyFromRFS(recursing). Accept: " + entry.getName());
                 }
 
         	// get the relative filename
-        	String resname = res[i].getAbsolutePath();
+        	String resname = entry.getPath();
+
+		final String rfsName = this.getFilenameInVfs(entry);
 
-		if (resourceIsInExcludesArray(this.getFilenameInVfs(res[i]), syncResource.getExcludes())) {
+		if (resourceIsInExcludesArray(rfsName, syncResource.getExcludes())) {
 		    debugReport("VfsSync.copyFromRfs: Not checking " + resname + " in copyFromRfs because it is in the excludes list");
 		    continue;
 		}
 
-        	if (!this.removeRfsList.contains(resname)) {
+        	if (!this.deletedPaths.isDeleted(rfsName)) {
         		// do not reimport deletables
         		resname = resname.substring(this.destinationPathInRfs.length());
         		// translate the folder seperator if nescessary
@@ -458,16 +873,21 @@ public class VfsSync extends XmlHandling {
 
         		// now check if this resource was already processed, by
         		// looking up the new sync list
-        		if (res[i].isFile()) {
+        		if (entry.isFile()) {
         			if (!this.newSyncList.containsKey(this.translate(
         					resname))) {
         				// this file does not exist in the VFS, so import it from RFS to VFS
-        				this.importToVfs(res[i], resname /*, folder*/);
+        				this.importToVfs(entry, resname /*, folder*/);
         			}
         		} else {
         			// do a recursion if the current resource is a folder
         			// and the resource is not included in the excludeslist
-        			if (doRecursion) {
+        			if (doRecursion && this.incremental &&
+        			    this.fingerprints.isUnchanged(rfsName, entry.getFingerprint())) {
+        				// every file below was synchronized by the last run
+        				debugReport("VfsSync.copyFromRfs: Not doing recursion over unchanged " + resname + "/");
+        				this.unchangedFolders++;
+        			} else if (doRecursion) {
         				debugReport("VfsSync.copyFromRfs: Recursion over " + resname + "/");
         				this.copyFromRfs(new SyncResource(resname + "/", syncResource.getExcludes()));
         			} else {
@@ -485,84 +905,33 @@ public class VfsSync extends XmlHandling {
 
     private void reportSuccession(File fsFile, String resourceName) {
         //Reporting stuff
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
                 String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.synchronize.Messages.get()
                                                    .container(org.opencms.synchronize.Messages.RPT_IMPORT_FOLDER_0),
             I_CmsReport.FORMAT_NOTE);
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                 fsFile.getAbsolutePath().replace('\\', '/')));
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.synchronize.Messages.get()
                                                    .container(org.opencms.synchronize.Messages.RPT_FROM_FS_TO_0),
             I_CmsReport.FORMAT_NOTE);
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                 resourceName));
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_DOTS_0));
         //End of reporting stuff
 
 	}
 
-	/**
-     * Creates a new file in the local real file system.
-     * <p>
-     *
-     * @param newFile
-     *            the file that has to be created
-     * @throws CmsException
-     *             if something goes wrong
-     */
-
-    // code taken from org.opencms.synchronize.CmsSynchronize
-    private void createNewLocalFile(final File newFile)
-        throws CmsException {
-        if (newFile.exists()) {
-            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                        .container(org.opencms.synchronize.Messages.ERR_EXISTENT_FILE_1,
-                    newFile.getPath()));
-        }
-
-        FileOutputStream fOut = null;
-
-        try {
-            final File parentFolder = new File(newFile.getPath()
-                                                      .replace('/',
-                        File.separatorChar)
-                                                      .substring(0,
-                        newFile.getPath().lastIndexOf(File.separator)));
-            parentFolder.mkdirs();
-
-            if (parentFolder.exists()) {
-                fOut = new FileOutputStream(newFile);
-            } else {
-                throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                           .container(org.opencms.synchronize.Messages.ERR_CREATE_DIR_1,
-                        newFile.getPath()));
-            }
-        } catch (final IOException e) {
-            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                          .container(org.opencms.synchronize.Messages.ERR_CREATE_FILE_1,
-                    this.getClass().getName(), newFile.getPath()), e);
-        } finally {
-            if (fOut != null) {
-                try {
-                    fOut.close();
-                } catch (final IOException e) {
-                    // ignore
-                }
-            }
-        }
-    }
-
     /**
      * Deletes a resource in the VFS and updates the synchronization lists.
      * <p>
@@ -576,38 +945,44 @@ public class VfsSync extends XmlHandling {
 
     // code taken from org.opencms.synchronize.CmsSynchronize
     private void deleteFromVfs(final CmsResource res, boolean deleteRFSResources) throws CmsException {
+        // a queued export must not be written after the RFS files are deleted
+        this.flushExports();
+
         final String resourcename = this.getCms().getSitePath(res);
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
                 String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
 
         if (res.isFile()) {
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.synchronize.Messages.get()
                                                        .container(org.opencms.synchronize.Messages.RPT_DEL_FILE_0),
                 I_CmsReport.FORMAT_NOTE);
         } else {
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.synchronize.Messages.get()
                                                        .container(org.opencms.synchronize.Messages.RPT_DEL_FOLDER_0),
                 I_CmsReport.FORMAT_NOTE);
         }
 
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                 resourcename));
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_DOTS_0));
         // lock the file in the VFS, so that it can be updated
         this.getCms().lockResource(resourcename);
         this.getCms()
             .deleteResource(resourcename, CmsResource.DELETE_PRESERVE_SIBLINGS);
+        this.vfsCalls.increment();
+        this.vfsIndex.remove(this.getCms().getRequestContext().addSiteRoot(resourcename));
+        this.attributeCache.invalidate(this.getCms().getRequestContext().addSiteRoot(resourcename));
         // Remove it from the sync list
         this.syncList.remove(this.translate(resourcename));
-        this.getReport()
+        this.getResourceReport()
             .println(org.opencms.report.Messages.get()
                                                 .container(org.opencms.report.Messages.RPT_OK_0),
             I_CmsReport.FORMAT_OK);
@@ -628,7 +1003,7 @@ public class VfsSync extends XmlHandling {
             if (deleteRFSResources) {
                 deleteFile(metadataFile.getAbsoluteFile());
             } else {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                         "WARNING: please remove " + metadataFile.getAbsolutePath()),
@@ -639,32 +1014,32 @@ public class VfsSync extends XmlHandling {
 
     private void deleteFile(File file) {
 
-        this.getReport().print(org.opencms.report.Messages.get()
+        this.getResourceReport().print(org.opencms.report.Messages.get()
                                           .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
             String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
 
         if (file.isFile()) {
-            this.getReport().print(org.opencms.synchronize.Messages.get()
+            this.getResourceReport().print(org.opencms.synchronize.Messages.get()
                                                        .container(org.opencms.synchronize.Messages.RPT_DEL_FILE_0),
                 I_CmsReport.FORMAT_NOTE);
         } else {
-            this.getReport().print(org.opencms.synchronize.Messages.get()
+            this.getResourceReport().print(org.opencms.synchronize.Messages.get()
                                                        .container(org.opencms.synchronize.Messages.RPT_DEL_FOLDER_0),
                 I_CmsReport.FORMAT_NOTE);
         }
     
-        this.getReport().print(org.opencms.report.Messages.get()
+        this.getResourceReport().print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                 file.getAbsolutePath()+" "));
         
         try {
             FileUtils.forceDelete(file);
-            this.getReport().println(org.opencms.report.Messages.get()
+            this.getResourceReport().println(org.opencms.report.Messages.get()
                                                 .container(org.opencms.report.Messages.RPT_OK_0),
             I_CmsReport.FORMAT_OK);
             
         } catch (IOException e) {
-            this.getReport().println(org.opencms.report.Messages.get()
+            this.getResourceReport().println(org.opencms.report.Messages.get()
                     .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                     "WARNING. DELETION FAILED: please remove " + file.getAbsolutePath()),
                     I_CmsReport.FORMAT_WARNING);
@@ -686,7 +1061,7 @@ public class VfsSync extends XmlHandling {
     // code taken from org.opencms.synchronize.CmsSynchronize
     // OpenCms names it exportToRfs()
     private void exportFromVFS(final CmsResource res) throws CmsException {
-        CmsFile vfsFile;
+        CmsFile vfsFile = null;
         File fsFile;
         File metadataFile;
         String resourcename;
@@ -729,97 +1104,80 @@ public class VfsSync extends XmlHandling {
                     (!res.getName().startsWith("~"))) {
                 // ~ taken from CmsExport
                 // if its a file, create export the file to the FS
-                this.getReport()
+                this.getResourceReport()
                     .print(org.opencms.report.Messages.get()
                                                       .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
                         String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
 
                 if (res.isFile()) {
                     metadataFile = this.getMetadataFileInRfs(resourcename);
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.synchronize.Messages.get()
                                                                .container(org.opencms.synchronize.Messages.RPT_EXPORT_FILE_0),
                         I_CmsReport.FORMAT_NOTE);
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.report.Messages.get()
                                                           .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                             this.getCms().getSitePath(res)));
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.synchronize.Messages.get()
                                                                .container(org.opencms.synchronize.Messages.RPT_TO_FS_AS_0),
                         I_CmsReport.FORMAT_NOTE);
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.report.Messages.get()
                                                           .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                             fsFile.getAbsolutePath().replace('\\', '/')));
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.report.Messages.get()
                                                           .container(org.opencms.report.Messages.RPT_DOTS_0));
 
-                    // create the resource if necessary
-                    if (!fsFile.exists()) {
-                        this.createNewLocalFile(fsFile);
-                    }
-
-                    // write the file content to the FS
+                    // read content and metadata here, the export pipeline
+                    // writes them to the FS
                     vfsFile = this.getCms()
                                   .readFile(this.getCms().getSitePath(res),
                             CmsResourceFilter.IGNORE_EXPIRATION);
-
-                    try {
-                        this.writeFileByte(vfsFile.getContents(), fsFile);
-                    } catch (final IOException e) {
-                        throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                         .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0));
-                    }
-
+                    this.vfsCalls.increment();
+                    this.bytesRead.add(vfsFile.getLength());
+                    this.queueFileExport(vfsFile, resourcename, fsFile, metadataFile);
                 } else { // not a file but a folder
                     metadataFile = this.getMetadataFolderInRfs(resourcename);
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.synchronize.Messages.get()
                                                                .container(org.opencms.synchronize.Messages.RPT_EXPORT_FOLDER_0),
                         I_CmsReport.FORMAT_NOTE);
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.report.Messages.get()
                                                           .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                             this.getCms().getSitePath(res)));
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.synchronize.Messages.get()
                                                                .container(org.opencms.synchronize.Messages.RPT_TO_FS_AS_0),
                         I_CmsReport.FORMAT_NOTE);
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.report.Messages.get()
                                                           .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                             fsFile.getAbsolutePath().replace('\\', '/')));
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.report.Messages.get()
                                                           .container(org.opencms.report.Messages.RPT_DOTS_0));
                     // its a folder, so create a folder in the RFS
+                    // folders are written directly, as the files exported
+                    // next need them and their sync list entries
                     fsFile.mkdirs();
-                }
-                fsFile.setLastModified(res.getDateLastModified());
-                // XML STUFF
-                try {
-                    final Element exportNode = this.openExportFile(metadataFile);
-                    this.appendResourceToManifest(res, false, exportNode);
-                    this.closeExportFile(exportNode);
-                    metadataFile.setLastModified(fsFile.lastModified());
-                } catch (final SAXException e) {
-                    throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                         .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0));
-                } catch (final IOException e) {
-                    throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                         .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0));
+                    fsFile.setLastModified(res.getDateLastModified());
+                    // XML STUFF
+                    this.writeMetadata(res, metadataFile, fsFile.lastModified());
+
+                    // add resource to synchronization list
+                    final CmsSynchronizeList sList = new CmsSynchronizeList(resourcename,
+                            this.translate(resourcename),
+                            res.getDateLastModified(), fsFile.lastModified());
+                    this.newSyncList.put(this.translate(resourcename), sList);
                 }
 
-                // add resource to synchronization list
-                final CmsSynchronizeList sList = new CmsSynchronizeList(resourcename,
-                        this.translate(resourcename),
-                        res.getDateLastModified(), fsFile.lastModified());
-                this.newSyncList.put(this.translate(resourcename), sList);
                 // and remove it from the old one
                 this.syncList.remove(this.translate(resourcename));
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_OK_0),
                     I_CmsReport.FORMAT_OK);
@@ -829,6 +1187,119 @@ public class VfsSync extends XmlHandling {
         }
     }
 
+    /**
+     * Queues a file for the export pipeline. The metadata XML is built here,
+     * as it needs the VFS; content and metadata are written by the pipeline,
+     * which adds the sync list entry once the file is written.
+     */
+    private void queueFileExport(final CmsFile vfsFile, final String resourcename,
+        final File fsFile, final File metadataFile) throws CmsException {
+        final byte[] content = vfsFile.getContents();
+        final byte[] metadata;
+
+        // XML STUFF
+        try {
+            final Element exportNode = this.openExportBuffer();
+            this.appendResourceToManifest(vfsFile, false, exportNode);
+            metadata = this.closeExportBuffer(exportNode);
+        } catch (final SAXException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
+        }
+
+        try {
+            this.exportPipeline.submit(content.length + metadata.length,
+                () -> {
+                    this.writeFileByte(content, fsFile);
+                    fsFile.setLastModified(vfsFile.getDateLastModified());
+                    this.writeFileByte(metadata, metadataFile);
+                    metadataFile.setLastModified(fsFile.lastModified());
+                    this.storeDigest(vfsFile, fsFile, content);
+                },
+                () -> {
+                    // add resource to synchronization list
+                    final CmsSynchronizeList sList = new CmsSynchronizeList(resourcename,
+                            this.translate(resourcename),
+                            vfsFile.getDateLastModified(), fsFile.lastModified());
+                    this.newSyncList.put(this.translate(resourcename), sList);
+                });
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
+        }
+    }
+
+    /**
+     * Writes the metadata XML of a resource to the RFS.
+     *
+     * @param lastModified
+     *            modification date of the metadata file
+     */
+    private void writeMetadata(final CmsResource res, final File metadataFile,
+        final long lastModified) throws CmsException {
+        try {
+            final Element exportNode = this.openExportBuffer();
+            this.appendResourceToManifest(res, false, exportNode);
+            this.writeFileByte(this.closeExportBuffer(exportNode), metadataFile);
+            metadataFile.setLastModified(lastModified);
+        } catch (final SAXException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
+        }
+    }
+
+    /**
+     * Creates the metrics of a run with the counters of this class.
+     */
+    private SyncMetrics createMetrics() {
+        final SyncMetrics runMetrics = new SyncMetrics();
+        runMetrics.register("resources", () -> this.count);
+        runMetrics.register("bytesRead", () -> this.bytesRead.sum() +
+            ((this.rfsContents == null) ? 0 : this.rfsContents.getBytesRead()));
+        runMetrics.register("bytesWritten", this.bytesWritten::sum);
+        runMetrics.register("vfsCalls", () -> this.vfsCalls.sum() +
+            ((this.vfsIndex == null) ? 0 : this.vfsIndex.getQueries()) +
+            ((this.attributeCache == null) ? 0 : this.attributeCache.getMisses()));
+
+        return runMetrics;
+    }
+
+    /**
+     * Writes the metrics of the run if a metrics file is configured; a
+     * failure is only reported.
+     */
+    private void writeMetrics() {
+        if (this.metricsFile == null) {
+            return;
+        }
+
+        try {
+            this.metrics.write(this.metricsFile);
+            report("Metrics written to " + this.metricsFile.getAbsolutePath(), I_CmsReport.FORMAT_NOTE);
+        } catch (final IOException e) {
+            report("WARNING: unable to write " + this.metricsFile.getAbsolutePath() + ": " + e,
+                I_CmsReport.FORMAT_WARNING);
+        }
+    }
+
+    /**
+     * Waits for the export pipeline, i.e. before RFS files might be deleted.
+     */
+    private void flushExports() throws CmsException {
+        try {
+            this.exportPipeline.flush();
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                 .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0), e);
+        }
+    }
+
     /**
      * Gets the corresponding filename of the VFS to a resource in the RFS.
      * <p>
@@ -839,8 +1310,8 @@ public class VfsSync extends XmlHandling {
      */
 
     // code taken from org.opencms.synchronize.CmsSynchronize
-    private String getFilenameInVfs(final File res) {
-        String resname = res.getAbsolutePath();
+    private String getFilenameInVfs(final RfsTree.Entry res) {
+        String resname = res.getPath();
 
         if (res.isDirectory()) {
             resname += "/";
@@ -857,47 +1328,49 @@ public class VfsSync extends XmlHandling {
      * synchronization lists.
      * <p>
      *
-     * @param fsFile
-     *            the file in the RFS - really called for files only
+     * @param fsEntry
+     *            the file in the RFS snapshot - really called for files only
      * @param resName
      *            the name of the resource in the VFS
      * @throws CmsException
      *             if something goes wrong
      */
     // code taken from org.opencms.synchronize.CmsSynchronize
-    private void importToVfs(final File fsFile,
+    private void importToVfs(final RfsTree.Entry fsEntry,
         final String resName) throws CmsException {
+        final File fsFile = fsEntry.toFile();
         try {
             // XML STUFF
             final File metadataFile = this.getMetadataFileInRfs(resName);
 
             // get the content of the FS file
             final byte[] content = CmsFileUtil.readFile(fsFile);
+            this.bytesRead.add(content.length);
 
             // create the file
             // final String filename = this.translate(fsFile.getName());
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
                     String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
 
-            if (fsFile.isFile()) {
-                this.getReport()
+            if (fsEntry.isFile()) {
+                this.getResourceReport()
                     .print(org.opencms.synchronize.Messages.get()
                                                            .container(org.opencms.synchronize.Messages.RPT_IMPORT_FILE_0),
                     I_CmsReport.FORMAT_NOTE);
             } else {
-                this.getReport()
+                this.getResourceReport()
                     .print(org.opencms.synchronize.Messages.get()
                                                            .container(org.opencms.synchronize.Messages.RPT_IMPORT_FOLDER_0),
                     I_CmsReport.FORMAT_NOTE);
             }
 
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                     fsFile.getAbsolutePath().replace('\\', '/')));
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.synchronize.Messages.get()
                                                        .container(org.opencms.synchronize.Messages.RPT_FROM_FS_TO_0),
                 I_CmsReport.FORMAT_NOTE);
@@ -907,23 +1380,22 @@ public class VfsSync extends XmlHandling {
 
             if (metadataFile.exists()) {
                 // read the xml-config file
-                this.setDocXml(CmsXmlUtils.unmarshalHelper(CmsFileUtil.readFile(
-                            metadataFile), null));
-                newFile = this.readResourcesFromManifest(content);
+                newFile = this.readResourcesFromManifest(MetadataReader.read(metadataFile),
+                    content);
                 // resource gets last modified from metadata
 
                 // old stuff newRes = this.getCms()
                             // .readResource(this.getCms().getSitePath(newFile));
 
-                this.getReport()
+                this.getResourceReport()
                     .print(org.opencms.report.Messages.get()
                                                       .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                         this.getCms().getSitePath(newFile)));
-                this.getReport()
+                this.getResourceReport()
                     .print(org.opencms.report.Messages.get()
                                                       .container(org.opencms.report.Messages.RPT_DOTS_0));
             } else {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                         "ERROR: unable to read " +
@@ -935,12 +1407,19 @@ public class VfsSync extends XmlHandling {
                         metadataFile.getAbsolutePath()));
             }
 
+            this.vfsIndex.add(newFile);
+            this.attributeCache.invalidate(newFile.getRootPath());
+
+            if (newFile.isFile()) {
+                this.storeDigest(newFile, fsFile, content);
+            }
+
             // add resource to synchronization list
             final CmsSynchronizeList sList = new CmsSynchronizeList(resName,
                     this.translate(resName), newFile.getDateLastModified(),
-                    fsFile.lastModified());
+                    fsEntry.getLastModified());
             this.newSyncList.put(this.translate(resName), sList);
-            this.getReport()
+            this.getResourceReport()
                 .println(org.opencms.report.Messages.get()
                                                     .container(org.opencms.report.Messages.RPT_OK_0),
                 I_CmsReport.FORMAT_OK);
@@ -953,8 +1432,8 @@ public class VfsSync extends XmlHandling {
 
     /**
      * Reads the synchronization list from the last sync process from the file
-     * system and stores the information in a HashMap. If the file does
-     * not exist in the file system an empty HashMap is returned.
+     * system and stores the information in a HashMap. If no state has been
+     * stored yet an empty HashMap is returned.
      * <p>
      *
      * Filenames are stored as keys, CmsSynchronizeList objects as values.
@@ -963,55 +1442,38 @@ public class VfsSync extends XmlHandling {
      * @throws CmsException
      *             if something goes wrong
      */
-
-    // code taken from org.opencms.synchronize.CmsSynchronize
     private Map<String, CmsSynchronizeList> readSyncList() throws CmsException {
-        final Map<String, CmsSynchronizeList> sList = new HashMap<>();
-
-        // the sync list file in the server fs
-        File syncListFile;
-        syncListFile = new File(this.destinationPathInRfs,
-                VfsSync.SYNCLIST_FILENAME);
-
-        // try to read the sync list file if it is there
-        if (syncListFile.exists()) {
-            // prepare the streams to write the data
-
-            try(FileReader fIn = new FileReader(syncListFile);
-                LineNumberReader lIn = new LineNumberReader(fIn);) {
-
-                // read one line from the file
-                String line = lIn.readLine();
-
-                while (line != null) {
-                    line = lIn.readLine();
-
-                    // extract the data and create a CmsSychronizedList object
-                    // from it
-                    if (line != null) {
-                        final StringTokenizer tok = new StringTokenizer(line,
-                                ":");
-
-                        //if (tok != null) {
-                        final String resName = tok.nextToken();
-                        final String tranResName = tok.nextToken();
-                        final long modifiedVfs = Long.parseLong(tok.nextToken());
-                        final long modifiedFs = Long.parseLong(tok.nextToken());
-                        final CmsSynchronizeList sync = new CmsSynchronizeList(resName,
-                                tranResName, modifiedVfs, modifiedFs);
-                        sList.put(this.translate(resName), sync);
-
-                        //}
-                    }
-                }
-            } catch (final IOException e) {
-                throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                      .container(org.opencms.synchronize.Messages.ERR_READ_SYNC_LIST_0),
-                    e);
+        try {
+            final Map<String, CmsSynchronizeList> list = new SyncStateStore(new File(
+                        this.destinationPathInRfs)).read(this::translate);
+            this.syncStateDigest = this.digestSyncState();
+
+            return list;
+        } catch (final IOException e) {
+            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
+                                                  .container(org.opencms.synchronize.Messages.ERR_READ_SYNC_LIST_0),
+                e);
+        }
+    }
+
+    /**
+     * @return the digest of the sync state file in the synchronization
+     *         folder, binary or text format, null if there is none
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private String digestSyncState() throws IOException {
+        for (final String filename : new String[] {
+                    SyncStateStore.FILENAME, SyncStateStore.LEGACY_FILENAME
+                }) {
+            final File stateFile = new File(this.destinationPathInRfs, filename);
+
+            if (stateFile.isFile()) {
+                return DigestCache.digest(stateFile);
             }
         }
 
-        return sList;
+        return null;
     }
 
     /**
@@ -1023,105 +1485,90 @@ public class VfsSync extends XmlHandling {
      * corresponding to the SCM in use (i.e. TortoiseSVN). The internal List of
      * deletable files is also used to avoid re-importing those files still
      * existing in RFS later.
+     * <p>
+     * The VFS phase has moved every resource still existing in the VFS to the
+     * new sync list, so the entries left in the old sync list are exactly the
+     * deleted resources. Only these are looked up in the RFS snapshot, deepest
+     * first, instead of walking the whole RFS again.
      *
-     * @param folder
-     *            the folder in the FS to check
-     * @param syncResources
-     *            the list of sync resources to recognize files to be separately treated
      * @throws CmsException
      *             if something goes wrong
      */
 
     // code taken from org.opencms.synchronize.CmsSynchronize
-    private void removeFromRfs(final String folder, List<SyncResource> syncResources, boolean deleteRFSResources) throws CmsException {
+    private void removeFromRfs(boolean deleteRFSResources) throws CmsException {
+        if (this.rfsTree.getRoot() == null) {
+            return;
+        }
 
-        // get the corresponding folder in the FS
-        File[] res;
-        final File rfsFile = new File(folder);
-        boolean removingFolder = true;
+        final List<CmsSynchronizeList> leftovers = new ArrayList<>(this.syncList.values());
+        // children before their folders, like the former depth first walk
+        leftovers.sort(Comparator.comparing(CmsSynchronizeList::getResName).reversed());
 
-        // get all resources in this folder
-        if (rfsFile.isDirectory()) {
+        for (final CmsSynchronizeList sync : leftovers) {
+            final RfsTree.Entry entry = this.rfsTree.get(this.getFileInRfs(sync.getResName()));
 
-            res = rfsFile.listFiles();
-        } else {
-            removingFolder = false;
-            res = new File[1];
-            res[0] = rfsFile;
-        }
+            if ((entry == null) || !this.isReachableInRfs(entry)) {
+                continue;
+            }
 
-        // now loop through all resources
-        for (int i = 0; i < res.length; i++) {
             // get the corrsponding name in the VFS
-            final String vfsFile = this.getFilenameInVfs(res[i]);
+            final String vfsFile = this.getFilenameInVfs(entry);
 
         	//Do not check if the resource is in the excludes list
-        	if (syncResourcesContainsExclude(syncResources, res[i])) {
-        		debugReport("Not recursing deletion into "+res[i]+" because it is in the excludes list");
+        	if (this.allExcludes.matches(vfsFile)) {
+        		debugReport(() -> "Not deleting "+entry+" because it is in the excludes list");
         		continue;
         	}
 
-            // recurse if it is a directory, we must go depth first to delete
-            // files
-            final String abspath = res[i].getAbsolutePath();
-            debugReport("removeFromRFS: " + abspath);
-
-            if ((res[i].isDirectory()) && (!res[i].isHidden()) &&
-                    (!isIgnorableFile(new File(abspath)))) {
-            	this.removeFromRfs(abspath, syncResources, deleteRFSResources);
-
-            // Also recurse if the file is in the syncResources
-            } else if (res[i].isFile() && removingFolder && syncResourcesContainsResource(syncResources, res[i])) {
-            	this.removeFromRfs(abspath, syncResources, deleteRFSResources);
-            }
-
-            // now check if this resource is still in the old sync list.
-            // if so, then it does not exist in the FS anymore and must be
-            // deleted
-            final CmsSynchronizeList sync = (CmsSynchronizeList) this.syncList.get(this.translate(
-                        vfsFile));
-
-            // there is an entry, so delete the resource
-            if (sync != null) {
-                /*
-                 * we currently do not really delete RFS files as for not
-                 * disturbing version control we only warn
-                 */
-                this.syncList.remove(this.translate(vfsFile));
-                this.removeRfsList.add(abspath);
-
-                // do not reimport deletables
-                if (!isIgnorableFile(res[i])) {
-                    File f =new File(abspath);
-                    boolean isFile = f.isFile();
-                    if (deleteRFSResources) {
-                        deleteFile(f);
-                    } else {
-                        this.getReport()
-                            .println(org.opencms.report.Messages.get()
-                                .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
-                                "WARNING: please remove " + abspath),
-                                I_CmsReport.FORMAT_WARNING);
-                    
+            final String abspath = entry.getPath();
+            debugReport(() -> "removeFromRFS: " + abspath);
+
+            /*
+             * we currently do not really delete RFS files as for not
+             * disturbing version control we only warn
+             */
+            this.syncList.remove(this.translate(vfsFile));
+            this.deletedPaths.add(vfsFile);
+
+            // do not reimport deletables
+            if (!isIgnorableFile(entry)) {
+                boolean isFile = entry.isFile();
+                if (deleteRFSResources) {
+                    deleteFile(entry.toFile());
+                    this.rfsTree.remove(entry);
+                } else {
+                    this.getResourceReport()
+                        .println(org.opencms.report.Messages.get()
+                            .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                            "WARNING: please remove " + abspath),
+                            I_CmsReport.FORMAT_WARNING);
+
+                }
+
+                final File metadataFile = isFile
+                        ? this.getMetadataFileInRfs(vfsFile)
+                        : this.getMetadataFolderInRfs(vfsFile);
+                if (deleteRFSResources) {
+                    deleteFile(metadataFile.getAbsoluteFile());
+
+                    // the metadata folder of a folder is empty now unless
+                    // resources below the folder are excluded
+                    final String[] rest = isFile ? null : metadataFile.getParentFile().list();
+                    if ((rest != null) && (rest.length == 0)) {
+                        deleteFile(metadataFile.getParentFile().getAbsoluteFile());
                     }
+                } else {
 
-                    final File metadataFile = isFile
-                            ? this.getMetadataFileInRfs(vfsFile)
-                            : this.getMetadataFolderInRfs(vfsFile);
-                    if (deleteRFSResources) {
-                        deleteFile(metadataFile.getAbsoluteFile());
-                    } else {
-
-                        // I think we really only have files here, no
-                        // subdirectories
-                        if (metadataFile.exists()) {
-                            this.getReport()
-                                .println(org.opencms.report.Messages.get()
-                                                                    .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
-                                    "WARNING: please remove " +
-                                    metadataFile.getAbsolutePath()),
-                                I_CmsReport.FORMAT_WARNING);
-                        }
+                    // I think we really only have files here, no
+                    // subdirectories
+                    if (metadataFile.exists()) {
+                        this.getResourceReport()
+                            .println(org.opencms.report.Messages.get()
+                                                                .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                                "WARNING: please remove " +
+                                metadataFile.getAbsolutePath()),
+                            I_CmsReport.FORMAT_WARNING);
                     }
                 }
             }
@@ -1129,64 +1576,46 @@ public class VfsSync extends XmlHandling {
     }
 
     /**
-     *
-     * @param syncResources
-     * @param file
-     * @return
-     */
-    private boolean syncResourcesContainsExclude(
-			List<SyncResource> syncResources, File file) {
-    	String vfsPath = this.getFilenameInVfs(file);
-    	for (SyncResource syncRes:syncResources) {
-    		if (resourceIsInExcludesArray(vfsPath, syncRes.getExcludes())) {
-    			return true;
-    		}
-    	}
-    	return false;
-	}
+     * @param entry
+     *            an entry of the RFS snapshot
+     * @return true if the walk over the RFS reaches the entry, i.e. none of
+     *         its parent folders is hidden or ignored
+     */
+    private boolean isReachableInRfs(final RfsTree.Entry entry) {
+        final RfsTree.Entry root = this.rfsTree.getRoot();
+        File parent = entry.toFile().getParentFile();
 
-    /**
-     *
-     * @param syncResources
-     * @param file
-     * @return true if the file corresponds to one of the resources in the list
-     */
-    private boolean syncResourcesContainsResource(List<SyncResource> syncResources, File file) {
-    	String vfsName = getFilenameInVfs(file);
-    	for (SyncResource res:syncResources) {
-    		if (res.getResource().equals(vfsName)) {
-    			return true;
-    		}
-    	}
-    	return false;
-	}
+        while (parent != null) {
+            final RfsTree.Entry folder = this.rfsTree.get(parent);
+
+            if (folder == null) {
+                return false;
+            }
+
+            if (folder == root) {
+                return true;
+            }
+
+            if (folder.isHidden() || isIgnorableFile(folder)) {
+                return false;
+            }
+
+            parent = parent.getParentFile();
+        }
+
+        return false;
+    }
 
     /**
-     * Returns true if the resource in {@code str} can be found in the list in {@code strArray}.
+     * Returns true if the resource in {@code str} can be found in the list in {@code strArray}
+     * or lies below one of its entries, which may contain wildcards (see {@link PathTrie}).
      * @param str resource
      * @param strArray list of resources
-     * @return true if the resource in {@code str} can be found in the list in {@code strArray}.
+     * @return true if the resource in {@code str} is excluded by the list in {@code strArray}.
      */
     boolean resourceIsInExcludesArray(String str, String[] strArray) {
-	if (str.endsWith("/")) {
-	    str = str.substring(0, str.length() - 1);
-	}
-	String [] sortedArray = new String[strArray.length];
-	int i = 0;
-	for (String elem:strArray) {
-	    if (elem.endsWith("/")) {
-		elem = elem.substring(0, elem.length() - 1);
-	    }
-	    sortedArray[i++] = elem;
-
-	}
-	//System.arraycopy(strArray, 0, sortedArray, 0, strArray.length);
-	Arrays.sort(sortedArray);
-
-	int posAst = Arrays.binarySearch(sortedArray, "*");
-	int posStr = Arrays.binarySearch(sortedArray, str);
-	return posAst >= 0 || posStr >= 0;
-
+        // the arrays of the sync resources are compiled once per run
+        return this.excludeTries.computeIfAbsent(strArray, PathTrie::new).matches(str);
     }
 
     /**
@@ -1218,15 +1647,15 @@ public class VfsSync extends XmlHandling {
 	// .. and remove it from the old one
 	this.syncList.remove(this.translate(resname));
 	// update the report
-	this.getReport()
+	this.getResourceReport()
 	.print(org.opencms.report.Messages.get()
 		.container(org.opencms.report.Messages.RPT_SUCCESSION_1,
 			String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
-	this.getReport()
+	this.getResourceReport()
 	.print(org.opencms.synchronize.Messages.get()
 		.container(org.opencms.synchronize.Messages.RPT_SKIPPING_0),
 		I_CmsReport.FORMAT_NOTE);
-	this.getReport()
+	this.getResourceReport()
 	.println(org.opencms.report.Messages.get()
 		.container(org.opencms.report.Messages.RPT_ARGUMENT_1,
 			resname));
@@ -1234,171 +1663,339 @@ public class VfsSync extends XmlHandling {
     }
 
     /**
-     * Synchronizes resources from the VFS to the RFS.
-     * <p>
+     * Adds a resource missing from the sync list to the new sync list with
+     * the local dates, as it is unchanged against the baseline.
      *
-     * During the synchronization process, the following actions will be done:
-     * <p>
+     * @param res
+     *            the resource to add
+     */
+    private void adoptResource(final CmsResource res) {
+        final String resname = this.getCms().getSitePath(res);
+        final File fsFile = this.getFileInRfs(resname);
+        final File metadataFile;
+        if (res.isFolder()) {
+            metadataFile = this.getMetadataFolderInRfs(resname);
+        } else {
+            metadataFile = this.getMetadataFileInRfs(resname);
+        }
+        final long rfslastmod = Math.max(fsFile.lastModified(),
+            metadataFile.lastModified());
+        this.newSyncList.put(this.translate(resname),
+            new CmsSynchronizeList(resname, this.translate(resname),
+                res.getDateLastModified(), rfslastmod));
+        this.getResourceReport()
+            .print(org.opencms.report.Messages.get()
+                                              .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
+                String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
+        this.getResourceReport()
+            .print(org.opencms.synchronize.Messages.get()
+                                                   .container(org.opencms.synchronize.Messages.RPT_SKIPPING_0),
+            I_CmsReport.FORMAT_NOTE);
+        this.getResourceReport()
+            .println(org.opencms.report.Messages.get()
+                                                .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                resname + " (as in " + BaselineManifest.FILENAME + ")"));
+    }
+
+    /**
+     * Reads a VFS resource from the index or, if its path was not loaded, from
+     * the VFS.
      *
-     * <ul>
-     * <li>Export modified resources from the VFS to the FS</li>
-     * <li>Update resources in the VFS if the corresponding resource in the FS
-     * has changed</li>
-     * <li>Delete resources in the VFS if the corresponding resource in the FS
-     * has been deleted</li>
-     * </ul>
+     * @param sitePath
+     *            site path of the resource
+     * @return the resource
+     * @throws CmsException
+     *             if the resource does not exist
+     */
+    private CmsResource readVfsResource(final String sitePath)
+        throws CmsException {
+        final CmsResource res = this.vfsIndex.get(this.getCms().getRequestContext()
+                                                      .addSiteRoot(sitePath));
+
+        if (res != null) {
+            return res;
+        }
+
+        // not covered or missing, the VFS throws the proper exception
+        this.vfsCalls.increment();
+
+        return this.getCms().readResource(sitePath, CmsResourceFilter.IGNORE_EXPIRATION);
+    }
+
+    /**
+     * Lists the children of a VFS folder from the index or, if the folder was
+     * not loaded, from the VFS.
+     *
+     * @param folder
+     *            the folder
+     * @return the children, folders first
+     * @throws CmsException
+     *             if the folder cannot be read
+     */
+    private List<CmsResource> getVfsChildren(final CmsResource folder)
+        throws CmsException {
+        if (this.vfsIndex.covers(folder.getRootPath())) {
+            return this.vfsIndex.getChildren(folder);
+        }
+
+        return this.getCms()
+                   .getResourcesInFolder(this.getCms().getSitePath(folder),
+            CmsResourceFilter.IGNORE_EXPIRATION);
+    }
+
+    /**
+     * Tests if a VFS folder exists without reading it, if its path was loaded
+     * into the index.
+     *
+     * @param sitePath
+     *            site path of the folder
+     * @return true if the folder exists
+     */
+    private boolean existsVfsFolder(final String sitePath) {
+        final String rootPath = this.getCms().getRequestContext().addSiteRoot(sitePath);
+
+        if (this.vfsIndex.covers(rootPath)) {
+            final CmsResource res = this.vfsIndex.get(rootPath);
+
+            return (res != null) && res.isFolder();
+        }
+
+        try {
+            this.getCms().readFolder(sitePath, CmsResourceFilter.IGNORE_EXPIRATION);
+
+            return true;
+        } catch (final CmsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Synchronizes all configured VFS resources to the RFS, planning and
+     * applying one resource after the other.
+     */
+    private void syncVfsToRfs(final List<SyncResource> syncResources,
+        final boolean deleteRFSResources) throws CmsException {
+        for (SyncResource sourcePathInVfs:syncResources) {
+            // iterate through all configured VFS folders
+            final String destPath = this.destinationPathInRfs +
+                sourcePathInVfs.getResource().replace('/', File.separatorChar);
+            this.getResourceReport()
+                .println(org.opencms.workplace.threads.Messages.get()
+                                            .container(org.opencms.workplace.threads.Messages.RPT_SYNCHRONIZE_FOLDERS_2,
+                    sourcePathInVfs, destPath), I_CmsReport.FORMAT_HEADLINE);
+            // iterating thru VFS
+            // possible actions: exportToRfs(res), updateFromRfs(res),
+            // deleteFromVfs(res)
+            // any entry touched so far is moved from m_syncList to
+            // m_newSyncList
+            // so, entries remaining in m_synclist afterwards
+            // do no longer exist in VFS
+            this.applyPlan(this.planVfsToRfs(sourcePathInVfs), deleteRFSResources);
+        }
+    }
+
+    /**
+     * Plans the synchronization of a VFS subtree without changing anything.
+     * <p>
+     * The subtree is walked in the order of the former recursive
+     * synchronization, then the action for every resource is determined on
+     * the plan threads.
      *
      * @param sourcePathInVfs
-     *            The folder in the VFS to be synchronized with the FS
-     * @param startfolder
-     *            true only if called with the outermost folder, from the List
-     *            of VFS folders to synchronize, false for all recursive calls
-     *            on subfolders
+     *            the configured VFS resource to be synchronized with the FS
+     * @return the plan, empty if the resource does not exist in the VFS
      * @throws CmsException
      *             if something goes wrong
      */
-
-    // code taken from org.opencms.synchronize.CmsSynchronize
-    private void syncVfsToRfs(final SyncResource sourcePathInVfs, final boolean startfolder, boolean deleteRFSResources)
+    private SyncPlan planVfsToRfs(final SyncResource sourcePathInVfs)
         throws CmsException {
-        int action = 0;
+        final SyncPlan plan = new SyncPlan();
 
         // in contrast to plain OpenCms Sync, we need to export the start
         // folders ~folder.xml -- as well as single files
-        // first check if this folder is a folder and must be synchronized
+        final CmsResource res;
 
-        CmsResource res = null;
-        if (startfolder) {
-            try {
-                res = this.getCms()
-                          .readResource(sourcePathInVfs.getResource(),
-                        CmsResourceFilter.IGNORE_EXPIRATION);
-                action = this.testSyncVfs(res);
+        try {
+            res = this.readVfsResource(sourcePathInVfs.getResource());
+        } catch (final CmsException e) {
+            simpleReport("VfsSync.planVfsToRfs: Could not read resource " + sourcePathInVfs.getResource() +
+                ". copyFromRfs should copy it");
+            // in case the start folder could not be read stop syncing
+            // VFS=>RFS and leave it to copyFromRfs() to create the folder
+            return plan;
+        }
 
-                // do the correct action according to the test result
-                switch (action) {
-                case EXPORT_FROM_VFS:
-                    this.exportFromVFS(res); // OpenCms names it exportToRfs()
+        plan.add(new SyncPlan.Step(res, true));
 
-                    break;
+        if (res.isFolder()) {
+            this.addSubtreeToPlan(plan, res, sourcePathInVfs.getExcludes());
+        }
 
-                case UPDATE_IN_VFS:
-                    this.updateInVfs(res);
+        this.planActions(plan);
 
-                    break;
+        return plan;
+    }
 
-                //case DELETE_FROM_VFS:
-                // we're not going to delete our designated start folder
-                // we just par default skipresource
-                //  break;
-                default:
-                    this.skipResource(res);
-                }
-            } catch (final CmsException e) {
-            	simpleReport("VfsSync.syncVfsToRfs: Could not read resource " + sourcePathInVfs.getResource() +
-            		". copyFromRfs should copy it");
-                // in case the start folder could not be read stop syncing
-                // VFS=>RFS and leave it to copyFromRfs() to create the folder
-                return;
+    private void addSubtreeToPlan(final SyncPlan plan, final CmsResource folder,
+        final String[] excludes) throws CmsException {
+        for (final CmsResource res : this.getVfsChildren(folder)) {
+            // test if the resource is marked as deleted. if so,
+            // do nothing, the corresponding file in the RFS will be removed later
+            // ~ code taken from org.opencms.importexport.CmsExport
+            if (res.getState().isDeleted() || res.getName().startsWith("~") ||
+                    resourceIsInExcludesArray(this.getCms().getSitePath(res), excludes)) {
+                continue;
+            }
+
+            final SyncPlan.Step step = new SyncPlan.Step(res, false);
+            plan.add(step);
+
+            if (res.isFolder()) {
+                // the subtree must be done before the folder might be deleted
+                this.addSubtreeToPlan(plan, res, excludes);
+                plan.add(new SyncPlan.Step(step));
             }
         }
+    }
 
-        // get all resources in the given folder or fill the list with the file given
-        final List<CmsResource> resources;
-        if (res == null) {
-            res = this.getCms()
-        	    .readResource(sourcePathInVfs.getResource(),
-        		    CmsResourceFilter.IGNORE_EXPIRATION);
+    /**
+     * Determines the actions of all steps. testSyncVfs() only reads, so the
+     * steps are independent of each other.
+     */
+    private void planActions(final SyncPlan plan) throws CmsException {
+        final List<SyncPlan.Step> steps = new ArrayList<>();
+
+        for (final SyncPlan.Step step : plan.getSteps()) {
+            if (!step.isSubtreeEnd()) {
+                steps.add(step);
+            }
         }
-        if (res.isFolder()) {
-            resources = this.getCms()
-        	    .getResourcesInFolder(sourcePathInVfs.getResource(),
-        		    CmsResourceFilter.IGNORE_EXPIRATION);
-        } else {
-            resources = new ArrayList<>();
-            //resources.add(res); //This resource has been already correctly synchronized
+
+        if ((this.planExecutor == null) || (steps.size() < 2)) {
+            for (final SyncPlan.Step step : steps) {
+                step.setAction(this.testSyncVfs(step.getResource()));
+            }
+
+            return;
         }
 
-        // now look through all resources in the folder
-        for (int i = 0; i < resources.size(); i++) {
-            res = resources.get(i);
+        final CmsObject base = this.getCms();
+        final List<Future<?>> futures = new ArrayList<>(steps.size());
 
-            // test if the resource is marked as deleted. if so,
-            // do nothing, the corresponding file in the RFS will be removed later
-            // ~ code taken from org.opencms.importexport.CmsExport
-            if ((!res.getState().isDeleted()) &&
-        	    (!res.getName().startsWith("~"))) {
+        for (final SyncPlan.Step step : steps) {
+            futures.add(this.planExecutor.submit(() -> {
+                    this.initWorkerCms(base);
+                    step.setAction(this.testSyncVfs(step.getResource()));
 
-        	String childResourcePath = this.getCms().getSitePath(res);
-        	if (resourceIsInExcludesArray(childResourcePath, sourcePathInVfs.getExcludes())) {
-        	    //simpleReport("Not doing VfsToRfs of "+childResourcePath+" because it is in the excludes list");
-        	} else {
-        	    //simpleReport("Doing VfsToRfs of "+childResourcePath+" because it is NOT in the excludes list");
-        	    //simpleReport("Excludes: "+Arrays.toString(sourcePathInVfs.getExcludes()));
+                    return null;
+                }));
+        }
+
+        try {
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CmsSynchronizeException(org.opencms.report.Messages.get()
+                .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                    "ERROR: planning interrupted"), e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof CmsException) {
+                throw (CmsException) e.getCause();
+            }
+
+            throw new CmsSynchronizeException(org.opencms.report.Messages.get()
+                .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                    "ERROR: planning failed"), e.getCause());
+        } finally {
+            for (final Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
 
-        	    // do a recursion if the current resource is a folder
-        	    if (res.isFolder()) {
-        		// first check if this folder must be synchronised
-        		action = this.testSyncVfs(res);
+    /**
+     * Applies a plan in order.
+     * <ul>
+     * <li>Export modified resources from the VFS to the FS</li>
+     * <li>Update resources in the VFS if the corresponding resource in the FS
+     * has changed</li>
+     * <li>Delete resources in the VFS if the corresponding resource in the FS
+     * has been deleted</li>
+     * </ul>
+     *
+     * @param plan
+     *            the plan of one configured VFS resource
+     * @throws CmsException
+     *             if something goes wrong
+     */
+    private void applyPlan(final SyncPlan plan, final boolean deleteRFSResources)
+        throws CmsException {
+        for (final SyncPlan.Step step : plan.getSteps()) {
+            if (!step.isStartFolder()) {
+                this.applyStep(step, deleteRFSResources);
 
-        		// do the correct action according to the test result
-        		switch (action) {
-        		case EXPORT_FROM_VFS:
-        		    this.exportFromVFS(res); // OpenCms names it exportToRfs()
+                continue;
+            }
 
-        		    break;
+            try {
+                this.applyStep(step, deleteRFSResources);
+            } catch (final CmsException e) {
+                // like a start folder which could not be read, stop syncing
+                // VFS=>RFS for this resource
+                simpleReport("VfsSync.applyPlan: Could not synchronize resource " +
+                    this.getCms().getSitePath(step.getResource()) + ": " + e.getMessage());
 
-        		case UPDATE_IN_VFS:
-        		    this.updateInVfs(res);
+                return;
+            }
+        }
+    }
 
-        		    break;
+    // code taken from org.opencms.synchronize.CmsSynchronize
+    private void applyStep(final SyncPlan.Step step,
+        final boolean deleteRFSResources) throws CmsException {
+        final CmsResource res = step.getResource();
 
-        		case DELETE_FROM_VFS:
+        if (step.isSubtreeEnd()) {
+            if (step.getAction() == DELETE_FROM_VFS) {
+                this.deleteFromVfs(res, deleteRFSResources);
+            }
 
-        		    // passiert unten nach der Rekursion: this.deleteFromVfs(res);
-        		    // thus, here, do nothing
-        		    break;
+            return;
+        }
 
-        		default:
-        		    this.skipResource(res);
-        		}
+        // do the correct action according to the test result
+        switch (step.getAction()) {
+        case EXPORT_FROM_VFS:
+            this.exportFromVFS(res); // OpenCms names it exportToRfs()
 
-        		// recurse into the subfolders. This must be done before
-        		// the folder might be deleted!
-        		this.syncVfsToRfs(new SyncResource(childResourcePath, sourcePathInVfs.getExcludes()), false, 
-        		        deleteRFSResources);
+            break;
 
-        		if (action == DELETE_FROM_VFS) {
-        		    this.deleteFromVfs(res, deleteRFSResources);
-        		}
-        	    } else {
-        		// if the current resource is a file, check if it has to
-        		// be synchronized
-        		action = this.testSyncVfs(res);
+        case UPDATE_IN_VFS:
+            this.updateInVfs(res);
 
-        		// do the correct action according to the test result
-        		switch (action) {
-        		case EXPORT_FROM_VFS:
-        		    this.exportFromVFS(res); // OpenCms names it exportToRfs()
+            break;
 
-        		    break;
+        case DELETE_FROM_VFS:
 
-        		case UPDATE_IN_VFS:
-        		    this.updateInVfs(res);
+            if (step.isStartFolder()) {
+                // we're not going to delete our designated start folder
+                this.skipResource(res);
+            } else if (!res.isFolder()) {
+                this.deleteFromVfs(res, deleteRFSResources);
+            }
 
-        		    break;
+            // folders are deleted after their subtree
+            break;
 
-        		case DELETE_FROM_VFS:
-        		    this.deleteFromVfs(res, deleteRFSResources);
+        case ADOPT_FROM_BASELINE:
+            this.adoptResource(res);
 
-        		    break;
+            break;
 
-        		default:
-        		    this.skipResource(res);
-        		}
-        	    }
-        	} //if is in excludes
-            }
+        default:
+            this.skipResource(res);
         }
     }
 
@@ -1436,15 +2033,21 @@ public class VfsSync extends XmlHandling {
 		metadataFile = this.getMetadataFileInRfs(sync.getResName());
 	    }
 
-		try {
-			this.setDocXml(CmsXmlUtils.unmarshalHelper(
-					CmsFileUtil.readFile(metadataFile), null));
-		} catch (Exception e) {
-			//do nothing
-		}
-	    
+	    // the metadata file is only parsed if the dates below call for a
+	    // closer look, see isFileWasChanged()
+	    this.knownResources.increment();
+
 	    final long vfslastmod = res.getDateLastModified();
 
+	    // dates of RFS files do not survive a checkout, their contents do
+	    if (this.baseline != null) {
+		final int baselineAction = this.testBaseline(res, sync, fsFile, metadataFile);
+
+		if (baselineAction >= 0) {
+		    return baselineAction;
+		}
+	    }
+
 	    // in a subversion team environment it may happen that *only* the metadata file is newer
 	    final long rfslastmod = Math.max(fsFile.lastModified(),
 		    metadataFile.lastModified());
@@ -1462,10 +2065,10 @@ public class VfsSync extends XmlHandling {
 		if ((rfslastmod > sync.getModifiedFs()) &&
 			(rfslastmod > vfslastmod)) {
 		    // RFS neuer als Sync und VFS
-			if (isFileWasChanged(fsFile, res)) {
+			if (isFileWasChanged(fsFile, metadataFile, res)) {
 				action = UPDATE_IN_VFS; // RFS => VFS
 			}
-		} else if (isFileWasChanged(fsFile, res)) {
+		} else if (isFileWasChanged(fsFile, metadataFile, res)) {
 		    action = EXPORT_FROM_VFS; // VFS => RFS
 		}
 	    } else { // nicht neu im VFS
@@ -1474,13 +2077,16 @@ public class VfsSync extends XmlHandling {
 
 		if (fsFile.exists()) {
 		    // now check if the resource in the FS might have changed
-		    if (rfslastmod > sync.getModifiedFs() && isFileWasChanged(fsFile, res)) {
+		    if (rfslastmod > sync.getModifiedFs() && isFileWasChanged(fsFile, metadataFile, res)) {
 			action = UPDATE_IN_VFS;
 		    } // else action remains 0
 		} else {
 		    action = DELETE_FROM_VFS;
 		}
 	    }
+	} else if ((this.baseline != null) && this.isUnchangedAgainstBaseline(res)) {
+	    // e.g. a fresh clone: both sides are as the baseline describes them
+	    action = ADOPT_FROM_BASELINE;
 	} else {
 	    // the resource name was not found in the sync list
 	    // this is a new resource
@@ -1490,13 +2096,111 @@ public class VfsSync extends XmlHandling {
 	return action;
     }
 
+    /**
+     * Compares a resource with the baseline written by the last local run.
+     * The baseline only decides the RFS side: its files are unchanged if
+     * their digests match the baseline, whatever their dates are. Whether the
+     * VFS resource changed is taken from the sync list as always. If only one
+     * side has changed, the contents and metadata are compared like by the
+     * date based test; changes on both sides are left to the date based test.
+     *
+     * @return the action or -1 if the baseline does not decide
+     */
+    private int testBaseline(final CmsResource res, final CmsSynchronizeList sync,
+        final File fsFile, final File metadataFile) {
+        if (!this.baselineWrittenHere) {
+            return -1;
+        }
+
+        final BaselineManifest.Entry entry = this.baseline.get(sync.getResName());
+
+        if ((entry == null) || !fsFile.exists()) {
+            return -1;
+        }
+
+        final boolean vfsUnchanged = res.getDateLastModified() <= sync.getModifiedVfs();
+        final boolean rfsUnchanged = this.matchesBaseline(entry, fsFile, metadataFile);
+
+        if (vfsUnchanged && rfsUnchanged) {
+            return 0;
+        }
+
+        if (vfsUnchanged) {
+            return this.isFileWasChanged(fsFile, metadataFile, res) ? UPDATE_IN_VFS : 0;
+        }
+
+        if (rfsUnchanged) {
+            return this.isFileWasChanged(fsFile, metadataFile, res) ? EXPORT_FROM_VFS : 0;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compares a resource missing from the sync list with the baseline,
+     * which may have been written by any run: the RFS files and the VFS
+     * content must have its digests. The VFS content is read unless its
+     * digest is cached.
+     *
+     * @return true if the resource needs no export
+     */
+    private boolean isUnchangedAgainstBaseline(final CmsResource res) {
+        final String resourcename = this.getCms().getSitePath(res);
+        final BaselineManifest.Entry entry = this.baseline.get(resourcename);
+
+        if (entry == null) {
+            return false;
+        }
+
+        final File fsFile = this.getFileInRfs(resourcename);
+        final File metadataFile = res.isFolder()
+            ? this.getMetadataFolderInRfs(resourcename)
+            : this.getMetadataFileInRfs(resourcename);
+
+        if (!fsFile.exists() || (!res.isFolder() && (fsFile.length() != res.getLength())) ||
+                !this.matchesBaseline(entry, fsFile, metadataFile)) {
+            return false;
+        }
+
+        try {
+            return entry.matchesVfs(res.isFolder() ? null : this.getVfsDigest(res));
+        } catch (final CmsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the content and metadata files have the digests of
+     *         the baseline; the digests are cached by size and date
+     */
+    private boolean matchesBaseline(final BaselineManifest.Entry entry,
+        final File fsFile, final File metadataFile) {
+        try {
+            if ((entry.getContentDigest() != null) &&
+                    (!fsFile.isFile() ||
+                    !entry.getContentDigest().equals(this.getRfsDigest(fsFile)))) {
+                return false;
+            }
+
+            return metadataFile.isFile() &&
+            entry.getMetadataDigest().equals(this.getRfsDigest(metadataFile));
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
 	/**
 	 * Check if the file in VFS or RFS was changed
 	 * 
 	 * Required to prevent unnecessary metadata updates
 	 * 
+	 * The contents are compared first, the metadata file is only parsed if
+	 * they are equal.
+	 * 
 	 * @param fsFile
 	 *            - file in File System
+	 * @param metadataFile
+	 *            - metadata file in File System
 	 * @param resource
 	 *            - CmsResource in VFS
 	 * 
@@ -1504,25 +2208,36 @@ public class VfsSync extends XmlHandling {
 	 * 
 	 */
 	private boolean isFileWasChanged(final File fsFile,
-			final CmsResource resource) {
+			final File metadataFile, final CmsResource resource) {
 		final Map<String, Object> fsFileParams = new HashMap<>();
 		final Map<String, Object> vfsFileParams = new HashMap<>();
 		try {
-			fillFileParamMap(fsFileParams, null, false);
-			fillFileParamMap(vfsFileParams, resource, true);
 			if (isFileContentsDiffer(fsFile, resource)) {
 				return true;
 			}
+			final ResourceMetadata metadata = MetadataReader.read(metadataFile);
+			this.parsedMetadata.increment();
+			fillFileParamMap(fsFileParams, null, false, metadata);
+			fillFileParamMap(vfsFileParams, resource, true, metadata);
 			if (isParamsDiffer(fsFileParams, vfsFileParams)) {
 				return true;
 			}
 		} catch (final Exception e) {
-			this.getReport().println(e);
+			synchronized (this.getResourceReport()) {
+				this.getResourceReport().println(e);
+			}
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Compares the contents of a VFS resource and an RFS file. Contents of
+	 * different size differ without being read. Otherwise the SHA-256
+	 * digests are compared if one of them is in the digest cache, else the
+	 * contents are compared chunk by chunk, stopping at the first
+	 * difference; equal contents fill the digest cache for the next run.
+	 */
 	private boolean isFileContentsDiffer(final File fsFile,
 			final CmsResource resource) throws IOException, CmsException {
 		if (null == resource || null == fsFile) {
@@ -1531,11 +2246,113 @@ public class VfsSync extends XmlHandling {
 		if (OpenCms.getResourceManager().getResourceType(resource).isFolder()) {
 			return false;
 		}
-		return !Arrays.equals(this.getCms().readFile(resource).getContents(),
-				CmsFileUtil.readFile(fsFile));
+		final long lastModified = fsFile.lastModified();
+		final long size = fsFile.length();
+		if (resource.getLength() != size) {
+			return true;
+		}
+		final String structureId = resource.getStructureId().toString();
+		String vfsDigest = this.digestCache.getVfsDigest(structureId,
+				resource.getDateContent(), resource.getLength());
+		String rfsDigest = this.digestCache.getRfsDigest(fsFile, lastModified, size);
+		if (vfsDigest != null) {
+			if (rfsDigest != null) {
+				return !vfsDigest.equals(rfsDigest);
+			}
+			// a changed file is probably imported next, so read it only once
+			final byte[] rfsContent = this.rfsContents.readForCompare(fsFile);
+			if (rfsContent == null) {
+				return !vfsDigest.equals(this.getRfsDigest(fsFile));
+			}
+			rfsDigest = DigestCache.digest(rfsContent);
+			this.digestCache.putRfsDigest(fsFile, lastModified, size, rfsDigest);
+			return this.keepIfDiffer(fsFile, lastModified, rfsContent,
+					!vfsDigest.equals(rfsDigest));
+		}
+		final byte[] content = this.getCms().readFile(resource).getContents();
+		this.vfsCalls.increment();
+		this.bytesRead.add(content.length);
+		if (rfsDigest != null) {
+			vfsDigest = DigestCache.digest(content);
+			this.digestCache.putVfsDigest(structureId, resource.getDateContent(),
+					resource.getLength(), vfsDigest);
+			return !vfsDigest.equals(rfsDigest);
+		}
+		final byte[] rfsContent = this.rfsContents.readForCompare(fsFile);
+		if (rfsContent == null) {
+			this.bytesRead.add(size);
+			if (!ContentComparator.contentEquals(content, fsFile)) {
+				return true;
+			}
+		} else if (this.keepIfDiffer(fsFile, lastModified, rfsContent,
+				!Arrays.equals(content, rfsContent))) {
+			return true;
+		}
+		final String digest = DigestCache.digest(content);
+		this.digestCache.putVfsDigest(structureId, resource.getDateContent(),
+				resource.getLength(), digest);
+		this.digestCache.putRfsDigest(fsFile, lastModified, size, digest);
+		return false;
+	}
+
+	/**
+	 * Keeps an RFS content which differs from the VFS for the import that
+	 * probably follows, otherwise releases it.
+	 */
+	private boolean keepIfDiffer(final File fsFile, final long lastModified,
+			final byte[] rfsContent, final boolean differ) {
+		if (differ) {
+			this.rfsContents.keep(fsFile, lastModified, rfsContent);
+		} else {
+			this.rfsContents.release(rfsContent);
+		}
+		return differ;
+	}
+
+	private String getVfsDigest(final CmsResource resource) throws CmsException {
+		final String structureId = resource.getStructureId().toString();
+		String digest = this.digestCache.getVfsDigest(structureId,
+				resource.getDateContent(), resource.getLength());
+		if (digest == null) {
+			final byte[] content = this.getCms().readFile(resource).getContents();
+			this.vfsCalls.increment();
+			this.bytesRead.add(content.length);
+			digest = DigestCache.digest(content);
+			this.digestCache.putVfsDigest(structureId, resource.getDateContent(),
+					resource.getLength(), digest);
+		}
+		return digest;
+	}
+
+	private String getRfsDigest(final File fsFile) throws IOException {
+		final long lastModified = fsFile.lastModified();
+		final long size = fsFile.length();
+		String digest = this.digestCache.getRfsDigest(fsFile, lastModified, size);
+		if (digest == null) {
+			this.bytesRead.add(size);
+			digest = DigestCache.digest(fsFile);
+			this.digestCache.putRfsDigest(fsFile, lastModified, size, digest);
+		}
+		return digest;
+	}
+
+	/**
+	 * Stores the digest of a content that is identical in VFS and RFS right
+	 * after it has been exported or imported.
+	 */
+	private void storeDigest(final CmsResource resource, final File fsFile,
+			final byte[] content) {
+		if (resource.isFolder()) {
+			return;
+		}
+		final String digest = DigestCache.digest(content);
+		this.digestCache.putVfsDigest(resource.getStructureId().toString(),
+				resource.getDateContent(), resource.getLength(), digest);
+		this.digestCache.putRfsDigest(fsFile, fsFile.lastModified(),
+				fsFile.length(), digest);
 	}
 
-	private boolean isParamsDiffer(final Map<String, Object> fsFileParams,
+	boolean isParamsDiffer(final Map<String, Object> fsFileParams,
 			final Map<String, Object> vfsFileParams) {
 		for (String key : fsFileParams.keySet()) {
 			if (vfsFileParams.get(key) instanceof String
@@ -1579,7 +2396,7 @@ public class VfsSync extends XmlHandling {
 		return false;
 	}
 
-	private <T> boolean isListEquals(final List<T> vfsList,
+	<T> boolean isListEquals(final List<T> vfsList,
 			final List<T> fsList, final Comparator<? super T> comparator) {
 		if (isListsEmpty(vfsList, fsList)) {
 			return true;
@@ -1662,36 +2479,32 @@ public class VfsSync extends XmlHandling {
 	}
 
 	private void fillFileParamMap(final Map<String, Object> fileParamMap,
-			final CmsResource resource, final boolean readParamFromVfsFile)
-			throws Exception {
+			final CmsResource resource, final boolean readParamFromVfsFile,
+			final ResourceMetadata metadata) throws Exception {
 		List<String> ignoredProperties = OpenCms.getImportExportManager()
 				.getIgnoredProperties();
 		if (ignoredProperties == null) {
 			ignoredProperties = Collections.emptyList();
 		}
-		final Element currentElement = (Element) this.getDocXml()
-				.selectNodes("//" + CmsImportVersion10.N_FILE).get(0);
 
 		// <type>
 		final I_CmsResourceType type = readParamFromVfsFile ? OpenCms
 				.getResourceManager().getResourceType(resource) : OpenCms
 				.getResourceManager().getResourceType(
-						XmlHandling.getChildElementTextValue(currentElement,
-								CmsImportVersion10.N_TYPE));
+						metadata.getValue(CmsImportVersion10.N_TYPE));
 		fileParamMap.put(CmsImportVersion10.N_TYPE, type);
 
 		// <destination>
-		final String destination = XmlHandling.getChildElementTextValue(
-				currentElement, CmsImportVersion10.N_DESTINATION);
+		final String destination = metadata
+				.getValue(CmsImportVersion10.N_DESTINATION);
 		fileParamMap.put(CmsImportVersion10.N_DESTINATION,
 				readParamFromVfsFile ? this.getCms().getSitePath(resource)
 						: "/" + destination + (type.isFolder() ? "/" : ""));
 
 		// <uuidstructure>
 		final String uuidstructure = readParamFromVfsFile ? resource
-				.getStructureId().toString() : XmlHandling
-				.getChildElementTextValue(currentElement,
-						CmsImportVersion10.N_UUIDSTRUCTURE);
+				.getStructureId().toString() : metadata
+				.getValue(CmsImportVersion10.N_UUIDSTRUCTURE);
 		fileParamMap.put(CmsImportVersion10.N_UUIDSTRUCTURE, uuidstructure);
 
 		// <uuidresource>
@@ -1699,8 +2512,7 @@ public class VfsSync extends XmlHandling {
 			fileParamMap.put(
 					CmsImportVersion10.N_UUIDRESOURCE,
 					readParamFromVfsFile ? resource.getResourceId().toString()
-							: XmlHandling.getChildElementTextValue(
-									currentElement,
+							: metadata.getValue(
 									CmsImportVersion10.N_UUIDRESOURCE));
 		} else {
 			fileParamMap.put(CmsImportVersion10.N_UUIDRESOURCE, null);
@@ -1709,24 +2521,24 @@ public class VfsSync extends XmlHandling {
 		// <userlastmodified>
 		fileParamMap.put(
 				CmsImportVersion10.N_USERLASTMODIFIED,
-				readParamFromVfsFile ? this.getCms()
+				readParamFromVfsFile ? this.getPrincipalCache()
 						.readUser(resource.getUserLastModified()).getName()
-						: getUserFieldFromMetadata(currentElement,
+						: getUserFieldFromMetadata(metadata,
 								CmsImportVersion10.N_USERLASTMODIFIED));
 
 		// <usercreated>
 		fileParamMap.put(
 				CmsImportVersion10.N_USERCREATED,
-				readParamFromVfsFile ? this.getCms()
+				readParamFromVfsFile ? this.getPrincipalCache()
 						.readUser(resource.getUserLastModified()).getName()
-						: getUserFieldFromMetadata(currentElement,
+						: getUserFieldFromMetadata(metadata,
 								CmsImportVersion10.N_USERCREATED));
 
 		// <datecreated>
 		fileParamMap.put(
 				CmsImportVersion10.N_DATECREATED,
 				readParamFromVfsFile ? resource.getDateCreated() / 1000
-						: getDateFieldFromMetadata(currentElement,
+						: getDateFieldFromMetadata(metadata,
 								CmsImportVersion10.N_DATECREATED,
 								System.currentTimeMillis()) / 1000);
 
@@ -1734,7 +2546,7 @@ public class VfsSync extends XmlHandling {
 		fileParamMap.put(
 				CmsImportVersion10.N_DATERELEASED,
 				readParamFromVfsFile ? resource.getDateReleased() / 1000
-						: getDateFieldFromMetadata(currentElement,
+						: getDateFieldFromMetadata(metadata,
 								CmsImportVersion10.N_DATERELEASED,
 								CmsResource.DATE_RELEASED_DEFAULT) / 1000);
 
@@ -1742,7 +2554,7 @@ public class VfsSync extends XmlHandling {
 		fileParamMap.put(
 				CmsImportVersion10.N_DATEEXPIRED,
 				readParamFromVfsFile ? resource.getDateExpired() / 1000
-						: getDateFieldFromMetadata(currentElement,
+						: getDateFieldFromMetadata(metadata,
 								CmsImportVersion10.N_DATEEXPIRED,
 								CmsResource.DATE_EXPIRED_DEFAULT) / 1000);
 
@@ -1750,42 +2562,34 @@ public class VfsSync extends XmlHandling {
 		fileParamMap.put(
 				CmsImportVersion10.N_FLAGS,
 				readParamFromVfsFile ? String.valueOf(resource.getFlags())
-						: XmlHandling.getChildElementTextValue(currentElement,
-								CmsImportVersion10.N_FLAGS));
+						: metadata.getValue(CmsImportVersion10.N_FLAGS));
 
 		// <properties>
 		fileParamMap.put(
 				CmsImportVersion10.N_PROPERTIES,
-				readParamFromVfsFile ? this.getCms().readPropertyObjects(
-						resource, false) : this.readPropertiesFromManifest(
-						currentElement, ignoredProperties));
+				readParamFromVfsFile ? this.attributeCache.readProperties(
+						this.getCms(), resource) : this.readPropertiesFromManifest(
+						metadata.getProperties(), ignoredProperties));
 
 		// <accesscontrol>
 		fileParamMap
 				.put(CmsImportVersion10.N_ACCESSCONTROL_ENTRIES,
-						readParamFromVfsFile ? this.getCms()
-								.getAccessControlEntries(
-										this.getCms().getSitePath(resource),
-										false)
-								: getACEList(
-										uuidstructure,
-										currentElement
-												.selectNodes("*/"
-														+ CmsImportVersion10.N_ACCESSCONTROL_ENTRY)));
+						readParamFromVfsFile ? this.attributeCache
+								.readAccessEntries(this.getCms(), resource)
+								: getACEList(uuidstructure,
+										metadata.getAccessEntries()));
 		// <relations>
 		fileParamMap.put(
 				CmsImportVersion10.N_RELATIONS,
-				readParamFromVfsFile ? this.getCms().getRelationsForResource(
-						this.getCms().getSitePath(resource),
-						CmsRelationFilter.TARGETS.filterNotDefinedInContent())
+				readParamFromVfsFile ? this.attributeCache.readRelations(
+						this.getCms(), resource)
 						: getRelationsForElement(new CmsUUID(uuidstructure),
-								destination, currentElement));
+								destination, metadata.getRelations()));
 	}
 
-	private long getDateFieldFromMetadata(final Element currentElement,
+	private long getDateFieldFromMetadata(final ResourceMetadata metadata,
 			final String fieldname, final long defaultValue) {
-		String timestamp = XmlHandling.getChildElementTextValue(currentElement,
-				fieldname);
+		String timestamp = metadata.getValue(fieldname);
 		if (timestamp != null) {
 			return this.convertTimestamp(timestamp);
 		} else {
@@ -1793,23 +2597,19 @@ public class VfsSync extends XmlHandling {
 		}
 	}
 
-	private String getUserFieldFromMetadata(final Element currentElement,
+	private String getUserFieldFromMetadata(final ResourceMetadata metadata,
 			final String fieldname) {
 		return OpenCms.getImportExportManager().translateUser(
-				XmlHandling.getChildElementTextValue(currentElement,
-						CmsImportVersion10.N_USERLASTMODIFIED));
+				metadata.getValue(CmsImportVersion10.N_USERLASTMODIFIED));
 	}
 
 	private List<CmsAccessControlEntry> getACEList(final String uuidresource,
-			final List acentryNodes) {
+			final List<ResourceMetadata.AccessEntry> accessEntries) {
 		final List<CmsAccessControlEntry> aceList = new ArrayList<>();
-		Element currentEntry;
-		for (int j = 0; j < acentryNodes.size(); j++) {
-			currentEntry = (Element) acentryNodes.get(j);
+		for (final ResourceMetadata.AccessEntry currentEntry : accessEntries) {
 
 			// get the data of the access control entry
-			final String id = XmlHandling.getChildElementTextValue(
-					currentEntry, CmsImportVersion10.N_ACCESSCONTROL_PRINCIPAL);
+			final String id = currentEntry.getPrincipal();
 			String principalId = new CmsUUID().toString();
 			String principal = id.substring(id.indexOf('.') + 1, id.length());
 
@@ -1817,12 +2617,12 @@ public class VfsSync extends XmlHandling {
 				if (id.startsWith(I_CmsPrincipal.PRINCIPAL_GROUP)) {
 					principal = OpenCms.getImportExportManager()
 							.translateGroup(principal);
-					principalId = this.getCms().readGroup(principal).getId()
+					principalId = this.getPrincipalCache().readGroup(principal).getId()
 							.toString();
 				} else if (id.startsWith(I_CmsPrincipal.PRINCIPAL_USER)) {
 					principal = OpenCms.getImportExportManager().translateUser(
 							principal);
-					principalId = this.getCms().readUser(principal).getId()
+					principalId = this.getPrincipalCache().readUser(principal).getId()
 							.toString();
 				} else if (id.startsWith(CmsRole.PRINCIPAL_ROLE)) {
 					principalId = CmsRole.valueOfRoleName(principal).getId()
@@ -1837,28 +2637,17 @@ public class VfsSync extends XmlHandling {
 							.toString();
 				}
 
-				final String acflags = XmlHandling.getChildElementTextValue(
-						currentEntry, CmsImportVersion10.N_FLAGS);
-				final String allowed = ((Element) currentEntry
-						.selectNodes(
-								"./"
-										+ CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET
-										+ "/"
-										+ CmsImportVersion10.N_ACCESSCONTROL_ALLOWEDPERMISSIONS)
-						.get(0)).getTextTrim();
-				final String denied = ((Element) currentEntry
-						.selectNodes(
-								"./"
-										+ CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET
-										+ "/"
-										+ CmsImportVersion10.N_ACCESSCONTROL_DENIEDPERMISSIONS)
-						.get(0)).getTextTrim();
+				final String acflags = currentEntry.getFlags();
+				final String allowed = currentEntry.getAllowed();
+				final String denied = currentEntry.getDenied();
 				aceList.add(new CmsAccessControlEntry(
 						new CmsUUID(uuidresource), new CmsUUID(principalId),
 						Integer.parseInt(allowed), Integer.parseInt(denied),
 						Integer.parseInt(acflags)));
 			} catch (final CmsException e) {
-				this.getReport().println(e);
+				synchronized (this.getResourceReport()) {
+					this.getResourceReport().println(e);
+				}
 			}
 		}
 		return aceList;
@@ -1899,6 +2688,7 @@ public class VfsSync extends XmlHandling {
     // code taken from org.opencms.synchronize.CmsSynchronize
     private void updateInVfs(final CmsResource res) throws CmsException {
         CmsFile vfsFile;
+        byte[] content = null;
 
         // to get the name of the file in the RFS, we must look it up in the
         // sync list. This is necessary, since the VFS could use a tranlated
@@ -1907,19 +2697,19 @@ public class VfsSync extends XmlHandling {
         final CmsSynchronizeList sync = (CmsSynchronizeList) this.syncList.get(this.translate(
                     resourcename));
         final File fsFile = this.getFileInRfs(sync.getResName());
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_SUCCESSION_1,
                 String.valueOf(this.count++)), I_CmsReport.FORMAT_NOTE);
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.synchronize.Messages.get()
                                                    .container(org.opencms.synchronize.Messages.RPT_UPDATE_FILE_0),
             I_CmsReport.FORMAT_NOTE);
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                 resourcename));
-        this.getReport()
+        this.getResourceReport()
             .print(org.opencms.report.Messages.get()
                                               .container(org.opencms.report.Messages.RPT_DOTS_0));
         // lock the file in the VFS, so that it can be updated
@@ -1933,7 +2723,8 @@ public class VfsSync extends XmlHandling {
 
             // import the content from the RFS
             try {
-                vfsFile.setContents(CmsFileUtil.readFile(fsFile));
+                content = this.rfsContents.take(fsFile);
+                vfsFile.setContents(content);
             } catch (final IOException e) {
                 throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
                                                                .container(org.opencms.synchronize.Messages.ERR_IMPORT_1,
@@ -1941,6 +2732,8 @@ public class VfsSync extends XmlHandling {
             }
 
             this.getCms().writeFile(vfsFile);
+            this.vfsCalls.add(2);
+            this.bytesWritten.add(content.length);
 
             metadataFile = this.getMetadataFileInRfs(sync.getResName());
 
@@ -1948,9 +2741,8 @@ public class VfsSync extends XmlHandling {
                 try {
                     // code taken from org.opencms.importexport.CmsImport
                     // read the xml-config file
-                    this.setDocXml(CmsXmlUtils.unmarshalHelper(
-                            CmsFileUtil.readFile(metadataFile), null));
-                    this.readResourcesFromManifest(null);
+                    this.readResourcesFromManifest(MetadataReader.read(metadataFile),
+                        null);
                  // resource gets last modified from metadata
                     // no content for folder
                 } catch (final IOException ex) {
@@ -1959,7 +2751,7 @@ public class VfsSync extends XmlHandling {
                             fsFile.getName()), ex);
                 }
             } else {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                         "ERROR: unable to read " +
@@ -1977,9 +2769,8 @@ public class VfsSync extends XmlHandling {
                 try {
                     // code taken from org.opencms.importexport.CmsImport
                     // read the xml-config file
-                    this.setDocXml(CmsXmlUtils.unmarshalHelper(
-                            CmsFileUtil.readFile(metadataFile), null));
-                    this.readResourcesFromManifest(null);
+                    this.readResourcesFromManifest(MetadataReader.read(metadataFile),
+                        null);
 
                     // no content for folder
                 } catch (final IOException ex) {
@@ -1988,7 +2779,7 @@ public class VfsSync extends XmlHandling {
                             fsFile.getName()), ex);
                 }
             } else {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                         "ERROR: unable to read " +
@@ -2003,19 +2794,14 @@ public class VfsSync extends XmlHandling {
 
         getCms().setDateLastModified(resourcename, fsFile.lastModified(), false);
         final CmsResource readres = getCms().readResource(resourcename);
+        this.vfsIndex.add(readres);
+        this.attributeCache.invalidate(readres.getRootPath());
         // hier nochmal die aktualisierten Metadaten rausschreiben mit dem neuen Datemodified
         // XML STUFF
-        try {
-            final Element exportNode = this.openExportFile(metadataFile);
-            this.appendResourceToManifest(readres, false, exportNode);
-            this.closeExportFile(exportNode);
-            metadataFile.setLastModified(fsFile.lastModified());
-        } catch (final SAXException e) {
-            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                         .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0));
-        } catch (final IOException e) {
-            throw new CmsSynchronizeException(org.opencms.synchronize.Messages.get()
-                                                         .container(org.opencms.synchronize.Messages.ERR_WRITE_FILE_0));
+        this.writeMetadata(readres, metadataFile, fsFile.lastModified());
+
+        if (content != null) {
+            this.storeDigest(readres, fsFile, content);
         }
 
         // add resource to synchronization list
@@ -2024,7 +2810,7 @@ public class VfsSync extends XmlHandling {
         this.newSyncList.put(this.translate(resourcename), sList);
         // and remove it from the old one
         this.syncList.remove(this.translate(resourcename));
-        this.getReport()
+        this.getResourceReport()
             .println(org.opencms.report.Messages.get()
                                                 .container(org.opencms.report.Messages.RPT_OK_0),
             I_CmsReport.FORMAT_OK);
@@ -2032,7 +2818,8 @@ public class VfsSync extends XmlHandling {
     }
 
     /**
-     * This writes the byte content of a resource to the RFS.
+     * This writes the byte content of a resource to the RFS. The file is
+     * replaced atomically, an interrupted write leaves the old content.
      * <p>
      *
      * @param content
@@ -2043,18 +2830,189 @@ public class VfsSync extends XmlHandling {
      * @throws IOException
      *             if something goes wrong
      */
-
-    // code taken from org.opencms.synchronize.CmsSynchronize
     private void writeFileByte(final byte[] content, final File file)
         throws IOException {
+        this.rfsWriter.write(content, file);
+        this.bytesWritten.add(content.length);
+    }
+
+    /**
+     * Reads the content digests stored by the last sync process. The cache is
+     * an optimization only, so an unreadable file just starts an empty cache.
+     *
+     * @return the digest cache
+     */
+    private DigestCache readDigestCache() {
+        final DigestCache cache = new DigestCache(new File(this.destinationPathInRfs));
+        try {
+            cache.load();
+        } catch (final IOException e) {
+            debugReport("VfsSync.readDigestCache: ignoring unreadable " + DigestCache.FILENAME + ": " + e);
+        }
+        return cache;
+    }
+
+    /**
+     * Reads the folder fingerprints of the last run, if it had the same
+     * configuration and wrote the sync state read. An unreadable file is
+     * ignored.
+     */
+    private DirectoryFingerprints readFingerprints(final List<SyncResource> syncResources) {
+        final StringBuilder configuration = new StringBuilder(this.ignoredPatterns);
 
-        try (FileOutputStream fOut = new FileOutputStream(file);
-                DataOutputStream dOut = new DataOutputStream(fOut);){
-            // write the content to the file in server filesystem
-            dOut.write(content);
-            dOut.flush();
+        for (SyncResource syncResource:syncResources) {
+            configuration.append(' ').append(syncResource.getResource())
+                         .append(Arrays.toString(syncResource.getExcludes()));
+        }
+
+        final DirectoryFingerprints result = new DirectoryFingerprints(new File(
+                    this.destinationPathInRfs), configuration.toString());
+        try {
+            result.load(this.syncStateDigest);
         } catch (final IOException e) {
-            throw e;
+            debugReport("VfsSync.readFingerprints: ignoring unreadable " + DirectoryFingerprints.FILENAME + ": " + e);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the fingerprints of the RFS folders completely synchronized by
+     * the current sync process next to the sync list.
+     */
+    private void writeFingerprints(final List<SyncResource> syncResources) {
+        for (SyncResource syncResource:syncResources) {
+            final RfsTree.Entry entry = this.rfsTree.get(this.getFileInRfs(syncResource.getResource()));
+
+            if ((entry != null) && entry.isDirectory()) {
+                this.recordFingerprints(entry, syncResource.getExcludes());
+            }
+        }
+
+        try {
+            this.fingerprints.save(this.digestSyncState());
+        } catch (final IOException e) {
+            this.getResourceReport()
+                .println(org.opencms.report.Messages.get()
+                                                    .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                    "WARNING: unable to write " + DirectoryFingerprints.FILENAME + ": " + e.getMessage()),
+                I_CmsReport.FORMAT_WARNING);
+        }
+    }
+
+    /**
+     * Records the fingerprint of a folder and its subfolders if every file
+     * below them is in the new sync list or excluded.
+     *
+     * @return true if the folder has been recorded
+     */
+    private boolean recordFingerprints(final RfsTree.Entry folder, final String[] excludes) {
+        boolean complete = true;
+
+        for (final RfsTree.Entry child : folder.getChildren()) {
+            final String rfsName = this.getFilenameInVfs(child);
+
+            if (child.isIgnored() || resourceIsInExcludesArray(rfsName, excludes)) {
+                continue;
+            }
+
+            if (!this.newSyncList.containsKey(this.translate(rfsName))) {
+                complete = false;
+            }
+
+            if (child.isDirectory() && !this.recordFingerprints(child, excludes)) {
+                complete = false;
+            }
+        }
+
+        if (complete) {
+            this.fingerprints.put(this.getFilenameInVfs(folder), folder.getFingerprint());
+        }
+
+        return complete;
+    }
+
+    /**
+     * Reads the baseline if it is the one the last local run wrote, as
+     * recorded in the digest cache. An unreadable baseline is ignored.
+     */
+    private BaselineManifest readBaseline() {
+        final BaselineManifest result = new BaselineManifest(new File(this.destinationPathInRfs));
+        this.baselineWrittenHere = false;
+        boolean shared = false;
+        try {
+            this.baselineWrittenHere = result.load(this.digestCache.getStoredRfsDigest(
+                        result.getFile()));
+            shared = !this.baselineWrittenHere && result.loadShared();
+        } catch (final IOException e) {
+            debugReport("VfsSync.readBaseline: ignoring unreadable " + BaselineManifest.FILENAME + ": " + e);
+        }
+
+        if (this.baselineWrittenHere) {
+            report("---- Baseline: " + result.size() + " resources", I_CmsReport.FORMAT_NOTE);
+        } else if (shared) {
+            report("---- Baseline: " + result.size() +
+                " resources, not written by the last run here, only used for resources missing from the sync list",
+                I_CmsReport.FORMAT_NOTE);
+        } else {
+            report("---- Baseline: none, comparing by dates", I_CmsReport.FORMAT_NOTE);
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the baseline of all resources in the new sync list, if changes
+     * are detected by content digests.
+     */
+    private void writeBaseline() {
+        if (this.baseline == null) {
+            return;
+        }
+
+        for (final CmsSynchronizeList sync : this.newSyncList.values()) {
+            final String resName = sync.getResName();
+
+            try {
+                if (resName.endsWith("/")) {
+                    this.baseline.put(resName, null,
+                        this.getRfsDigest(this.getMetadataFolderInRfs(resName)));
+                } else {
+                    this.baseline.put(resName,
+                        this.getRfsDigest(this.getFileInRfs(resName)),
+                        this.getRfsDigest(this.getMetadataFileInRfs(resName)));
+                }
+            } catch (final IOException e) {
+                debugReport("VfsSync.writeBaseline: not recording " + resName + ": " + e);
+            }
+        }
+
+        try {
+            final String digest = this.baseline.save();
+            // identifies the baseline as written here in the next run
+            final File file = this.baseline.getFile();
+            this.digestCache.putRfsDigest(file, file.lastModified(), file.length(), digest);
+        } catch (final IOException e) {
+            this.getResourceReport()
+                .println(org.opencms.report.Messages.get()
+                                                    .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                    "WARNING: unable to write " + BaselineManifest.FILENAME + ": " + e.getMessage()),
+                I_CmsReport.FORMAT_WARNING);
+        }
+    }
+
+    /**
+     * Writes the content digests used in the current sync process next to the
+     * sync list.
+     */
+    private void writeDigestCache() {
+        try {
+            this.digestCache.save();
+        } catch (final IOException e) {
+            this.getResourceReport()
+                .println(org.opencms.report.Messages.get()
+                                                    .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
+                    "WARNING: unable to write " + DigestCache.FILENAME + ": " + e.getMessage()),
+                I_CmsReport.FORMAT_WARNING);
         }
     }
 
@@ -2067,28 +3025,10 @@ public class VfsSync extends XmlHandling {
      * @throws CmsException
      *             if something goes wrong
      */
-
-    // code taken from org.opencms.synchronize.CmsSynchronize
     private void writeSyncList() throws CmsException {
-        // the sync list file in the server fs
-        File syncListFile;
-        syncListFile = new File(this.destinationPathInRfs,
-                VfsSync.SYNCLIST_FILENAME);
-
-        try (FileOutputStream fOut = new FileOutputStream(syncListFile);
-                PrintWriter pOut = new PrintWriter(fOut);){
-            pOut.println(CmsSynchronizeList.getFormatDescription());
-
-            // get all keys from the hashmap and make an iterator on it
-            final Iterator values = this.newSyncList.values().iterator();
-
-            // loop throush all values and write them to the sync list file in
-            // a human readable format
-            while (values.hasNext()) {
-                final CmsSynchronizeList sync = (CmsSynchronizeList) values.next();
-                // fOut.write(sync.toString().getBytes());
-                pOut.println(sync.toString());
-            }
+        try {
+            new SyncStateStore(new File(this.destinationPathInRfs)).write(this.newSyncList.values(),
+                this.legacySyncList);
         } catch (final IOException e) {
             throw new CmsDbIoException(org.opencms.synchronize.Messages.get()
                                                .container(org.opencms.synchronize.Messages.ERR_IO_WRITE_SYNCLIST_0), e);
@@ -2206,7 +3146,7 @@ public class VfsSync extends XmlHandling {
             String userNameLastModified = null;
 
             try {
-                userNameLastModified = this.getCms()
+                userNameLastModified = this.getPrincipalCache()
                                            .readUser(resource.getUserLastModified())
                                            .getName();
             } catch (final CmsException e) {
@@ -2227,7 +3167,7 @@ public class VfsSync extends XmlHandling {
             String userNameCreated = null;
 
             try {
-                userNameCreated = this.getCms()
+                userNameCreated = this.getPrincipalCache()
                                       .readUser(resource.getUserCreated())
                                       .getName();
             } catch (final CmsException e) {
@@ -2262,8 +3202,8 @@ public class VfsSync extends XmlHandling {
 
             // write the properties to the manifest
             final Element propertiesElement = fileElement.addElement(CmsImportVersion10.N_PROPERTIES);
-            final List<CmsProperty> properties = this.getCms()
-                                        .readPropertyObjects(sitepath, false);
+            final List<CmsProperty> properties = this.attributeCache.readProperties(this.getCms(),
+                    resource);
 
             // sort the properties for a well defined output order
             Collections.sort(properties);
@@ -2282,10 +3222,8 @@ public class VfsSync extends XmlHandling {
             }
 
             // Write the relations to the manifest
-            final List<CmsRelation> relations = this.getCms()
-                                       .getRelationsForResource(this.getCms()
-                                                                    .getSitePath(resource),
-                    CmsRelationFilter.TARGETS.filterNotDefinedInContent());
+            final List<CmsRelation> relations = this.attributeCache.readRelations(this.getCms(),
+                    resource);
             CmsRelation relation = null;
             final Element relationsElement = fileElement.addElement(CmsImportVersion10.N_RELATIONS);
 
@@ -2307,9 +3245,8 @@ public class VfsSync extends XmlHandling {
             final Element acl = fileElement.addElement(CmsImportVersion10.N_ACCESSCONTROL_ENTRIES);
 
             // read the access control entries
-            final List<CmsAccessControlEntry> fileAcEntries = this.getCms()
-                                           .getAccessControlEntries(sitepath,
-                    false);
+            final List<CmsAccessControlEntry> fileAcEntries = this.attributeCache.readAccessEntries(this.getCms(),
+                    resource);
             final Iterator<CmsAccessControlEntry> i = fileAcEntries.iterator();
 
             // create xml elements for each access control entry
@@ -2329,11 +3266,11 @@ public class VfsSync extends XmlHandling {
                     acePrincipalName = CmsAccessControlEntry.PRINCIPAL_OVERWRITE_ALL_NAME;
                 } else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_GROUP) > 0) {
                     // the principal is a group
-                    acePrincipalName = this.getCms().readGroup(acePrincipal)
+                    acePrincipalName = this.getPrincipalCache().readGroup(acePrincipal)
                                            .getPrefixedName();
                 } else if ((flags & CmsAccessControlEntry.ACCESS_FLAGS_USER) > 0) {
                     // the principal is a user
-                    acePrincipalName = this.getCms().readUser(acePrincipal)
+                    acePrincipalName = this.getPrincipalCache().readUser(acePrincipal)
                                            .getPrefixedName();
                 } else {
                     // the principal is a role
@@ -2472,6 +3409,8 @@ public class VfsSync extends XmlHandling {
      * the metadata XML and imports them as Cms resources to the VFS.
      * <p>
      *
+     * @param metadata
+     *            the metadata read from the metadata XML
      * @param content
      *            content of the resource to import to VFS
      * @return the CmsResource after importing
@@ -2479,8 +3418,8 @@ public class VfsSync extends XmlHandling {
      *             if something goes wrong
      */
     // code taken from org.opencms.importexport.CmsImportVersion5
-    private CmsResource readResourcesFromManifest(final byte[] content)
-        throws CmsException {
+    private CmsResource readResourcesFromManifest(final ResourceMetadata metadata,
+        final byte[] content) throws CmsException {
         CmsResource res = null;
         String destination = null;
         String uuidresource = null;
@@ -2493,9 +3432,6 @@ public class VfsSync extends XmlHandling {
         long datecreated = 0;
         long datereleased = 0;
         long dateexpired = 0;
-        List acentryNodes = null;
-        Element currentElement = null;
-        Element currentEntry = null;
         List properties = null;
         final CmsImportExportManager iomanager = OpenCms.getImportExportManager();
 
@@ -2516,37 +3452,29 @@ public class VfsSync extends XmlHandling {
         // get the desired page type for imported pages
         // not used otherwise m_convertToXmlPage = iomanager.convertToXmlPage();
         try {
-            currentElement = (Element) this.getDocXml()
-                                           .selectNodes("//" +
-                    CmsImportVersion10.N_FILE).get(0);
             // <source>
             // DET source = CmsImport.getChildElementTextValue(currentElement,
             // CmsImportExportManager.N_SOURCE);
             // <destination>
-            destination = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_DESTINATION);
+            destination = metadata.getValue(CmsImportVersion10.N_DESTINATION);
 
             // <type>
-            final String typeName = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_TYPE);
+            final String typeName = metadata.getValue(CmsImportVersion10.N_TYPE);
             final I_CmsResourceType type = OpenCms.getResourceManager()
                                                   .getResourceType(typeName);
 
             // <uuidstructure>
-            uuidstructure = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_UUIDSTRUCTURE);
+            uuidstructure = metadata.getValue(CmsImportVersion10.N_UUIDSTRUCTURE);
 
             // <uuidresource>
             if (!type.isFolder()) {
-                uuidresource = XmlHandling.getChildElementTextValue(currentElement,
-                        CmsImportVersion10.N_UUIDRESOURCE);
+                uuidresource = metadata.getValue(CmsImportVersion10.N_UUIDRESOURCE);
             } else {
                 uuidresource = null;
             }
 
             // <datelastmodified>
-            timestamp = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_DATELASTMODIFIED);
+            timestamp = metadata.getValue(CmsImportVersion10.N_DATELASTMODIFIED);
 
             if (timestamp != null) {
                 datelastmodified = this.convertTimestamp(timestamp);
@@ -2555,13 +3483,11 @@ public class VfsSync extends XmlHandling {
             }
 
             // <userlastmodified>
-            userlastmodified = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_USERLASTMODIFIED);
+            userlastmodified = metadata.getValue(CmsImportVersion10.N_USERLASTMODIFIED);
             userlastmodified = iomanager.translateUser(userlastmodified);
 
             // <datecreated>
-            timestamp = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_DATECREATED);
+            timestamp = metadata.getValue(CmsImportVersion10.N_DATECREATED);
 
             if (timestamp != null) {
                 datecreated = this.convertTimestamp(timestamp);
@@ -2570,13 +3496,11 @@ public class VfsSync extends XmlHandling {
             }
 
             // <usercreated>
-            usercreated = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_USERCREATED);
+            usercreated = metadata.getValue(CmsImportVersion10.N_USERCREATED);
             usercreated = iomanager.translateUser(usercreated);
 
             // <datereleased>
-            timestamp = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_DATERELEASED);
+            timestamp = metadata.getValue(CmsImportVersion10.N_DATERELEASED);
 
             if (timestamp != null) {
                 datereleased = this.convertTimestamp(timestamp);
@@ -2585,8 +3509,7 @@ public class VfsSync extends XmlHandling {
             }
 
             // <dateexpired>
-            timestamp = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_DATEEXPIRED);
+            timestamp = metadata.getValue(CmsImportVersion10.N_DATEEXPIRED);
 
             if (timestamp != null) {
                 dateexpired = this.convertTimestamp(timestamp);
@@ -2595,8 +3518,7 @@ public class VfsSync extends XmlHandling {
             }
 
             // <flags>
-            flags = XmlHandling.getChildElementTextValue(currentElement,
-                    CmsImportVersion10.N_FLAGS);
+            flags = metadata.getValue(CmsImportVersion10.N_FLAGS);
 
             // apply name translation and import path
             String translatedName = this.getCms().getRequestContext()
@@ -2617,7 +3539,7 @@ public class VfsSync extends XmlHandling {
             if (resourceNotImmutable) {
 
                 // get all properties
-                properties = this.readPropertiesFromManifest(currentElement,
+                properties = this.readPropertiesFromManifest(metadata.getProperties(),
                         ignoredProperties);
                 // import the resource
                 res = this.importResource(content, translatedName, type,
@@ -2630,11 +3552,11 @@ public class VfsSync extends XmlHandling {
                 if (res == null) {
 
                     // resource import failed, since no CmsResource was created
-                    this.getReport()
+                    this.getResourceReport()
                         .print(org.opencms.importexport.Messages.get()
                                                                 .container(org.opencms.importexport.Messages.RPT_SKIPPING_0),
                         I_CmsReport.FORMAT_NOTE);
-                    this.getReport()
+                    this.getResourceReport()
                         .println(org.opencms.report.Messages.get()
                                                             .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                             translatedName));
@@ -2642,16 +3564,11 @@ public class VfsSync extends XmlHandling {
 
                     final List<CmsAccessControlEntry> aceList = new ArrayList<>();
                     // write all imported access control entries for this file
-                    acentryNodes = currentElement.selectNodes("*/" +
-                            CmsImportVersion10.N_ACCESSCONTROL_ENTRY);
-
                     // collect all access control entries
-                    for (int j = 0; j < acentryNodes.size(); j++) {
-                        currentEntry = (Element) acentryNodes.get(j);
+                    for (final ResourceMetadata.AccessEntry currentEntry : metadata.getAccessEntries()) {
 
                         // get the data of the access control entry
-                        final String id = XmlHandling.getChildElementTextValue(currentEntry,
-                                CmsImportVersion10.N_ACCESSCONTROL_PRINCIPAL);
+                        final String id = currentEntry.getPrincipal();
                         String principalId = new CmsUUID().toString();
                         String principal = id.substring(id.indexOf('.') + 1,
                                 id.length());
@@ -2660,13 +3577,13 @@ public class VfsSync extends XmlHandling {
                             if (id.startsWith(I_CmsPrincipal.PRINCIPAL_GROUP)) {
                                 principal = OpenCms.getImportExportManager()
                                                    .translateGroup(principal);
-                                principalId = this.getCms().readGroup(principal)
+                                principalId = this.getPrincipalCache().readGroup(principal)
                                                   .getId().toString();
                             } else if (id.startsWith(
                                         I_CmsPrincipal.PRINCIPAL_USER)) {
                                 principal = OpenCms.getImportExportManager()
                                                    .translateUser(principal);
-                                principalId = this.getCms().readUser(principal)
+                                principalId = this.getPrincipalCache().readUser(principal)
                                                   .getId().toString();
                             } else if (id.startsWith(CmsRole.PRINCIPAL_ROLE)) {
                                 principalId = CmsRole.valueOfRoleName(principal)
@@ -2679,34 +3596,23 @@ public class VfsSync extends XmlHandling {
                                 principalId = CmsAccessControlEntry.PRINCIPAL_OVERWRITE_ALL_ID.toString();
                             }
 
-                            final String acflags = XmlHandling.getChildElementTextValue(currentEntry,
-                                    CmsImportVersion10.N_FLAGS);
-                            final String allowed = ((Element) currentEntry.selectNodes(
-                                    "./" +
-                                    CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET +
-                                    "/" +
-                                    CmsImportVersion10.N_ACCESSCONTROL_ALLOWEDPERMISSIONS)
-                                                                          .get(0)).getTextTrim();
-                            final String denied = ((Element) currentEntry.selectNodes(
-                                    "./" +
-                                    CmsImportVersion10.N_ACCESSCONTROL_PERMISSIONSET +
-                                    "/" +
-                                    CmsImportVersion10.N_ACCESSCONTROL_DENIEDPERMISSIONS)
-                                                                         .get(0)).getTextTrim();
+                            final String acflags = currentEntry.getFlags();
+                            final String allowed = currentEntry.getAllowed();
+                            final String denied = currentEntry.getDenied();
                             // add the entry to the list
                             aceList.add(this.getImportAccessControlEntry(res,
                                     principalId, allowed, denied, acflags));
                         } catch (final CmsException e) {
                             // user or group of ACE might not exist in target
                             // system, ignore ACE
-                            this.getReport().println(e);
+                            this.getResourceReport().println(e);
                         }
                     }
 
                     this.importAccessControlEntries(res, aceList);
 
                     // Add the relations for the resource.
-                    this.importRelations(res, currentElement);
+                    this.importRelations(res, metadata);
 
                     if (OpenCms.getResourceManager()
                                    .getResourceType(res.getTypeId()) instanceof I_CmsLinkParseable) {
@@ -2718,17 +3624,17 @@ public class VfsSync extends XmlHandling {
                      // skip the file import, just print out the information to the
                      // report
 
-                this.getReport()
+                this.getResourceReport()
                     .print(org.opencms.importexport.Messages.get()
                                                             .container(org.opencms.importexport.Messages.RPT_SKIPPING_0),
                     I_CmsReport.FORMAT_NOTE);
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_ARGUMENT_1,
                         translatedName));
             }
         } catch (final CmsLoaderException e) {
-            this.getReport().println(e);
+            this.getResourceReport().println(e);
 
             final CmsMessageContainer message = org.opencms.importexport.Messages.get()
                              .container(org.opencms.importexport.Messages.ERR_IMPORTEXPORT_ERROR_IMPORTING_RESOURCES_0);
@@ -2743,14 +3649,15 @@ public class VfsSync extends XmlHandling {
      * and adds them to the according resource.<p>
      *
      * @param resource the resource to import the relations for
-     * @param parentElement the current element
+     * @param metadata the metadata of the resource
      */
 
     // code taken from CmsImportVersion5
 	protected void importRelations(final CmsResource resource,
-			final Element parentElement) {
+			final ResourceMetadata metadata) {
 		final List<CmsRelation> relations = getRelationsForElement(
-				resource.getResourceId(), resource.getRootPath(), parentElement);
+				resource.getResourceId(), resource.getRootPath(),
+				metadata.getRelations());
 		if (!relations.isEmpty()) {
 			this.m_importedRelations.put(resource.getRootPath(), relations);
 		}
@@ -2758,33 +3665,17 @@ public class VfsSync extends XmlHandling {
     
 	private List<CmsRelation> getRelationsForElement(
 			final CmsUUID resourceUUID, final String resourcePath,
-			final Element parentElement) {
-		// Get the nodes for the relations
-		final List relationElements = parentElement.selectNodes("./"
-				+ CmsImportVersion10.N_RELATIONS + "/"
-				+ CmsImportVersion10.N_RELATION);
-
+			final List<ResourceMetadata.Relation> relationElements) {
 		final List<CmsRelation> relations = new ArrayList<>();
 
 		// iterate over the nodes
-		final Iterator itRelations = relationElements.iterator();
-
-		while (itRelations.hasNext()) {
-			final Element relationElement = (Element) itRelations.next();
-			final String structureID = XmlHandling.getChildElementTextValue(
-					relationElement,
-					CmsImportExportManager.N_RELATION_ATTRIBUTE_ID);
-			final String targetPath = XmlHandling.getChildElementTextValue(
-					relationElement,
-					CmsImportExportManager.N_RELATION_ATTRIBUTE_PATH);
-			final String relationType = XmlHandling.getChildElementTextValue(
-					relationElement,
-					CmsImportExportManager.N_RELATION_ATTRIBUTE_TYPE);
-			final CmsUUID targetId = new CmsUUID(structureID);
-			final CmsRelationType type = CmsRelationType.valueOf(relationType);
+		for (final ResourceMetadata.Relation relationElement : relationElements) {
+			final CmsUUID targetId = new CmsUUID(relationElement.getId());
+			final CmsRelationType type = CmsRelationType.valueOf(
+					relationElement.getType());
 
 			final CmsRelation relation = new CmsRelation(resourceUUID,
-					resourcePath, targetId, targetPath, type);
+					resourcePath, targetId, relationElement.getPath(), type);
 
 			relations.add(relation);
 		}
@@ -2815,7 +3706,10 @@ public class VfsSync extends XmlHandling {
             // the timestamp was in in a user-readable string format, create the
             // long value form it
             try {
-                value = CmsDateUtil.parseHeaderDate(timestamp);
+                // the shared date format is not thread safe, see planActions()
+                synchronized (CmsDateUtil.class) {
+                    value = CmsDateUtil.parseHeaderDate(timestamp);
+                }
             } catch (final ParseException pe) {
                 value = System.currentTimeMillis();
             }
@@ -2825,12 +3719,11 @@ public class VfsSync extends XmlHandling {
     }
 
     /**
-     * Reads all properties below a specified parent element from the metadata
-     * XML.
+     * Converts the properties read from the metadata XML.
      * <p>
      *
-     * @param parentElement
-     *            the current file node
+     * @param propertyElements
+     *            the property nodes of the current file node
      * @param ignoredPropertyKeys
      *            a list of properies to be ignored
      *
@@ -2838,25 +3731,20 @@ public class VfsSync extends XmlHandling {
      */
 
     // code taken from org.opencms.importexport.A_CmsImport
-    private List readPropertiesFromManifest(final Element parentElement,
+    private List readPropertiesFromManifest(
+        final List<ResourceMetadata.Property> propertyElements,
         final List ignoredPropertyKeys) {
         // all imported Cms property objects are collected in map first
         // for faster access
         final Map<String, CmsProperty> properties = new HashMap<>();
         CmsProperty property = null;
-        final List propertyElements = parentElement.selectNodes("./" +
-                CmsImportVersion10.N_PROPERTIES + "/" +
-                CmsImportVersion10.N_PROPERTY);
-        Element propertyElement = null;
         String key = null;
         String value = null;
-        Attribute attrib = null;
+        String attrib = null;
 
         // iterate over all property elements
-        for (int i = 0, n = propertyElements.size(); i < n; i++) {
-            propertyElement = (Element) propertyElements.get(i);
-            key = XmlHandling.getChildElementTextValue(propertyElement,
-                    CmsImportVersion10.N_NAME);
+        for (final ResourceMetadata.Property propertyElement : propertyElements) {
+            key = propertyElement.getName();
 
             if ((key == null) || ignoredPropertyKeys.contains(key)) {
                 // continue if the current property (key) should be ignored or
@@ -2875,18 +3763,16 @@ public class VfsSync extends XmlHandling {
                 properties.put(key, property);
             }
 
-            value = XmlHandling.getChildElementTextValue(propertyElement,
-                    CmsImportVersion10.N_VALUE);
+            value = propertyElement.getValue();
 
             if (value == null) {
                 value = "";
             }
 
-            attrib = propertyElement.attribute(CmsImportExportManager.N_PROPERTY_ATTRIB_TYPE);
+            attrib = propertyElement.getType();
 
             if ((attrib != null) &&
-                    attrib.getValue()
-                              .equals(CmsImportExportManager.N_PROPERTY_ATTRIB_TYPE_SHARED)) {
+                    attrib.equals(CmsImportExportManager.N_PROPERTY_ATTRIB_TYPE_SHARED)) {
                 // it is a shared/resource property value
                 property.setResourceValue(value);
             } else {
@@ -2977,7 +3863,7 @@ public class VfsSync extends XmlHandling {
             // check if user created and user lastmodified are valid users in this system.
             // if not, use the current user
             try {
-                newUserlastmodified = this.getCms().readUser(userlastmodified)
+                newUserlastmodified = this.getPrincipalCache().readUser(userlastmodified)
                                           .getId();
             } catch (final CmsException e) {
                 newUserlastmodified = this.getCms().getRequestContext()
@@ -2987,7 +3873,7 @@ public class VfsSync extends XmlHandling {
             }
 
             try {
-                newUsercreated = this.getCms().readUser(usercreated).getId();
+                newUsercreated = this.getPrincipalCache().readUser(usercreated).getId();
             } catch (final CmsException e) {
                 newUsercreated = this.getCms().getRequestContext().getCurrentUser()
                                      .getId();
@@ -3030,9 +3916,14 @@ public class VfsSync extends XmlHandling {
             result = this.getCms()
                          .importResource(destination, resource, content,
                     properties);
+            this.vfsCalls.increment();
+
+            if (content != null) {
+                this.bytesWritten.add(content.length);
+            }
 
             if (result != null) {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_OK_0),
                     I_CmsReport.FORMAT_OK);
@@ -3087,7 +3978,7 @@ public class VfsSync extends XmlHandling {
         try {
             this.getCms().importAccessControlEntries(resource, aceList);
         } catch (final CmsException exc) {
-            this.getReport()
+            this.getResourceReport()
                 .println(org.opencms.importexport.Messages.get()
                                                           .container(org.opencms.importexport.Messages.RPT_IMPORT_ACL_DATA_FAILED_0),
                 I_CmsReport.FORMAT_WARNING);
@@ -3104,7 +3995,7 @@ public class VfsSync extends XmlHandling {
             return;
         }
 
-        getReport()
+        getResourceReport()
             .println(org.opencms.importexport.Messages.get()
                                                       .container(org.opencms.importexport.Messages.RPT_START_PARSE_LINKS_0),
             I_CmsReport.FORMAT_HEADLINE);
@@ -3115,18 +4006,18 @@ public class VfsSync extends XmlHandling {
         while (it.hasNext()) {
             final CmsResource res = (CmsResource) it.next();
 
-            getReport()
+            getResourceReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_SUCCESSION_2,
                     String.valueOf(i + 1),
                     String.valueOf(this.m_parseables.size())),
                 I_CmsReport.FORMAT_NOTE);
 
-            getReport()
+            getResourceReport()
                 .print(org.opencms.importexport.Messages.get()
                                                         .container(org.opencms.importexport.Messages.RPT_PARSE_LINKS_FOR_1,
                     getCms().getSitePath(res)), I_CmsReport.FORMAT_NOTE);
-            getReport()
+            getResourceReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_DOTS_0));
 
@@ -3136,13 +4027,13 @@ public class VfsSync extends XmlHandling {
                 file.setDateLastModified(res.getDateLastModified());
                 getCms().writeFile(file);
 
-                getReport()
+                getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_OK_0),
                     I_CmsReport.FORMAT_OK);
             } catch (final Throwable e) {
                 getReport().addWarning(e);
-                getReport()
+                getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_FAILED_0),
                     I_CmsReport.FORMAT_ERROR);
@@ -3151,7 +4042,7 @@ public class VfsSync extends XmlHandling {
             i++;
         }
 
-        getReport()
+        getResourceReport()
             .println(org.opencms.importexport.Messages.get()
                                                       .container(org.opencms.importexport.Messages.RPT_END_PARSE_LINKS_0),
             I_CmsReport.FORMAT_HEADLINE);
@@ -3167,7 +4058,7 @@ public class VfsSync extends XmlHandling {
             return;
         }
 
-        this.getReport()
+        this.getResourceReport()
             .println(org.opencms.importexport.Messages.get()
                                                       .container(org.opencms.importexport.Messages.RPT_START_IMPORT_RELATIONS_0),
             I_CmsReport.FORMAT_HEADLINE);
@@ -3180,19 +4071,19 @@ public class VfsSync extends XmlHandling {
             final String resourcePath = (String) entry.getKey();
             final List relations = (List) entry.getValue();
 
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_SUCCESSION_2,
                     String.valueOf(i + 1),
                     String.valueOf(this.m_importedRelations.size())),
                 I_CmsReport.FORMAT_NOTE);
 
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.importexport.Messages.get()
                                                         .container(org.opencms.importexport.Messages.RPT_IMPORTING_RELATIONS_FOR_2,
                     resourcePath, Integer.valueOf(relations.size())),
                 I_CmsReport.FORMAT_NOTE);
-            this.getReport()
+            this.getResourceReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_DOTS_0));
 
@@ -3219,12 +4110,12 @@ public class VfsSync extends XmlHandling {
             }
 
             if (!withErrors) {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_OK_0),
                     I_CmsReport.FORMAT_OK);
             } else {
-                this.getReport()
+                this.getResourceReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_FAILED_0),
                     I_CmsReport.FORMAT_ERROR);
@@ -3233,7 +4124,7 @@ public class VfsSync extends XmlHandling {
             i++;
         }
 
-        this.getReport()
+        this.getResourceReport()
             .println(org.opencms.importexport.Messages.get()
                                                       .container(org.opencms.importexport.Messages.RPT_END_IMPORT_RELATIONS_0),
             I_CmsReport.FORMAT_HEADLINE);
@@ -3263,16 +4154,130 @@ public class VfsSync extends XmlHandling {
         this.metadataPathInRfs = pathInRfs;
     }
 
-    private boolean isIgnorableFile(File file) {
+    /**
+     * Write the synchronization state in the legacy text format
+     * "#synclist.txt" instead of the binary "#syncstate.bin".
+     *
+     * @param legacySyncList
+     *            true to write the text format
+     */
+    public final void setLegacySyncList(final boolean legacySyncList) {
+        this.legacySyncList = legacySyncList;
+    }
+
+    /**
+     * Do not search RFS folders for new files if their fingerprints show
+     * that they are unchanged since the last run, which synchronized them
+     * completely.
+     *
+     * @param incremental
+     *            true to skip unchanged folders
+     */
+    public final void setIncremental(final boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Detect changes of RFS files by their content digests against the
+     * baseline "#baseline.txt" instead of by their dates, and write the
+     * baseline after each run. The baseline is only used if it is the one
+     * the last run wrote here; it then survives checkouts which touch files
+     * without changing them. Changes of the VFS are still detected by the
+     * dates in the sync list. Resources missing from the sync list, e.g. in
+     * a fresh clone, are not exported if their VFS content and RFS files
+     * match any baseline; they are added to the sync list instead.
+     *
+     * @param contentHashes
+     *            true to use and write the baseline
+     */
+    public final void setContentHashes(final boolean contentHashes) {
+        this.contentHashes = contentHashes;
+    }
+
+    /**
+     * Sets the figures the plan uses to estimate the duration of a
+     * synchronization.
+     *
+     * @param millisPerResource
+     *            fixed cost per changed resource in milliseconds
+     * @param bytesPerSecond
+     *            content throughput in bytes per second
+     */
+    public final void setPlanEstimates(final long millisPerResource,
+        final long bytesPerSecond) {
+        this.estimatedMillisPerResource = millisPerResource;
+        this.estimatedBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Sets the number of threads planning the actions for the VFS resources.
+     *
+     * @param planThreads
+     *            number of threads, 0 or less for one per available processor
+     */
+    public final void setPlanThreads(final int planThreads) {
+        this.planThreads = (planThreads > 0) ? planThreads
+                                             : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Configures the threads writing exported files to the RFS.
+     *
+     * @param writers
+     *            number of writer threads, 0 or less to write on the
+     *            synchronizing thread
+     * @param bufferBytes
+     *            maximum size of exported content waiting to be written
+     */
+    public final void setExportPipeline(final int writers, final long bufferBytes) {
+        this.exportWriters = writers;
+        this.exportBufferBytes = bufferBytes;
+    }
+
+    /**
+     * Sets when files written to the RFS are forced to the disk.
+     *
+     * @param fsyncPolicy
+     *            "always" before every file is renamed into place, "batch"
+     *            once before the sync list is written, "never" to leave it to
+     *            the operating system; null for "batch"
+     */
+    public final void setFsyncPolicy(final String fsyncPolicy) {
+        this.fsyncPolicy = RfsFileWriter.Fsync.parse(fsyncPolicy);
+    }
+
+    /**
+     * Sets how many bytes of RFS contents may be kept in memory between their
+     * comparison with the VFS and their import.
+     *
+     * @param rfsContentBudget
+     *            maximum number of bytes, 0 to read every content again for
+     *            its import
+     */
+    public final void setRfsContentBudget(final long rfsContentBudget) {
+        this.rfsContentBudget = rfsContentBudget;
+    }
+
+    /**
+     * Sets the file the time and counters per phase are written to at the end
+     * of {@link #execute(String, String, String, List, List, List, List, boolean, String)}.
+     *
+     * @param metricsFile
+     *            the JSON file, null to write none
+     */
+    public final void setMetricsFile(final File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    private boolean isIgnorableFile(RfsTree.Entry entry) {
 
-    	if (file == null) {
-    		return true;
-    	}
-        if (!file.exists()) {
+        // entries missing in the snapshot do not exist (anymore)
+        if (!this.rfsTree.contains(entry)) {
             return true;
         }
 
-        return this.ignoredFilesFilter.accept(file);
+        // matched once while walking the RFS
+        return entry.isIgnored();
     }
 
     private void computeIgnoredNames(List<String> ignoredNames, List<String> notIgnoredNames) {
@@ -3290,6 +4295,7 @@ public class VfsSync extends XmlHandling {
 
         debugReport("VfsSync configuration. Ignored filename patterns: " + ignoredGlobPatterns);
 
-        this.ignoredFilesFilter = new WildcardFileFilter(new ArrayList(ignoredGlobPatterns));
+        this.ignoredNamesMatcher = new IgnoredNamesMatcher(ignoredGlobPatterns);
+        this.ignoredPatterns = ignoredGlobPatterns.toString();
     }
 }
@@ -72,6 +72,7 @@ public class VfsUserExport extends XmlHandling {
             this.exportUsers(userGroupData);
             this.getSaxWriter().writeClose(userGroupData);
             this.closeExportFile(exportNode);
+            this.reportPrincipalCache();
         } catch (final SAXException se) {
             getReport().println(se);
 
@@ -109,7 +110,7 @@ public class VfsUserExport extends XmlHandling {
                                     .getGroups(getCms(), "/", true);
 
             for (int i = 0, l = allGroups.size(); i < l; i++) {
-                final CmsGroup group = (CmsGroup) allGroups.get(i);
+                final CmsGroup group = getPrincipalCache().put((CmsGroup) allGroups.get(i));
                 getReport()
                     .print(org.opencms.report.Messages.get()
                                                       .container(org.opencms.report.Messages.RPT_SUCCESSION_2,
@@ -210,7 +211,7 @@ public class VfsUserExport extends XmlHandling {
             if (group.getParentId().isNullUUID()) {
                 parentgroup = "";
             } else {
-                parentgroup = getCms().getParent(group.getName()).getName();
+                parentgroup = getPrincipalCache().readGroup(group.getParentId()).getName();
             }
 
             final Element e = parent.addElement(CmsImportExportManager.N_GROUPDATA);
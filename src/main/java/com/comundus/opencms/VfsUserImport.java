@@ -85,6 +85,7 @@ public class VfsUserImport extends XmlHandling {
             this.initialize();
             this.importGroups();
             this.importUsers();
+            this.reportPrincipalCache();
         }
     }
 
@@ -115,7 +116,7 @@ public class VfsUserImport extends XmlHandling {
 
         if (CmsStringUtil.isNotEmpty(parentgroupName)) {
             try {
-                parentGroup = getCms().readGroup(parentgroupName);
+                parentGroup = getPrincipalCache().readGroup(parentgroupName);
             } catch (final CmsException exc) {
                 // parentGroup will be null
             }
@@ -142,9 +143,9 @@ public class VfsUserImport extends XmlHandling {
                 getReport()
                     .print(org.opencms.report.Messages.get()
                                                       .container(org.opencms.report.Messages.RPT_DOTS_0));
-                getCms()
+                getPrincipalCache().put(getCms()
                     .createGroup(name, notnulldescription,
-                    Integer.parseInt(flags), parentgroupName);
+                    Integer.parseInt(flags), parentgroupName));
                 getReport()
                     .println(org.opencms.report.Messages.get()
                                                         .container(org.opencms.report.Messages.RPT_OK_0),
@@ -262,6 +263,7 @@ public class VfsUserImport extends XmlHandling {
             user.setAdditionalInfo(userInfo); 
             // currently for existing users we don't care about: final List userGroups 
             getCms().writeUser(user);
+            getPrincipalCache().put(user);
             return;
         } catch(CmsException e) {
             // intentionally left blank
@@ -281,9 +283,9 @@ public class VfsUserImport extends XmlHandling {
             getReport()
                 .print(org.opencms.report.Messages.get()
                                                   .container(org.opencms.report.Messages.RPT_DOTS_0));
-            getCms()
+            getPrincipalCache().put(getCms()
                 .importUser(id, name, password, firstname, lastname, email,
-                Integer.parseInt(flags), dateCreated, userInfo);
+                Integer.parseInt(flags), dateCreated, userInfo));
         } catch (final CmsException exc) {
             getReport()
                 .println(Messages.get().container(Messages.RPT_NOT_CREATED_0),
@@ -294,7 +296,7 @@ public class VfsUserImport extends XmlHandling {
         for (int i = 0; i < userGroups.size(); i++) {
             String groupName = (String) userGroups.get(i);
             try {
-                CmsGroup group = getCms().readGroup(groupName);
+                CmsGroup group = getPrincipalCache().readGroup(groupName);
                 if (group.isVirtual() || group.isRole()) {
                     final CmsRole role = CmsRole.valueOf(group);
                     OpenCms.getRoleManager().addUserToRole(getCms(), role, name);
@@ -8,9 +8,11 @@ import org.dom4j.Element;
 import org.dom4j.io.SAXWriter;
 
 import org.opencms.file.CmsObject;
+import org.opencms.file.CmsUser;
 
 import org.opencms.importexport.CmsImportExportManager;
 
+import org.opencms.main.CmsException;
 import org.opencms.main.OpenCms;
 
 import org.opencms.report.I_CmsReport;
@@ -24,6 +26,7 @@ import org.xml.sax.SAXException;
 import com.comundus.opencms.vfs.SyncResource;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -31,7 +34,9 @@ import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Base class containing some common stuff for VFS and user/groups
@@ -41,15 +46,27 @@ public class XmlHandling {
     /** The CmsObject. */
     private CmsObject cms;
 
+    /** The user of the CmsObject whose ROOT_ADMIN role has been checked. */
+    private CmsUser checkedUser;
+
+    /** Copies of the CmsObject for worker threads, see {@link #initWorkerCms(CmsObject)}. */
+    private final ThreadLocal<CmsObject> workerCms = new ThreadLocal<>();
+
     /** The report to write the output to. */
     private I_CmsReport report;
 
+    /** Users and groups read during this run. */
+    private PrincipalCache principalCache;
+
     /** The xml manifest-file. */
     private Document docXml;
 
     /** The SAX writer to write the output to. */
     private SAXWriter saxWriter;
 
+    /** The buffer opened by openExportBuffer(). */
+    private ByteArrayOutputStream exportBuffer;
+
     /**
      * Filename for user/groups import/export XML file.
      */
@@ -62,6 +79,15 @@ public class XmlHandling {
 
     private boolean debugEnabled = false;
 
+    /** How much is reported. */
+    private ReportLevel reportLevel = ReportLevel.NORMAL;
+
+    /** Write the shell report on a background thread. */
+    private boolean asyncReport;
+
+    /** The report for the lines per resource at level SUMMARY. */
+    private SummaryReport summaryReport;
+
     /**
      * Opens the metadata file and initializes the internal XML document for the
      * metadata.
@@ -107,6 +133,50 @@ public class XmlHandling {
         //saxHandler.setEscapeXml(true);
         //saxHandler.setEscapeUnknownChars(true);
 
+        return this.openExport(saxHandler);
+    }
+
+    /**
+     * Like {@link #openExportFile(File)}, but the metadata XML is written to
+     * a buffer which is returned by {@link #closeExportBuffer(Element)}.
+     *
+     * @return the node in the XML document where all files are appended to
+     * @throws SAXException
+     *             if something goes wrong procesing the manifest.xml
+     * @throws IOException
+     *             if the default encoding is not supported
+     */
+    protected final Element openExportBuffer() throws IOException, SAXException {
+        final String encoding = OpenCms.getSystemInfo().getDefaultEncoding();
+        this.exportBuffer = new ByteArrayOutputStream();
+
+        return this.openExport(new CmsXmlSaxWriter(new OutputStreamWriter(
+                    this.exportBuffer, encoding), encoding));
+    }
+
+    /**
+     * Closes the export buffer opened by {@link #openExportBuffer()}.
+     *
+     * @param exportNode
+     *            the export root node
+     * @return the metadata XML document
+     * @throws SAXException
+     *             if something goes wrong procesing the manifest.xml
+     * @throws IOException
+     *             if something goes wrong while closing the buffer
+     */
+    protected final byte[] closeExportBuffer(final Element exportNode)
+        throws IOException, SAXException {
+        this.closeExportFile(exportNode);
+
+        final byte[] xml = this.exportBuffer.toByteArray();
+        this.exportBuffer = null;
+
+        return xml;
+    }
+
+    private Element openExport(final CmsXmlSaxWriter saxHandler)
+        throws SAXException {
         // initialize the dom4j writer object as member variable
         this.setSaxWriter(new SAXWriter(saxHandler, saxHandler));
 
@@ -221,24 +291,75 @@ public class XmlHandling {
      */
     public final void setCms(final CmsObject pcms) {
         this.cms = pcms;
+        this.checkedUser = null;
+        this.principalCache = new PrincipalCache(this::getCms);
     }
 
     /**
      * Gets the CmsObject.
      *
+     * The ROOT_ADMIN role is checked once for the CmsObject and again only
+     * if its current user has been changed. Worker threads get their own
+     * copy, see {@link #initWorkerCms(CmsObject)}.
+     *
      * @return the CmsObject
      */
     protected final CmsObject getCms() {
-	
-	try {
-	    OpenCms.getRoleManager().checkRole(cms, CmsRole.ROOT_ADMIN);
-	} catch (CmsRoleViolationException e) {
-	    
-	    throw new RuntimeException("The user does not have administration permissions. Please check the username and password.",e);
-	}
+        final CmsObject worker = this.workerCms.get();
+
+        if (worker != null) {
+            return worker;
+        }
+
+        final CmsUser currentUser = this.cms.getRequestContext().getCurrentUser();
+
+        if (currentUser != this.checkedUser) {
+            try {
+                OpenCms.getRoleManager().checkRole(this.cms, CmsRole.ROOT_ADMIN);
+            } catch (CmsRoleViolationException e) {
+                throw new RuntimeException("The user does not have administration permissions. Please check the username and password.",e);
+            }
+
+            this.checkedUser = currentUser;
+        }
+
         return this.cms;
     }
 
+    /**
+     * Gives the calling worker thread its own copy of the CmsObject, as a
+     * CmsObject must not be shared between threads. The copy is used by
+     * {@link #getCms()} for the lifetime of the thread.
+     *
+     * @param base
+     *            the checked CmsObject of the main thread
+     * @throws CmsException
+     *             if the copy cannot be created
+     */
+    protected final void initWorkerCms(final CmsObject base)
+        throws CmsException {
+        if (this.workerCms.get() == null) {
+            this.workerCms.set(OpenCms.initCmsObject(base));
+        }
+    }
+
+    /**
+     * Gets the cache for users and groups, valid as long as the CmsObject is
+     * not replaced.
+     *
+     * @return the principal cache
+     */
+    protected final PrincipalCache getPrincipalCache() {
+        return this.principalCache;
+    }
+
+    /**
+     * Prints the hits and misses of the principal cache.
+     */
+    protected void reportPrincipalCache() {
+        report(this.principalCache.getStatistics(), I_CmsReport.FORMAT_NOTE);
+    }
+
     /**
      * gets the dom4j Document.
      * @return the dom4j Document
@@ -283,6 +404,45 @@ public class XmlHandling {
         this.report = preport;
     }
 
+    /**
+     * Creates the report for running in a shell.
+     *
+     * @param locale
+     *            the report locale
+     * @return the report, to be closed by {@link #closeReport()}
+     */
+    protected final I_CmsReport createShellReport(final Locale locale) {
+        return new ShellReport(locale, this.asyncReport);
+    }
+
+    /**
+     * Waits until a report created by {@link #createShellReport(Locale)} is
+     * written.
+     */
+    protected final void closeReport() {
+        if (this.report instanceof ShellReport) {
+            ((ShellReport) this.report).close();
+        }
+    }
+
+    /**
+     * Gets the report for the lines printed per resource. At level SUMMARY
+     * only their headlines, warnings and errors reach the report.
+     *
+     * @return the report for the lines per resource
+     */
+    protected final synchronized I_CmsReport getResourceReport() {
+        if (this.reportLevel != ReportLevel.SUMMARY) {
+            return this.getReport();
+        }
+
+        if ((this.summaryReport == null) || (this.summaryReport.getTarget() != this.report)) {
+            this.summaryReport = new SummaryReport(this.report);
+        }
+
+        return this.summaryReport;
+    }
+
     /**
      * gets the directory for user and group data.
      * @return the user and groups data directory
@@ -331,6 +491,19 @@ public class XmlHandling {
         }
     }
 
+    /**
+     * Like {@link #debugReport(String)}, but the message is only built if
+     * debug output is enabled.
+     *
+     * @param msg
+     *            supplies the message
+     */
+    protected void debugReport(Supplier<String> msg) {
+        if (this.isDebugEnabled()) {
+            report("[DEBUG] " + msg.get(), I_CmsReport.FORMAT_DEFAULT);
+        }
+    }
+
     protected void simpleReport(String msg) {
         report(msg, I_CmsReport.FORMAT_DEFAULT);
     }
@@ -375,11 +548,31 @@ public class XmlHandling {
     }
 
     public boolean isDebugEnabled() {
-        return debugEnabled;
+        return debugEnabled || (reportLevel == ReportLevel.DEBUG);
     }
 
     public void setDebugEnabled(boolean debugEnabled) {
         this.debugEnabled = debugEnabled;
     }
 
+    /**
+     * Sets how much is reported.
+     *
+     * @param reportLevel
+     *            "summary", "normal" or "debug"; null for "normal"
+     */
+    public void setReportLevel(String reportLevel) {
+        this.reportLevel = ReportLevel.parse(reportLevel);
+    }
+
+    /**
+     * Sets whether a shell report is written on a background thread.
+     *
+     * @param asyncReport
+     *            true to write the shell report on a background thread
+     */
+    public void setAsyncReport(boolean asyncReport) {
+        this.asyncReport = asyncReport;
+    }
+
 }
@@ -6,8 +6,8 @@ import java.util.List;
 
 
 /**
- * A Maven2 plugin Goal to clean #synclist.txt from synchronisation source
- * folder.
+ * A Maven2 plugin Goal to clean #syncstate.bin, #synclist.txt, #digests.txt
+ * and #fingerprints.txt from synchronisation source folder.
  *
  * @goal clean
  */
@@ -17,10 +17,20 @@ public class CleanMojo extends AbstractVfsMojo {
     /** Filename of the synclist file on the server FS. */
     static final String SYNCLIST_FILENAME = "#synclist.txt";
 
+    /** Filename of the binary sync state on the server FS. */
+    static final String SYNCSTATE_FILENAME = "#syncstate.bin";
+
+    /** Filename of the digest cache on the server FS. */
+    static final String DIGESTS_FILENAME = "#digests.txt";
+
+    /** Filename of the folder fingerprints on the server FS. */
+    static final String FINGERPRINTS_FILENAME = "#fingerprints.txt";
+
     /**
      * The source directory for VFS data.
      *
-     * Contains a #synclist.txt which is NOT checked into version control.
+     * Contains a #syncstate.bin or #synclist.txt which is NOT checked into
+     * version control.
      *
      * @parameter default-value="${basedir}/src/main/vfs"
      * @required
@@ -36,7 +46,8 @@ public class CleanMojo extends AbstractVfsMojo {
     private List syncVFSPaths;
 
     /**
-     * Removes #synclist.txt from source folder.
+     * Removes the sync state, digest cache and folder fingerprints from source
+     * folder.
      *
      * Only if VFS synchronization paths are configured; otherwise it's assumed
      * to be a non-VFS project in a multi project build.
@@ -53,8 +64,13 @@ public class CleanMojo extends AbstractVfsMojo {
             return; // it's ok, nothing to sync
         }
 
-        File rfsFile = new File(this.syncSourceDirectory + File.separator +
-                CleanMojo.SYNCLIST_FILENAME);
-        rfsFile.delete();
+        for (String filename : new String[] {
+                    CleanMojo.SYNCLIST_FILENAME, CleanMojo.SYNCSTATE_FILENAME,
+                    CleanMojo.DIGESTS_FILENAME, CleanMojo.FINGERPRINTS_FILENAME
+                }) {
+            File rfsFile = new File(this.syncSourceDirectory + File.separator +
+                    filename);
+            rfsFile.delete();
+        }
     }
 }
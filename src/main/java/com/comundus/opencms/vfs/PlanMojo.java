@@ -0,0 +1,191 @@
+//(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
+package com.comundus.opencms.vfs;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+import com.comundus.opencms.VfsSync;
+
+/**
+ * A Maven2 plugin Goal to show what the sync goal would do, without changing
+ * the VFS or the source folders.
+ *
+ * <p>Every planned export, update, deletion and import is written to a JSON
+ * file together with its size and an estimated duration. The configuration
+ * is the same as for the sync goal.
+ *
+ * @goal plan
+ * @requiresDependencyResolution
+ */
+public class PlanMojo extends AbstractVfsMojo {
+
+    /**
+     * Source directory storing synchronized VFS content.
+     *
+     * @parameter default-value="${basedir}/src/main/vfs"
+     * @required
+     */
+    private String syncSourceDirectory;
+
+    /**
+     * Source directory storing the metadata of synchronized VFS content.
+     *
+     * @parameter default-value="${basedir}/src/main/vfs-metadata"
+     * @required
+     */
+    private String syncMetadataDirectory;
+
+    /**
+     * List of VFS folder paths to synchronize.
+     *
+     * @parameter
+     */
+    private List<String> syncVFSPaths;
+
+    /**
+     * List of VFS resources to synchronize, see the sync goal.
+     *
+     * @parameter
+     */
+    private List <SyncResource>syncResources;
+
+    /**
+     * List of name patterns to add to the ignored list.
+     * @parameter
+     */
+    private List <String>ignoredNames;
+
+    /**
+     * List of name patterns to remove from the ignored list
+     * @parameter
+     */
+    private List <String> notIgnoredNames;
+
+    /**
+     * Plan the deletion of RFS resources, see the sync goal.
+     * @parameter default-value="false"
+     */
+    private boolean deleteRFSResources;
+
+    /**
+     * Read the synchronization state like the sync goal, see there.
+     * @parameter default-value="false"
+     */
+    private boolean legacySyncList;
+
+    /**
+     * Skip source folders unchanged since the last run like the sync goal,
+     * see there.
+     * @parameter default-value="true"
+     */
+    private boolean incremental;
+
+    /**
+     * Detect changes by content digests like the sync goal, see there. Must
+     * be the same as for the sync goal, otherwise the plan compares by dates
+     * while the sync compares by digests or vice versa.
+     * @parameter default-value="false"
+     */
+    private boolean contentHashes;
+
+    /**
+     * Number of threads comparing VFS resources with the RFS, 0 uses one
+     * thread per available processor.
+     * @parameter default-value="0"
+     */
+    private int planThreads;
+
+    /**
+     * The JSON file the plan is written to.
+     * @parameter default-value="${project.build.directory}/vfs-plan.json"
+     */
+    private File planFile;
+
+    /**
+     * Fails the build if the sync would change more resources. A negative
+     * value disables the check.
+     * @parameter default-value="-1"
+     */
+    private int maxPlannedChanges;
+
+    /**
+     * Fixed cost per changed resource in milliseconds, used for the duration
+     * estimate.
+     * @parameter default-value="50"
+     */
+    private long estimatedMillisPerResource;
+
+    /**
+     * Content throughput in bytes per second, used for the duration estimate.
+     * @parameter default-value="5242880"
+     */
+    private long estimatedBytesPerSecond;
+
+    /**
+     * How much is reported: "summary" for headlines, summaries, warnings and
+     * errors only, "normal" for a line per resource, "debug" for debug
+     * messages as well.
+     * @parameter default-value="normal"
+     */
+    private String reportLevel;
+
+    /**
+     * Write the report to the console on a background thread.
+     * @parameter default-value="true"
+     */
+    private boolean asyncReport;
+
+    /**
+     * Plans the VFS synchronisation.
+     *
+     * Only if VFS synchronization paths are configured; otherwise it's assumed
+     * to be a non-VFS project in a multi project build.
+     *
+     * @throws MojoExecutionException
+     *             in case anything goes wrong
+     * @throws MojoFailureException
+     *             if more changes are planned than allowed
+     */
+    public final void execute() throws MojoExecutionException, MojoFailureException {
+    	if (this.isSkipVfs()) {
+    		this.getLog().info("Skipping VFS plugin");
+    		return;
+    	}
+
+        if (this.syncVFSPaths == null && this.syncResources == null) {
+            this.getLog().info("Skipping non-vfs project");
+
+            return; // it's ok, nothing to plan
+        }
+
+        final int changes;
+
+        try {
+        	VfsSync sync = new VfsSync();
+        	sync.setDebugEnabled(this.getLog().isDebugEnabled());
+        	sync.setLegacySyncList(this.legacySyncList);
+        	sync.setIncremental(this.incremental);
+        	sync.setContentHashes(this.contentHashes);
+        	sync.setPlanThreads(this.planThreads);
+        	sync.setPlanEstimates(this.estimatedMillisPerResource, this.estimatedBytesPerSecond);
+        	sync.setReportLevel(this.reportLevel);
+        	sync.setAsyncReport(this.asyncReport);
+        	changes = sync.executePlan(
+        	    getWebappDirectory(), this.syncSourceDirectory, this.syncMetadataDirectory, this.syncVFSPaths,
+        	    this.syncResources, this.ignoredNames, this.notIgnoredNames, this.deleteRFSResources,
+        	    getAdminPassword(), this.planFile);
+        } catch (NoClassDefFoundError e) {
+            throw new MojoExecutionException("Failed to load VfsSync", e);
+        } catch (Exception e) {
+        	throw new MojoExecutionException("Undetermined error planning the synchronization", e);
+        }
+
+        if ((this.maxPlannedChanges >= 0) && (changes > this.maxPlannedChanges)) {
+            throw new MojoFailureException("The synchronization would change " + changes +
+                " resources, more than the " + this.maxPlannedChanges + " allowed. See " + this.planFile);
+        }
+    }
+}
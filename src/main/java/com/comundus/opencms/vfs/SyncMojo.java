@@ -1,6 +1,7 @@
 //(C) comundus GmbH, D-71332 WAIBLINGEN, www.comundus.com
 package com.comundus.opencms.vfs;
 
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
 
@@ -31,7 +32,8 @@ public class SyncMojo extends AbstractVfsMojo {
 
     /**
      * Source directory storing synchronized VFS content. Includes a
-     * #synclist.txt file which is NOT to be checked into version control.
+     * #syncstate.bin (or #synclist.txt) and a #digests.txt file which are NOT
+     * to be checked into version control.
      *
      * @parameter default-value="${basedir}/src/main/vfs"
      * @required
@@ -58,7 +60,8 @@ public class SyncMojo extends AbstractVfsMojo {
 
     /**
      * List of VFS resources to synchronize.<br/>
-     * Folder resources allow exclude entries
+     * Folder resources allow exclude entries, which exclude their subtree
+     * and may use the wildcards '*', '?' and "**" (any number of folders)
      * <br/><br/>
      *
      * Example Call:<pre>
@@ -68,6 +71,7 @@ public class SyncMojo extends AbstractVfsMojo {
      *       &lt;excludes&gt;
      *         &lt;exclude&gt;/system/workplace/tools/&lt;/exclude&gt;
      *         &lt;exclude&gt;/system/workplace/resources/&lt;/exclude&gt;
+     *         &lt;exclude&gt;/system/workplace/**&#47;*.bak&lt;/exclude&gt;
      *       &lt;/excludes&gt;
      *   &lt;/syncResource&gt;
      *   &lt;syncResource&gt;
@@ -104,6 +108,102 @@ public class SyncMojo extends AbstractVfsMojo {
      */
     private boolean deleteRFSResources;
 
+    /**
+     * Write the synchronization state in the text format #synclist.txt of the
+     * original OpenCms synchronization instead of the binary #syncstate.bin.
+     *
+     * <p>An existing #synclist.txt is always read and converted to the binary
+     * format unless this parameter is set to {@code true}.
+     * @parameter default-value="false"
+     */
+    private boolean legacySyncList;
+
+    /**
+     * Do not search source folders for new files which are unchanged since
+     * the last run, according to the folder fingerprints in
+     * #fingerprints.txt.
+     *
+     * @parameter default-value="true"
+     */
+    private boolean incremental;
+
+    /**
+     * Detect changes of source files by content digests instead of file
+     * dates, against the baseline #baseline.txt in the synchronization
+     * folder. The baseline is written after each run and may be committed.
+     * It is only used if it is the one the last run wrote here, so files
+     * touched by a checkout without being changed do not look modified,
+     * while a baseline pulled together with changed files is not trusted.
+     * Changes of the VFS are still detected by the dates in the sync state.
+     * Without a sync state, e.g. in a fresh clone, resources whose VFS
+     * content and source files match the committed baseline are not
+     * exported again.
+     *
+     * @parameter default-value="false"
+     */
+    private boolean contentHashes;
+
+    /**
+     * Number of threads comparing VFS resources with the RFS before anything
+     * is changed.
+     *
+     * <p>The comparison only reads, the resulting actions are applied one
+     * after the other afterwards. 0 uses one thread per available processor.
+     * @parameter default-value="0"
+     */
+    private int planThreads;
+
+    /**
+     * Number of threads writing exported files to the source folders while
+     * the VFS is read. 0 writes them one after the other.
+     * @parameter default-value="4"
+     */
+    private int exportWriters;
+
+    /**
+     * Maximum number of bytes read from the VFS and waiting to be written by
+     * the export writers.
+     * @parameter default-value="67108864"
+     */
+    private long exportBufferSize;
+
+    /**
+     * When written files are forced to the disk: "always" for every file,
+     * "batch" once before the sync state is written, "never" to leave it to
+     * the operating system.
+     * @parameter default-value="batch"
+     */
+    private String fsyncPolicy;
+
+    /**
+     * Maximum number of bytes of changed source files kept in memory between
+     * their comparison with the VFS and their import, so they are read only
+     * once. Larger files are read again for the import.
+     * @parameter default-value="67108864"
+     */
+    private long importBufferSize;
+
+    /**
+     * How much is reported: "summary" for headlines, summaries, warnings and
+     * errors only, "normal" for a line per resource, "debug" for debug
+     * messages as well.
+     * @parameter default-value="normal"
+     */
+    private String reportLevel;
+
+    /**
+     * Write the report to the console on a background thread.
+     * @parameter default-value="true"
+     */
+    private boolean asyncReport;
+
+    /**
+     * JSON file receiving wall time, resources, bytes read and written, VFS
+     * calls and allocation per phase of the synchronization.
+     * @parameter default-value="${project.build.directory}/vfs-metrics.json"
+     */
+    private File metricsFile;
+
     /**
      * Performs VFS synchronisation.
      *
@@ -145,6 +245,16 @@ public class SyncMojo extends AbstractVfsMojo {
         	}
         	VfsSync sync = new VfsSync();
         	sync.setDebugEnabled(this.getLog().isDebugEnabled());
+        	sync.setLegacySyncList(this.legacySyncList);
+        	sync.setIncremental(this.incremental);
+        	sync.setContentHashes(this.contentHashes);
+        	sync.setPlanThreads(this.planThreads);
+        	sync.setExportPipeline(this.exportWriters, this.exportBufferSize);
+        	sync.setFsyncPolicy(this.fsyncPolicy);
+        	sync.setRfsContentBudget(this.importBufferSize);
+        	sync.setReportLevel(this.reportLevel);
+        	sync.setAsyncReport(this.asyncReport);
+        	sync.setMetricsFile(this.metricsFile);
                 sync.execute(
                     getWebappDirectory(), this.syncSourceDirectory, this.syncMetadataDirectory, this.syncVFSPaths,
                     this.syncResources, this.ignoredNames, this.notIgnoredNames, this.deleteRFSResources, getAdminPassword());
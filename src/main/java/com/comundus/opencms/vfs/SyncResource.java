@@ -13,7 +13,9 @@ public class SyncResource {
     private String resource;
 
     /**
-     * May be '*', used to exclude every resource in a folder.
+     * Excluded VFS paths, each excluding its subtree. Segments may contain
+     * '*' and '?', "**" matches any number of segments. May be '*', used to
+     * exclude every resource in a folder.
      */
     private String[] excludes = new String[0];
 
@@ -0,0 +1,120 @@
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestBaselineManifest extends TestCase {
+
+	private File folder;
+
+	protected void setUp() throws IOException {
+		folder = Files.createTempDirectory("baseline").toFile();
+	}
+
+	protected void tearDown() {
+		new File(folder, BaselineManifest.FILENAME).delete();
+		folder.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		BaselineManifest written = new BaselineManifest(folder);
+		written.put("/system/modules/a.jsp", "c0ffee", "beef");
+		written.put("/system/modules/", null, "f00d");
+		String digest = written.save();
+
+		BaselineManifest read = new BaselineManifest(folder);
+		assertTrue(read.load(digest));
+		assertEquals(2, read.size());
+		BaselineManifest.Entry file = read.get("/system/modules/a.jsp");
+		assertEquals("c0ffee", file.getContentDigest());
+		assertEquals("beef", file.getMetadataDigest());
+		BaselineManifest.Entry folderEntry = read.get("/system/modules/");
+		assertNull(folderEntry.getContentDigest());
+		assertEquals("f00d", folderEntry.getMetadataDigest());
+	}
+
+	public void testLinesAreSorted() throws IOException {
+		BaselineManifest written = new BaselineManifest(folder);
+		written.put("/b", "1", "1");
+		written.put("/a/", null, "1");
+		written.put("/a/c", "1", "1");
+		written.save();
+
+		List<String> lines = Files.readAllLines(new File(folder, BaselineManifest.FILENAME).toPath(),
+				StandardCharsets.UTF_8);
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(1).endsWith("\t/a/"));
+		assertTrue(lines.get(2).endsWith("\t/a/c"));
+		assertTrue(lines.get(3).endsWith("\t/b"));
+	}
+
+	public void testPulledBaselineIsNotUsed() throws IOException {
+		// the last local run synchronized the old content
+		BaselineManifest local = new BaselineManifest(folder);
+		local.put("/a.jsp", "old", "meta");
+		String writtenHere = local.save();
+
+		// a pull brings changed content together with the baseline of another developer
+		BaselineManifest pulled = new BaselineManifest(folder);
+		pulled.put("/a.jsp", "new", "meta");
+		pulled.save();
+
+		// the pulled content matches the pulled baseline, but it has not been imported here
+		BaselineManifest read = new BaselineManifest(folder);
+		assertFalse(read.load(writtenHere));
+		assertNull(read.get("/a.jsp"));
+	}
+
+	public void testWithoutLocalRunNothingIsRead() throws IOException {
+		BaselineManifest written = new BaselineManifest(folder);
+		written.put("/a.jsp", "1", "1");
+		written.save();
+
+		BaselineManifest read = new BaselineManifest(folder);
+		assertFalse(read.load(null));
+		assertEquals(0, read.size());
+	}
+
+	public void testCloneUsesSharedBaselineForMissingResources() throws IOException {
+		// another machine synchronized and committed the baseline
+		BaselineManifest committed = new BaselineManifest(folder);
+		committed.put("/a.jsp", "content", "meta");
+		committed.put("/b/", null, "folder meta");
+		committed.save();
+
+		// a fresh clone has neither a sync list nor a digest cache
+		BaselineManifest clone = new BaselineManifest(folder);
+		assertFalse(clone.load(null));
+		assertTrue(clone.loadShared());
+		assertEquals(2, clone.size());
+
+		BaselineManifest.Entry file = clone.get("/a.jsp");
+		assertEquals("content", file.getContentDigest());
+		assertEquals("meta", file.getMetadataDigest());
+		assertTrue(file.matchesVfs("content"));
+		assertFalse(file.matchesVfs("changed in this VFS"));
+		assertTrue(clone.get("/b/").matchesVfs(null));
+		assertNull(clone.get("/c.jsp"));
+	}
+
+	public void testUnknownFormatIsNotShared() throws IOException {
+		Files.write(new File(folder, BaselineManifest.FILENAME).toPath(),
+				"something else\n-\t1\t/a/\n".getBytes(StandardCharsets.UTF_8));
+		BaselineManifest read = new BaselineManifest(folder);
+		assertFalse(read.loadShared());
+		assertEquals(0, read.size());
+	}
+
+	public void testUnknownFormatIsIgnored() throws IOException {
+		byte[] content = "something else\n-\t1\t/a/\n".getBytes(StandardCharsets.UTF_8);
+		Files.write(new File(folder, BaselineManifest.FILENAME).toPath(), content);
+		BaselineManifest read = new BaselineManifest(folder);
+		assertFalse(read.load(DigestCache.digest(content)));
+		assertEquals(0, read.size());
+	}
+}
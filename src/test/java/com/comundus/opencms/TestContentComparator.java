@@ -0,0 +1,62 @@
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class TestContentComparator extends TestCase {
+
+	private File file;
+
+	protected void setUp() throws IOException {
+		file = File.createTempFile("compare", ".bin");
+	}
+
+	protected void tearDown() {
+		file.delete();
+	}
+
+	public void testEqualSmallContent() throws IOException {
+		byte[] content = content(1000);
+		Files.write(file.toPath(), content);
+		assertTrue(ContentComparator.contentEquals(content, file));
+	}
+
+	public void testEmptyContent() throws IOException {
+		Files.write(file.toPath(), new byte[0]);
+		assertTrue(ContentComparator.contentEquals(new byte[0], file));
+	}
+
+	public void testDifferentSize() throws IOException {
+		Files.write(file.toPath(), content(1000));
+		assertFalse(ContentComparator.contentEquals(content(999), file));
+	}
+
+	public void testDifferenceInLastChunk() throws IOException {
+		byte[] content = content(200 * 1024);
+		Files.write(file.toPath(), content);
+		byte[] changed = Arrays.copyOf(content, content.length);
+		changed[changed.length - 1]++;
+		assertFalse(ContentComparator.contentEquals(changed, file));
+	}
+
+	public void testLargeContent() throws IOException {
+		byte[] content = content(17 * 1024 * 1024 + 3);
+		Files.write(file.toPath(), content);
+		assertTrue(ContentComparator.contentEquals(content, file));
+		byte[] changed = Arrays.copyOf(content, content.length);
+		changed[16 * 1024 * 1024 + 1]++;
+		assertFalse(ContentComparator.contentEquals(changed, file));
+	}
+
+	private static byte[] content(int length) {
+		byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) (i * 31);
+		}
+		return content;
+	}
+}
@@ -0,0 +1,26 @@
+package com.comundus.opencms;
+
+import junit.framework.TestCase;
+
+public class TestDeletedPaths extends TestCase {
+
+	public void testFile() {
+		DeletedPaths deleted = new DeletedPaths();
+		deleted.add("/sites/default/a.html");
+		assertTrue(deleted.contains("/sites/default/a.html"));
+		assertTrue(deleted.isDeleted("/sites/default/a.html"));
+		assertFalse(deleted.isDeleted("/sites/default/a.html/b"));
+		assertFalse(deleted.isDeleted("/sites/default/"));
+	}
+
+	public void testFolderSubtree() {
+		DeletedPaths deleted = new DeletedPaths();
+		deleted.add("/sites/default/folder/");
+		assertTrue(deleted.contains("/sites/default/folder"));
+		assertTrue(deleted.isDeleted("/sites/default/folder/"));
+		assertTrue(deleted.isDeleted("/sites/default/folder/sub/a.html"));
+		assertFalse(deleted.contains("/sites/default/folder/sub/a.html"));
+		assertFalse(deleted.isDeleted("/sites/default/folder2/a.html"));
+		assertEquals(1, deleted.size());
+	}
+}
@@ -0,0 +1,90 @@
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+public class TestDigestCache extends TestCase {
+
+	private File folder;
+	private File rfsFile;
+
+	protected void setUp() throws IOException {
+		folder = Files.createTempDirectory("digests").toFile();
+		rfsFile = new File(folder, "a.txt");
+		Files.write(rfsFile.toPath(), "content".getBytes(StandardCharsets.UTF_8));
+	}
+
+	protected void tearDown() {
+		new File(folder, DigestCache.FILENAME).delete();
+		rfsFile.delete();
+		folder.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		DigestCache written = new DigestCache(folder);
+		written.putVfsDigest("id-1", 100L, 7L, "vfs-hash");
+		written.putRfsDigest(rfsFile, 200L, 7L, "rfs-hash");
+		written.save();
+
+		DigestCache read = new DigestCache(folder);
+		read.load();
+		assertEquals("vfs-hash", read.getVfsDigest("id-1", 100L, 7L));
+		assertEquals("rfs-hash", read.getRfsDigest(rfsFile, 200L, 7L));
+		assertNull(read.getVfsDigest("id-2", 100L, 7L));
+	}
+
+	public void testChangedDateOrSizeInvalidates() throws IOException {
+		DigestCache written = new DigestCache(folder);
+		written.putVfsDigest("id-1", 100L, 7L, "vfs-hash");
+		written.putRfsDigest(rfsFile, 200L, 7L, "rfs-hash");
+		written.save();
+
+		DigestCache read = new DigestCache(folder);
+		read.load();
+		assertNull(read.getVfsDigest("id-1", 101L, 7L));
+		assertNull(read.getVfsDigest("id-1", 100L, 8L));
+		assertNull(read.getRfsDigest(rfsFile, 201L, 7L));
+		assertNull(read.getRfsDigest(rfsFile, 200L, 8L));
+	}
+
+	public void testUnusedEntriesAreDropped() throws IOException {
+		DigestCache first = new DigestCache(folder);
+		first.putVfsDigest("used", 1L, 1L, "a");
+		first.putVfsDigest("unused", 1L, 1L, "b");
+		first.save();
+
+		DigestCache second = new DigestCache(folder);
+		second.load();
+		assertEquals("a", second.getVfsDigest("used", 1L, 1L));
+		second.save();
+
+		DigestCache third = new DigestCache(folder);
+		third.load();
+		assertEquals("a", third.getVfsDigest("used", 1L, 1L));
+		assertNull(third.getVfsDigest("unused", 1L, 1L));
+	}
+
+	public void testUnknownFormatIsIgnored() throws IOException {
+		Files.write(new File(folder, DigestCache.FILENAME).toPath(),
+				"something else\nV\t1\t1\ta\tid\n".getBytes(StandardCharsets.UTF_8));
+		DigestCache read = new DigestCache(folder);
+		read.load();
+		assertNull(read.getVfsDigest("id", 1L, 1L));
+	}
+
+	public void testDigestOfFileEqualsDigestOfContent() throws IOException {
+		assertEquals(DigestCache.digest("content".getBytes(StandardCharsets.UTF_8)),
+				DigestCache.digest(rfsFile));
+	}
+
+	public void testKeyIsRelativeToTheFolderOnly() {
+		DigestCache cache = new DigestCache(folder);
+		assertEquals("/a.txt", cache.getKey(rfsFile));
+		File sibling = new File(folder.getPath() + "-old", "a.txt");
+		assertEquals(sibling.getAbsolutePath(), cache.getKey(sibling));
+	}
+}
@@ -0,0 +1,64 @@
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+public class TestDirectoryFingerprints extends TestCase {
+
+	private File folder;
+
+	protected void setUp() throws IOException {
+		folder = Files.createTempDirectory("fingerprints").toFile();
+	}
+
+	protected void tearDown() {
+		new File(folder, DirectoryFingerprints.FILENAME).delete();
+		folder.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		DirectoryFingerprints written = new DirectoryFingerprints(folder, "config");
+		written.put("/system/modules/", -42L);
+		written.save("3a7f");
+
+		DirectoryFingerprints read = new DirectoryFingerprints(folder, "config");
+		read.load("3a7f");
+		assertTrue(read.isUnchanged("/system/modules/", -42L));
+		assertFalse(read.isUnchanged("/system/modules/", 42L));
+		assertFalse(read.isUnchanged("/system/", -42L));
+	}
+
+	public void testOtherConfigurationIsDiscarded() throws IOException {
+		DirectoryFingerprints written = new DirectoryFingerprints(folder, "config");
+		written.put("/system/modules/", 1L);
+		written.save("3a7f");
+
+		DirectoryFingerprints read = new DirectoryFingerprints(folder, "other config");
+		read.load("3a7f");
+		assertFalse(read.isUnchanged("/system/modules/", 1L));
+	}
+
+	public void testOtherSyncStateIsDiscarded() throws IOException {
+		DirectoryFingerprints written = new DirectoryFingerprints(folder, "config");
+		written.put("/system/modules/", 1L);
+		written.save("3a7f");
+
+		DirectoryFingerprints read = new DirectoryFingerprints(folder, "config");
+		read.load("c01d");
+		assertFalse(read.isUnchanged("/system/modules/", 1L));
+	}
+
+	public void testMissingSyncStateDiscardsAll() throws IOException {
+		DirectoryFingerprints written = new DirectoryFingerprints(folder, "config");
+		written.put("/system/modules/", 1L);
+		written.save("3a7f");
+
+		// e.g. after vfs:clean
+		DirectoryFingerprints read = new DirectoryFingerprints(folder, "config");
+		read.load(null);
+		assertFalse(read.isUnchanged("/system/modules/", 1L));
+	}
+}
@@ -0,0 +1,102 @@
+package com.comundus.opencms;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestExportPipeline extends TestCase {
+
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+
+	public void testDirectExecution() throws IOException {
+		List<String> events = new ArrayList<>();
+		try (ExportPipeline pipeline = new ExportPipeline(0, 1024)) {
+			pipeline.submit(10, () -> events.add("write"), () -> events.add("callback"));
+			assertEquals(2, events.size());
+			assertEquals("write", events.get(0));
+			assertEquals("callback", events.get(1));
+		}
+	}
+
+	public void testCallbacksRunOnCallingThread() throws IOException {
+		Thread caller = Thread.currentThread();
+		List<Thread> writers = Collections.synchronizedList(new ArrayList<>());
+		List<Integer> callbacks = new ArrayList<>();
+		try (ExportPipeline pipeline = new ExportPipeline(3, 1024 * 1024)) {
+			for (int i = 0; i < 20; i++) {
+				final int n = i;
+				pipeline.submit(100, () -> writers.add(Thread.currentThread()), () -> {
+					assertTrue(Thread.currentThread() == caller);
+					callbacks.add(n);
+				});
+			}
+			pipeline.flush();
+		}
+		assertEquals(20, callbacks.size());
+		assertEquals(20, writers.size());
+		assertFalse(writers.contains(caller));
+	}
+
+	public void testBudgetLimitsWaitingContent() throws IOException {
+		try (ExportPipeline pipeline = new ExportPipeline(4, 8 * 1024)) {
+			for (int i = 0; i < 10; i++) {
+				pipeline.submit(4 * 1024, this::slowWrite, () -> { });
+			}
+			pipeline.flush();
+		}
+		assertTrue(maxRunning.get() <= 2);
+	}
+
+	public void testJobLargerThanBudgetRunsAlone() throws IOException {
+		try (ExportPipeline pipeline = new ExportPipeline(4, 4 * 1024)) {
+			pipeline.submit(1024 * 1024, this::slowWrite, () -> { });
+			pipeline.submit(1024, this::slowWrite, () -> { });
+			pipeline.submit(1024 * 1024, this::slowWrite, () -> { });
+			pipeline.flush();
+		}
+		assertEquals(1, maxRunning.get());
+	}
+
+	public void testFirstFailureIsRethrown() throws IOException {
+		IOException failure = new IOException("disk full");
+		List<String> callbacks = new ArrayList<>();
+		try (ExportPipeline pipeline = new ExportPipeline(1, 1024 * 1024)) {
+			pipeline.submit(10, () -> { throw failure; }, () -> callbacks.add("failed"));
+			try {
+				// the first failure may already be known here
+				pipeline.submit(10, () -> { throw new IOException("later"); }, () -> { });
+			} catch (IOException e) {
+				assertSame(failure, e);
+			}
+			try {
+				pipeline.flush();
+				fail("flush must fail");
+			} catch (IOException e) {
+				assertSame(failure, e);
+			}
+			try {
+				pipeline.submit(10, () -> { }, () -> callbacks.add("after"));
+				fail("submit must fail");
+			} catch (IOException e) {
+				assertSame(failure, e);
+			}
+		}
+		assertTrue(callbacks.isEmpty());
+	}
+
+	private void slowWrite() {
+		int now = running.incrementAndGet();
+		maxRunning.accumulateAndGet(now, Math::max);
+		try {
+			Thread.sleep(20);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		running.decrementAndGet();
+	}
+}
@@ -0,0 +1,36 @@
+package com.comundus.opencms;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class TestIgnoredNamesMatcher extends TestCase {
+
+	private IgnoredNamesMatcher matcher = new IgnoredNamesMatcher(Arrays.asList(
+			"*~", "#*#", ".#*", "%*%", "._*", "CVS", ".svn", ".git", "*.b?k"));
+
+	public void testLiteralNames() {
+		assertTrue(matcher.test(".git"));
+		assertTrue(matcher.test("CVS"));
+		assertFalse(matcher.test("cvs"));
+		assertFalse(matcher.test(".github"));
+	}
+
+	public void testWildcards() {
+		assertTrue(matcher.test("index.html~"));
+		assertTrue(matcher.test("#index.html#"));
+		assertFalse(matcher.test("#"));
+		assertTrue(matcher.test(".#index.html"));
+		assertTrue(matcher.test("._index.html"));
+		assertTrue(matcher.test("index.bak"));
+		assertFalse(matcher.test("index.bk"));
+		assertFalse(matcher.test("index.html"));
+	}
+
+	public void testCachedResult() {
+		assertTrue(matcher.test("%tmp%"));
+		assertTrue(matcher.test("%tmp%"));
+		assertFalse(matcher.test("images"));
+		assertFalse(matcher.test("images"));
+	}
+}
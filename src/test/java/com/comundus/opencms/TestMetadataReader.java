@@ -0,0 +1,66 @@
+package com.comundus.opencms;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+public class TestMetadataReader extends TestCase {
+
+	private static final String METADATA = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<export><files><file>\n"
+			+ "  <destination>system/test.txt</destination>\n"
+			+ "  <type> plain </type>\n"
+			+ "  <flags>0</flags>\n"
+			+ "  <properties>\n"
+			+ "    <property><name>Title</name><value><![CDATA[a  b\n c]]></value></property>\n"
+			+ "    <property type=\"shared\"><name>Description</name><value/></property>\n"
+			+ "  </properties>\n"
+			+ "  <relations>\n"
+			+ "    <relation><id>0</id><path>/target</path><type>CATEGORY</type></relation>\n"
+			+ "  </relations>\n"
+			+ "  <accesscontrol>\n"
+			+ "    <accessentry><uninterpreted>GROUP.Users</uninterpreted><flags>16</flags>"
+			+ "<permissionset><allowed>1</allowed><denied>0</denied></permissionset></accessentry>\n"
+			+ "  </accesscontrol>\n"
+			+ "</file></files></export>";
+
+	public void testValues() throws IOException {
+		ResourceMetadata metadata = read(METADATA);
+		assertEquals("system/test.txt", metadata.getValue("destination"));
+		assertEquals("plain", metadata.getValue("type"));
+		assertNull(metadata.getValue("datereleased"));
+	}
+
+	public void testPropertiesAreTrimmedLikeDom4j() throws IOException {
+		ResourceMetadata metadata = read(METADATA);
+		assertEquals(2, metadata.getProperties().size());
+		assertEquals("a b c", metadata.getProperties().get(0).getValue());
+		assertNull(metadata.getProperties().get(0).getType());
+		assertEquals("", metadata.getProperties().get(1).getValue());
+		assertEquals("shared", metadata.getProperties().get(1).getType());
+	}
+
+	public void testRelationsAndAccessEntries() throws IOException {
+		ResourceMetadata metadata = read(METADATA);
+		assertEquals("/target", metadata.getRelations().get(0).getPath());
+		ResourceMetadata.AccessEntry entry = metadata.getAccessEntries().get(0);
+		assertEquals("GROUP.Users", entry.getPrincipal());
+		assertEquals("16", entry.getFlags());
+		assertEquals("1", entry.getAllowed());
+		assertEquals("0", entry.getDenied());
+	}
+
+	public void testMissingFileNode() {
+		try {
+			read("<export/>");
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static ResourceMetadata read(String xml) throws IOException {
+		return MetadataReader.read(xml.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,54 @@
+package com.comundus.opencms;
+
+import junit.framework.TestCase;
+
+public class TestPathTrie extends TestCase {
+
+	public void testExactAndSubtree() {
+		PathTrie trie = new PathTrie("/system/workplace/tools/");
+		assertTrue(trie.matches("/system/workplace/tools"));
+		assertTrue(trie.matches("/system/workplace/tools/"));
+		assertTrue(trie.matches("/system/workplace/tools/picture.gif"));
+		assertFalse(trie.matches("/system/workplace/toolsx"));
+		assertFalse(trie.matches("/system/workplace/"));
+	}
+
+	public void testAsteriskMatchesEverything() {
+		PathTrie trie = new PathTrie("*");
+		assertTrue(trie.matches("dir/"));
+		assertTrue(trie.matches("/system/workplace/a.gif"));
+	}
+
+	public void testSegmentWildcards() {
+		PathTrie trie = new PathTrie("/system/modules/*.test/", "/sites/default/page?.html");
+		assertTrue(trie.matches("/system/modules/com.comundus.test/lib/a.jar"));
+		assertFalse(trie.matches("/system/modules/com.comundus.web/"));
+		assertTrue(trie.matches("/sites/default/page1.html"));
+		assertFalse(trie.matches("/sites/default/page12.html"));
+	}
+
+	public void testAnySegments() {
+		PathTrie trie = new PathTrie("/system/**/*.bak");
+		assertTrue(trie.matches("/system/a.bak"));
+		assertTrue(trie.matches("/system/workplace/resources/a.bak"));
+		assertFalse(trie.matches("/system/workplace/resources/a.gif"));
+		assertFalse(trie.matches("/sites/a.bak"));
+	}
+
+	public void testContainsIsExact() {
+		PathTrie trie = new PathTrie("/system/workplace/", "/system/workplace/tools/picture.gif");
+		assertTrue(trie.contains("/system/workplace/tools/picture.gif"));
+		assertTrue(trie.contains("/system/workplace"));
+		assertFalse(trie.contains("/system/workplace/tools/"));
+		assertFalse(trie.contains("/system/"));
+	}
+
+	public void testRootIsNoEntry() {
+		PathTrie trie = new PathTrie("", "/", "//");
+		assertTrue(trie.isEmpty());
+		assertFalse(trie.matches("/system/workplace/a.gif"));
+		assertFalse(trie.add("/"));
+		assertTrue(trie.add("/system/"));
+		assertFalse(trie.matches("/sites/default/"));
+	}
+}
@@ -0,0 +1,110 @@
+package com.comundus.opencms;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+public class TestRfsTree extends TestCase {
+
+	private File root;
+
+	protected void setUp() throws IOException {
+		root = Files.createTempDirectory("rfstree").toFile();
+		new File(root, "a/b").mkdirs();
+		new File(root, "c").mkdirs();
+		new File(root, ".git").mkdirs();
+		write("a/b/one.txt", "one");
+		write("c/two.txt", "two");
+		write(".git/HEAD", "ref");
+	}
+
+	protected void tearDown() throws IOException {
+		Files.walk(root.toPath()).sorted((x, y) -> y.compareTo(x)).forEach(p -> p.toFile().delete());
+	}
+
+	public void testWalkReadsWholeTree() throws IOException {
+		RfsTree tree = walk();
+		// root, a, a/b, a/b/one.txt, c, c/two.txt, .git
+		assertEquals(7, tree.size());
+		assertEquals(3, tree.getRoot().getChildren().size());
+		assertTrue(tree.get(new File(root, "a/b")).isDirectory());
+		assertTrue(tree.get(new File(root, "c/two.txt")).isFile());
+	}
+
+	public void testPrunedFolderContentIsNotRead() throws IOException {
+		RfsTree tree = walk();
+		RfsTree.Entry git = tree.get(new File(root, ".git"));
+		assertTrue(git.isDirectory());
+		assertTrue(git.getChildren().isEmpty());
+		assertNull(tree.get(new File(root, ".git/HEAD")));
+	}
+
+	public void testSizeAndDateAreReadOnce() throws IOException {
+		RfsTree tree = walk();
+		File file = new File(root, "a/b/one.txt");
+		RfsTree.Entry entry = tree.get(file);
+		assertEquals(file.length(), entry.getSize());
+		assertEquals(file.lastModified(), entry.getLastModified());
+
+		// the snapshot does not follow later changes
+		write("a/b/one.txt", "changed");
+		assertEquals(3, entry.getSize());
+	}
+
+	public void testRemoveDropsSubtree() throws IOException {
+		RfsTree tree = walk();
+		RfsTree.Entry folder = tree.get(new File(root, "a"));
+		tree.remove(folder);
+		assertFalse(tree.contains(folder));
+		assertNull(tree.get(new File(root, "a/b/one.txt")));
+		assertNotNull(tree.get(new File(root, "c/two.txt")));
+	}
+
+	public void testMissingRootGivesEmptyTree() throws IOException {
+		RfsTree tree = RfsTree.walk(new File(root, "missing"), name -> false, 2);
+		assertNull(tree.getRoot());
+		assertEquals(0, tree.size());
+	}
+
+	public void testUnchangedTreeHasSameFingerprints() throws IOException {
+		RfsTree first = walk();
+		RfsTree second = walk();
+		assertEquals(first.getRoot().getFingerprint(), second.getRoot().getFingerprint());
+		assertEquals(fingerprint(first, "a"), fingerprint(second, "a"));
+	}
+
+	public void testChangedFileChangesFolderAndParents() throws IOException {
+		RfsTree before = walk();
+		write("a/b/one.txt", "changed");
+		RfsTree after = walk();
+		assertFalse(fingerprint(before, "a/b") == fingerprint(after, "a/b"));
+		assertFalse(fingerprint(before, "a") == fingerprint(after, "a"));
+		assertEquals(fingerprint(before, "c"), fingerprint(after, "c"));
+	}
+
+	public void testIgnoredEntriesDoNotCount() throws IOException {
+		RfsTree before = walk();
+		write(".git/HEAD", "other ref");
+		write(".git/index", "index");
+		RfsTree after = walk();
+		assertEquals(before.getRoot().getFingerprint(), after.getRoot().getFingerprint());
+		assertTrue(after.get(new File(root, ".git")).isIgnored());
+	}
+
+	private RfsTree walk() throws IOException {
+		return RfsTree.walk(root, name -> name.equals(".git"), 2);
+	}
+
+	private long fingerprint(RfsTree tree, String folder) {
+		return tree.get(new File(root, folder)).getFingerprint();
+	}
+
+	private void write(String path, String content) throws IOException {
+		File file = new File(root, path);
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+		// a distinct date even on file systems with a coarse resolution
+		file.setLastModified(file.lastModified() + 2000);
+	}
+}
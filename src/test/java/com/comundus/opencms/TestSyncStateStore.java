@@ -0,0 +1,104 @@
+package com.comundus.opencms;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.opencms.synchronize.CmsSynchronizeList;
+
+import junit.framework.TestCase;
+
+public class TestSyncStateStore extends TestCase {
+
+	private File folder;
+
+	protected void setUp() throws IOException {
+		folder = Files.createTempDirectory("syncstate").toFile();
+	}
+
+	protected void tearDown() {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	public void testRoundTrip() throws IOException {
+		new SyncStateStore(folder).write(Arrays.asList(
+				new CmsSynchronizeList("/a.txt", "/a.txt", 1, 2),
+				new CmsSynchronizeList("/b c.txt", "/b_c.txt", 3, 4)), false);
+		assertTrue(new File(folder, SyncStateStore.FILENAME).exists());
+
+		Map<String, CmsSynchronizeList> list = new SyncStateStore(folder).read(name -> name);
+		assertEquals(2, list.size());
+		CmsSynchronizeList same = list.get("/a.txt");
+		assertSame(same.getResName(), same.getTransResName());
+		assertEquals(1, same.getModifiedVfs());
+		assertEquals(2, same.getModifiedFs());
+		CmsSynchronizeList other = list.get("/b_c.txt");
+		assertEquals("/b c.txt", other.getResName());
+		assertEquals(3, other.getModifiedVfs());
+		assertEquals(4, other.getModifiedFs());
+	}
+
+	public void testLegacyFormatIsImportedAndReplaced() throws IOException {
+		SyncStateStore store = new SyncStateStore(folder);
+		store.write(Collections.singletonList(new CmsSynchronizeList("/a.txt", "/a.txt", 1, 2)), true);
+		assertTrue(new File(folder, SyncStateStore.LEGACY_FILENAME).exists());
+		assertFalse(new File(folder, SyncStateStore.FILENAME).exists());
+
+		Map<String, CmsSynchronizeList> list = store.read(name -> name);
+		assertEquals(2, list.get("/a.txt").getModifiedFs());
+
+		store.write(list.values(), false);
+		assertTrue(new File(folder, SyncStateStore.FILENAME).exists());
+		assertFalse(new File(folder, SyncStateStore.LEGACY_FILENAME).exists());
+	}
+
+	public void testLegacyNamesAreInterned() throws IOException {
+		SyncStateStore store = new SyncStateStore(folder);
+		store.write(Collections.singletonList(new CmsSynchronizeList("/a.txt", "/a.txt", 1, 2)), true);
+
+		for (Map.Entry<String, CmsSynchronizeList> entry : store.read(name -> new String(name)).entrySet()) {
+			assertSame(entry.getKey(), entry.getValue().getResName());
+			assertSame(entry.getKey(), entry.getValue().getTransResName());
+		}
+	}
+
+	public void testTruncatedFileFailsWithIOException() throws IOException {
+		new SyncStateStore(folder).write(Collections.singletonList(
+				new CmsSynchronizeList("/a.txt", "/a.txt", 1, 2)), false);
+		File stateFile = new File(folder, SyncStateStore.FILENAME);
+		byte[] content = Files.readAllBytes(stateFile.toPath());
+		Files.write(stateFile.toPath(), Arrays.copyOf(content, content.length - 5));
+
+		try {
+			new SyncStateStore(folder).read(name -> name);
+			fail("a truncated file must not be read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains(SyncStateStore.FILENAME));
+		}
+	}
+
+	public void testCorruptLengthFailsWithIOException() throws IOException {
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(
+				new File(folder, SyncStateStore.FILENAME).toPath()))) {
+			out.writeInt(0x56535953);
+			out.writeInt(1);
+			out.writeInt(1);
+			out.writeInt(-7);
+			out.write(new byte[20]);
+		}
+
+		try {
+			new SyncStateStore(folder).read(name -> name);
+			fail("a corrupt file must not be read");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains(SyncStateStore.FILENAME));
+		}
+	}
+}